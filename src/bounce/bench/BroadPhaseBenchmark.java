@@ -0,0 +1,166 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.bench;
+
+import java.util.Random;
+
+import bounce.logic.BroadPhase;
+import bounce.logic.Material;
+import bounce.logic.SpatialHash;
+import bounce.logic.SweepAndPrune;
+import bounce.logic.World;
+
+/**
+ * Compares the cost of a step of a {@link World} in which balls collide when
+ * candidates are found by a {@link SpatialHash} and by a
+ * {@link SweepAndPrune}.  Balls are dropped from random heights along an area
+ * whose width grows with their number, either spread evenly across it or
+ * gathered into clusters, and with diameters either close together or
+ * ranging widely.
+ *
+ * <pre>
+ * usage: bounce.bench.BroadPhaseBenchmark [balls...]
+ * </pre>
+ */
+public class BroadPhaseBenchmark
+{
+    /** The simulated time between steps in seconds */
+    private static final double STEP = 0.01;
+
+    /** The number of steps measured */
+    private static final int STEPS = 200;
+
+    /** The greatest drop height in meters */
+    private static final double MAX_HEIGHT = 10;
+
+    /** The width of the area in meters for each ball */
+    private static final double WIDTH_PER_BALL = 0.3;
+
+    /** The number of balls in each cluster */
+    private static final int CLUSTER_SIZE = 200;
+
+    /** The standard deviation in meters of the spread of a cluster */
+    private static final double CLUSTER_SPREAD = 2;
+
+    /** The smallest diameter in meters when diameters range widely */
+    private static final double MIN_DIAMETER = 0.02;
+
+    /** The largest diameter in meters when diameters range widely */
+    private static final double MAX_DIAMETER = 2;
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optionally the numbers of balls to measure
+     */
+    public static void main(String[] args)
+    {
+        int[] sizes = {1000, 10000, 50000};
+
+        if(args.length > 0)
+        {
+            sizes = new int[args.length];
+
+            for(int i = 0; i < args.length; i++)
+            {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println(STEPS + " steps of " + STEP + " s");
+        System.out.println("balls\tplaces\t\tsizes\tbroad phase\tstep (us)" +
+                "\tper ball (ns)\tcollisions");
+
+        for(int balls : sizes)
+        {
+            for(boolean clustered : new boolean[] {false, true})
+            {
+                for(boolean wide : new boolean[] {false, true})
+                {
+                    // Once each to warm up, then measured
+                    run(balls, clustered, wide, false, false);
+                    run(balls, clustered, wide, true, false);
+                    run(balls, clustered, wide, false, true);
+                    run(balls, clustered, wide, true, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills a world, steps it, and prints the time taken.
+     *
+     * @param balls the number of balls
+     * @param clustered whether the balls are gathered into clusters
+     * @param wide whether the diameters range widely
+     * @param sweep whether a sweep and prune is used rather than a spatial
+     *        hash
+     * @param print whether to print the results
+     */
+    private static void run(int balls, boolean clustered, boolean wide,
+            boolean sweep, boolean print)
+    {
+        Material[] materials = {new Material(Material.ID_RUBBER),
+                new Material(Material.ID_IRON),
+                new Material(Material.ID_STONE)};
+        Random random = new Random(1);
+        BroadPhase broadPhase =
+                sweep ? new SweepAndPrune() : new SpatialHash();
+        World world = new World();
+        double width = balls * WIDTH_PER_BALL;
+        double center = 0;
+
+        world.setCollisionsEnabled(true);
+        world.setBroadPhase(broadPhase);
+
+        for(int i = 0; i < balls; i++)
+        {
+            double x;
+
+            if(!clustered)
+            {
+                x = random.nextDouble() * width;
+            }
+            else
+            {
+                if(i % CLUSTER_SIZE == 0)
+                {
+                    center = random.nextDouble() * width;
+                }
+
+                x = center + random.nextGaussian() * CLUSTER_SPREAD;
+            }
+
+            double diameter = wide ? MIN_DIAMETER * Math.pow(
+                    MAX_DIAMETER / MIN_DIAMETER, random.nextDouble()) :
+                    0.1 + random.nextInt(5) * 0.05;
+
+            world.add(x, random.nextDouble() * MAX_HEIGHT, diameter,
+                    materials[i % materials.length]);
+        }
+
+        long start = System.nanoTime();
+
+        for(int i = 0; i < STEPS; i++)
+        {
+            world.step(STEP);
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        if(print)
+        {
+            System.out.printf("%d\t%s\t%s\t%s\t%.1f\t\t%.1f\t\t%d%n", balls,
+                    clustered ? "clustered" : "uniform\t",
+                    wide ? "wide" : "even", sweep ? "sweep\t" : "grid\t",
+                    elapsed / 1000d / STEPS, (double)elapsed / STEPS / balls,
+                    world.getCollisionCount());
+        }
+    }
+}
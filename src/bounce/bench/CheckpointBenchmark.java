@@ -0,0 +1,128 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import bounce.logic.Checkpoint;
+import bounce.logic.Material;
+import bounce.logic.World;
+
+/**
+ * Measures how long it takes to save and restore a large {@link World}, with
+ * and without compression, and checks that a restored world continues exactly
+ * as the original does.  The balls are stepped for a while first, so both the
+ * active and the sleeping sets are saved.
+ *
+ * <pre>
+ * usage: bounce.bench.CheckpointBenchmark [balls]
+ * </pre>
+ */
+public class CheckpointBenchmark
+{
+    /** The simulated time between steps in seconds */
+    private static final double STEP = 0.01;
+
+    /** The number of steps taken before and after the checkpoint */
+    private static final int STEPS = 300;
+
+    /** The greatest drop height in meters */
+    private static final double MAX_HEIGHT = 10;
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optionally the number of balls
+     * @throws IOException if a checkpoint cannot be written or read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int balls = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+
+        Material[] materials = {new Material(Material.ID_RUBBER),
+                new Material(Material.ID_IRON),
+                new Material(Material.ID_STONE)};
+        Random random = new Random(1);
+        World world = new World();
+
+        for(int i = 0; i < balls; i++)
+        {
+            world.add(i, random.nextDouble() * MAX_HEIGHT, 0.15,
+                    materials[i % materials.length]);
+        }
+
+        for(int i = 0; i < STEPS; i++)
+        {
+            world.step(STEP);
+        }
+
+        System.out.println(balls + " balls, " + world.getActiveCount() +
+                " active, " + world.getSleepingCount() + " sleeping");
+
+        Path path = Files.createTempFile("bounce", ".checkpoint");
+
+        try
+        {
+            run(world, path, false);
+            run(world, path, true);
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Saves and restores the world, prints the times and size, and compares
+     * the two worlds after stepping both on.
+     *
+     * @param world the world
+     * @param path the file to use
+     * @param compress whether to compress the checkpoint
+     * @throws IOException if the checkpoint cannot be written or read
+     */
+    private static void run(World world, Path path, boolean compress)
+            throws IOException
+    {
+        long start = System.nanoTime();
+        Checkpoint.save(world, path, compress);
+        long saved = System.nanoTime();
+        World restored = Checkpoint.loadWorld(path);
+        long loaded = System.nanoTime();
+
+        System.out.printf("%s: %.1f MB, saved in %.0f ms, restored in " +
+                "%.0f ms%n", compress ? "gzip" : "raw",
+                Files.size(path) / 1e6, (saved - start) / 1e6,
+                (loaded - saved) / 1e6);
+
+        for(int i = 0; i < STEPS; i++)
+        {
+            world.step(STEP);
+            restored.step(STEP);
+        }
+
+        int differences = Math.abs(world.size() - restored.size());
+
+        for(int i = 0; i < Math.min(world.size(), restored.size()); i++)
+        {
+            if(world.getY(i) != restored.getY(i) ||
+                    world.getVelocity(i) != restored.getVelocity(i) ||
+                    world.isSleeping(i) != restored.isSleeping(i))
+            {
+                differences++;
+            }
+        }
+
+        System.out.println("  " + (differences == 0 ?
+                "resumed identically" : differences + " balls differ"));
+    }
+}
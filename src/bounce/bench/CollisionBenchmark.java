@@ -0,0 +1,116 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.bench;
+
+import java.util.Random;
+
+import bounce.logic.Material;
+import bounce.logic.World;
+
+/**
+ * Measures how the cost of a step of a {@link World} in which balls collide
+ * with each other grows with the number of balls.  Balls of mixed materials
+ * and diameters are dropped from random heights along an area whose width
+ * grows with their number, so that their density stays the same, and the
+ * world is stepped with and without collisions.  If candidate pairs are
+ * found in linear time, the cost per ball stays the same as the world grows.
+ *
+ * <pre>
+ * usage: bounce.bench.CollisionBenchmark [balls...]
+ * </pre>
+ */
+public class CollisionBenchmark
+{
+    /** The simulated time between steps in seconds */
+    private static final double STEP = 0.01;
+
+    /** The number of steps measured */
+    private static final int STEPS = 300;
+
+    /** The greatest drop height in meters */
+    private static final double MAX_HEIGHT = 10;
+
+    /** The width of the area in meters for each ball */
+    private static final double WIDTH_PER_BALL = 0.3;
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optionally the numbers of balls to measure
+     */
+    public static void main(String[] args)
+    {
+        int[] sizes = {1000, 10000, 100000};
+
+        if(args.length > 0)
+        {
+            sizes = new int[args.length];
+
+            for(int i = 0; i < args.length; i++)
+            {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println(STEPS + " steps of " + STEP + " s");
+        System.out.println("balls\tcollide\tstep (us)\tper ball (ns)" +
+                "\tcollisions\tactive");
+
+        for(int balls : sizes)
+        {
+            // Once to warm up, then measured
+            run(balls, true, false);
+            run(balls, false, true);
+            run(balls, true, true);
+        }
+    }
+
+    /**
+     * Fills a world, steps it, and prints the time taken.
+     *
+     * @param balls the number of balls
+     * @param collisions whether the balls collide with each other
+     * @param print whether to print the results
+     */
+    private static void run(int balls, boolean collisions, boolean print)
+    {
+        Material[] materials = {new Material(Material.ID_RUBBER),
+                new Material(Material.ID_IRON),
+                new Material(Material.ID_STONE)};
+        Random random = new Random(1);
+        World world = new World();
+
+        world.setCollisionsEnabled(collisions);
+
+        for(int i = 0; i < balls; i++)
+        {
+            world.add(random.nextDouble() * balls * WIDTH_PER_BALL,
+                    random.nextDouble() * MAX_HEIGHT,
+                    0.1 + random.nextInt(5) * 0.05,
+                    materials[i % materials.length]);
+        }
+
+        long start = System.nanoTime();
+
+        for(int i = 0; i < STEPS; i++)
+        {
+            world.step(STEP);
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        if(print)
+        {
+            System.out.printf("%d\t%s\t%.1f\t\t%.1f\t\t%d\t\t%d%n", balls,
+                    collisions ? "yes" : "no", elapsed / 1000d / STEPS,
+                    (double)elapsed / STEPS / balls,
+                    world.getCollisionCount(), world.getActiveCount());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.bench;
+
+import bounce.logic.AdaptiveIntegrator;
+import bounce.logic.EulerIntegrator;
+import bounce.logic.FixedPointSimulation;
+import bounce.logic.Integrator;
+import bounce.logic.Material;
+import bounce.logic.Physics;
+import bounce.logic.RungeKuttaIntegrator;
+import bounce.logic.Simulation;
+import bounce.logic.VerletIntegrator;
+
+/**
+ * Compares the accuracy and throughput of each way of advancing a simulation.
+ * A perfectly elastic ball is dropped and run for a fixed virtual time at
+ * several step sizes.  Since no energy should be lost, the energy of the ball
+ * just after each impact is compared with its energy at the start; the largest
+ * relative error is reported alongside the number of steps calculated per
+ * second of real time.  The fixed-point simulation is measured in the same
+ * way as the closed form it reproduces in integer arithmetic.
+ *
+ * <pre>
+ * usage: bounce.bench.IntegratorBenchmark [height] [seconds]
+ * </pre>
+ */
+public class IntegratorBenchmark
+{
+    /** The step sizes in milliseconds at which each integrator is run */
+    private static final int[] STEPS = {1, 5, 10, 20};
+
+    /** The ID of a material with a coefficient of restitution of one */
+    private static final int ID_ELASTIC = -1;
+
+    /**
+     * Creates the integrators being compared.  The closed form is represented
+     * by {@code null}.
+     *
+     * @return the integrators
+     */
+    private static Integrator[] createIntegrators()
+    {
+        return new Integrator[] {null, new EulerIntegrator(),
+                new VerletIntegrator(), new RungeKuttaIntegrator(),
+                new AdaptiveIntegrator()};
+    }
+
+    /**
+     * Runs one simulation.
+     *
+     * @param integrator the integrator, or {@code null} for the closed form
+     * @param height the drop height in meters
+     * @param seconds the virtual time to simulate in seconds
+     * @param step the virtual time between steps in milliseconds
+     * @return the largest relative energy error at an impact
+     */
+    private static double run(Integrator integrator, double height,
+            int seconds, int step)
+    {
+        Simulation simulation = new Simulation();
+        simulation.getBall().setMaterial(new Material(ID_ELASTIC));
+        simulation.setIntegrator(integrator);
+        simulation.reset(1, height);
+
+        double initial = simulation.getEnergy();
+        double error = 0;
+        long end = seconds * 1000L;
+
+        simulation.start(0);
+
+        for(long now = step; now <= end; now += step)
+        {
+            if(simulation.step(now))
+            {
+                error = Math.max(error,
+                        Math.abs(simulation.getEnergy() - initial) / initial);
+            }
+        }
+
+        return error;
+    }
+
+    /**
+     * Runs one fixed-point simulation.
+     *
+     * @param height the drop height in meters
+     * @param seconds the virtual time to simulate in seconds
+     * @param step the virtual time between steps in milliseconds
+     * @return the largest relative energy error at an impact
+     */
+    private static double runFixed(double height, int seconds, int step)
+    {
+        FixedPointSimulation simulation = new FixedPointSimulation();
+        simulation.getBall().setMaterial(new Material(ID_ELASTIC));
+        simulation.reset(1, height);
+
+        double initial = Physics.calcEnergy(simulation.getBall().getY(), 0);
+        double error = 0;
+        long end = seconds * 1000L;
+
+        simulation.start(0);
+
+        for(long now = step; now <= end; now += step)
+        {
+            if(simulation.step(now))
+            {
+                double v = FixedPointSimulation.toMeters(
+                        simulation.getImpactVelocity());
+                error = Math.max(error, Math.abs(
+                        Physics.calcEnergy(0, v) - initial) / initial);
+            }
+        }
+
+        return error;
+    }
+
+    /**
+     * Prints one line of results.
+     *
+     * @param name the name of the way of advancing the simulation
+     * @param step the virtual time between steps in milliseconds
+     * @param error the largest relative energy error at an impact
+     * @param steps the number of steps calculated
+     * @param elapsed the real time taken in nanoseconds
+     */
+    private static void print(String name, int step, double error, long steps,
+            long elapsed)
+    {
+        System.out.println(name + "\t" + step + "\t" + error + "\t" +
+                (steps * 1000000000L / Math.max(1, elapsed)));
+    }
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optionally the drop height in meters and the virtual time in
+     *        seconds
+     */
+    public static void main(String[] args)
+    {
+        double height = args.length > 0 ? Double.parseDouble(args[0]) : 5;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+
+        System.out.println("Drop height " + height + " m, " + seconds +
+                " s simulated, g = " + Physics.GRAVITY);
+        System.out.println("integrator\tstep (ms)\tenergy error\tsteps/s");
+
+        for(Integrator integrator : createIntegrators())
+        {
+            for(int step : STEPS)
+            {
+                // Warm up so that the compiled code is measured
+                for(int i = 0; i < 3; i++)
+                {
+                    run(integrator, height, seconds, step);
+                }
+
+                long start = System.nanoTime();
+                double error = run(integrator, height, seconds, step);
+
+                print(integrator == null ? "closed" : integrator.toString(),
+                        step, error, seconds * 1000L / step,
+                        System.nanoTime() - start);
+            }
+        }
+
+        for(int step : STEPS)
+        {
+            for(int i = 0; i < 3; i++)
+            {
+                runFixed(height, seconds, step);
+            }
+
+            long start = System.nanoTime();
+            double error = runFixed(height, seconds, step);
+
+            print("fixed", step, error, seconds * 1000L / step,
+                    System.nanoTime() - start);
+        }
+    }
+}
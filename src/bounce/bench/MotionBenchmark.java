@@ -0,0 +1,116 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.bench;
+
+import java.util.Random;
+
+import bounce.logic.Material;
+import bounce.logic.World;
+
+/**
+ * Compares the cost of a step of a {@link World} whose balls only fall with
+ * one whose balls are also thrown sideways between walls through air that
+ * drags on them.  Balls of mixed materials are dropped from random heights and
+ * positions, and the first second is measured, before any of them can come to
+ * rest, so that every step moves every ball.
+ *
+ * <pre>
+ * usage: bounce.bench.MotionBenchmark [balls] [rounds]
+ * </pre>
+ */
+public class MotionBenchmark
+{
+    /** The simulated time between steps in seconds */
+    private static final double STEP = 0.01;
+
+    /** The number of steps measured in a round */
+    private static final int STEPS = 100;
+
+    /** The greatest drop height in meters */
+    private static final double MAX_HEIGHT = 10;
+
+    /** The width of the area in meters between the walls */
+    private static final double WIDTH = 10;
+
+    /** The greatest speed in meters per second at which balls are thrown */
+    private static final double MAX_THROW = 5;
+
+    /** The drag of the air in inverse seconds */
+    private static final double DRAG = 0.1;
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optionally the number of balls and of rounds measured
+     */
+    public static void main(String[] args)
+    {
+        int balls = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.println(balls + " balls, " + STEPS + " steps of " + STEP +
+                " s");
+        System.out.println("round\tvertical (ns/ball)\tsideways (ns/ball)" +
+                "\tratio");
+
+        for(int r = 1; r <= rounds; r++)
+        {
+            double vertical = run(balls, false);
+            double sideways = run(balls, true);
+
+            System.out.printf("%d\t%.1f\t\t\t%.1f\t\t\t%.2f%n", r, vertical,
+                    sideways, sideways / vertical);
+        }
+    }
+
+    /**
+     * Fills a world, steps it, and measures the time taken.
+     *
+     * @param balls the number of balls
+     * @param sideways whether the balls are thrown sideways between walls
+     *        through air with drag
+     * @return the time per ball per step in nanoseconds
+     */
+    private static double run(int balls, boolean sideways)
+    {
+        Material[] materials = {new Material(Material.ID_RUBBER),
+                new Material(Material.ID_IRON),
+                new Material(Material.ID_STONE)};
+        Random random = new Random(1);
+        World world = new World();
+
+        if(sideways)
+        {
+            world.setWalls(0, WIDTH);
+            world.setDrag(DRAG);
+        }
+
+        for(int i = 0; i < balls; i++)
+        {
+            int added = world.add(random.nextDouble() * WIDTH,
+                    random.nextDouble() * MAX_HEIGHT, 0.15,
+                    materials[i % materials.length]);
+
+            if(sideways)
+            {
+                world.applyImpulse(added,
+                        (random.nextDouble() * 2 - 1) * MAX_THROW, 0);
+            }
+        }
+
+        long start = System.nanoTime();
+
+        for(int i = 0; i < STEPS; i++)
+        {
+            world.step(STEP);
+        }
+
+        return (double)(System.nanoTime() - start) / STEPS / balls;
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bounce.logic.BounceArea;
+import bounce.logic.Converter;
+import bounce.logic.Material;
+import bounce.logic.Simulation;
+import bounce.logic.VirtualClock;
+import bounce.logic.VirtualThreads;
+
+/**
+ * Compares ways of running many independent single-ball simulations that move
+ * on together, a tick at a time, as the displays of the graphical interface
+ * do.  Each simulation drops a ball of one of three materials from one of
+ * twenty heights, and is stepped until the ball comes to rest or a few
+ * seconds have passed.
+ * <ul>
+ * <li><em>virtual</em>: a virtual thread for each simulation, running a
+ * sequential calculation loop that sleeps on a {@link VirtualClock}, the
+ * threads sharing the runtime's carrier threads</li>
+ * <li><em>platform</em>: the same loop with a platform thread for each
+ * simulation, as when every display had a calculation thread of its own</li>
+ * <li><em>pooled</em>: a fixed pool of one thread per processor, given a task
+ * for each share of the simulations on every tick; the loop cannot sleep, so
+ * it is turned inside out into one step per task</li>
+ * <li><em>single</em>: the calling thread stepping every simulation in turn
+ * on every tick, for comparison</li>
+ * </ul>
+ * <p>Where the Java runtime has no virtual threads, the first mode falls back
+ * to platform threads and is marked with an asterisk.</p>
+ *
+ * <pre>
+ * usage: bounce.bench.ScenarioBenchmark [simulations...]
+ * </pre>
+ */
+public class ScenarioBenchmark
+{
+    /** The simulated time between steps in milliseconds */
+    private static final int STEP = 10;
+
+    /** The simulated time after which a simulation is stopped */
+    private static final long LIMIT = 5000;
+
+    /** The number of different drop heights */
+    private static final int HEIGHTS = 20;
+
+    /** The difference in meters between drop heights */
+    private static final double HEIGHT_STEP = 0.5;
+
+    /** The name of each thread of the pool, followed by its number */
+    private static final String THREAD_NAME_POOL = "thread-pool-";
+
+    /** The materials given in turn to the balls */
+    private static final int[] MATERIALS = {
+            Material.ID_RUBBER, Material.ID_IRON, Material.ID_STONE};
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optionally the numbers of simulations to measure
+     * @throws Exception if a thread is interrupted or a simulation fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int[] sizes = {100, 1000, 10000};
+
+        if(args.length > 0)
+        {
+            sizes = new int[args.length];
+
+            for(int i = 0; i < args.length; i++)
+            {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        String virtual = VirtualThreads.isAvailable() ? "virtual" : "virtual*";
+
+        System.out.println(STEP + " ms steps for up to " + LIMIT / 1000d +
+                " s, " + Runtime.getRuntime().availableProcessors() +
+                " processors");
+
+        if(!VirtualThreads.isAvailable())
+        {
+            System.out.println("* virtual threads are not available, " +
+                    "platform threads were used");
+        }
+
+        System.out.println("simulations\tmode\t\ttime (ms)\tper step (ns)" +
+                "\tbounces");
+
+        for(int count : sizes)
+        {
+            // Once each to warm up, then measured
+            for(boolean print : new boolean[] {false, true})
+            {
+                runThreads(count, VirtualThreads.virtualFactory(), virtual,
+                        print);
+                runThreads(count, VirtualThreads.platformFactory(),
+                        "platform", print);
+                runPooled(count, print);
+                runSingle(count, print);
+            }
+        }
+    }
+
+    /**
+     * Creates the simulations.
+     *
+     * @param count the number of simulations
+     * @return the simulations
+     */
+    private static Scenario[] createScenarios(int count)
+    {
+        Scenario[] scenarios = new Scenario[count];
+
+        for(int i = 0; i < count; i++)
+        {
+            scenarios[i] = new Scenario(HEIGHT_STEP * (1 + i % HEIGHTS),
+                    MATERIALS[i % MATERIALS.length]);
+        }
+
+        return scenarios;
+    }
+
+    /**
+     * Runs each simulation on a thread of its own, sleeping on a shared
+     * virtual clock between steps.
+     *
+     * @param count the number of simulations
+     * @param factory the factory of the threads
+     * @param mode the name of the mode printed
+     * @param print whether to print the results
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    private static void runThreads(int count, ThreadFactory factory,
+            String mode, boolean print) throws InterruptedException
+    {
+        Scenario[] scenarios = createScenarios(count);
+        VirtualClock clock = new VirtualClock(STEP);
+        Thread[] threads = new Thread[count];
+        long start = System.nanoTime();
+
+        for(int i = 0; i < count; i++)
+        {
+            final Scenario scenario = scenarios[i];
+            final VirtualClock.Sleeper sleeper = clock.register();
+
+            threads[i] = factory.newThread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        do
+                        {
+                            sleeper.sleep();
+                        }
+                        while(scenario.step());
+                    }
+                    finally
+                    {
+                        sleeper.leave();
+                    }
+                }
+            });
+        }
+
+        for(Thread thread : threads)
+        {
+            thread.start();
+        }
+
+        for(Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        report(scenarios, mode, System.nanoTime() - start, print);
+    }
+
+    /**
+     * Steps the simulations on a fixed pool of threads, giving each thread a
+     * share of them on every tick and waiting for all to finish before the
+     * next.
+     *
+     * @param count the number of simulations
+     * @param print whether to print the results
+     * @throws InterruptedException if the calling thread is interrupted
+     * @throws ExecutionException if a simulation fails
+     */
+    private static void runPooled(int count, boolean print)
+            throws InterruptedException, ExecutionException
+    {
+        final Scenario[] scenarios = createScenarios(count);
+        int workers = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(workers,
+                new ThreadFactory()
+        {
+            private final AtomicInteger threads = new AtomicInteger();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r,
+                        THREAD_NAME_POOL + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        ArrayList<Callable<Integer>> shares =
+                new ArrayList<Callable<Integer>>();
+
+        for(int w = 0; w < workers; w++)
+        {
+            final int from = (int)((long)count * w / workers);
+            final int to = (int)((long)count * (w + 1) / workers);
+
+            shares.add(new Callable<Integer>()
+            {
+                public Integer call()
+                {
+                    int running = 0;
+
+                    for(int i = from; i < to; i++)
+                    {
+                        if(!scenarios[i].done && scenarios[i].step())
+                        {
+                            running++;
+                        }
+                    }
+
+                    return running;
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+
+        try
+        {
+            int running;
+
+            do
+            {
+                running = 0;
+
+                for(Future<Integer> share : pool.invokeAll(shares))
+                {
+                    running += share.get();
+                }
+            }
+            while(running > 0);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        report(scenarios, "pooled\t", System.nanoTime() - start, print);
+    }
+
+    /**
+     * Steps every simulation in turn on the calling thread.
+     *
+     * @param count the number of simulations
+     * @param print whether to print the results
+     */
+    private static void runSingle(int count, boolean print)
+    {
+        Scenario[] scenarios = createScenarios(count);
+        long start = System.nanoTime();
+        int running;
+
+        do
+        {
+            running = 0;
+
+            for(Scenario scenario : scenarios)
+            {
+                if(!scenario.done && scenario.step())
+                {
+                    running++;
+                }
+            }
+        }
+        while(running > 0);
+
+        report(scenarios, "single\t", System.nanoTime() - start, print);
+    }
+
+    /**
+     * Prints the time taken to run the simulations.
+     *
+     * @param scenarios the simulations
+     * @param mode the name of the mode
+     * @param elapsed the time taken in nanoseconds
+     * @param print whether to print the results
+     */
+    private static void report(Scenario[] scenarios, String mode, long elapsed,
+            boolean print)
+    {
+        long steps = 0;
+        long bounces = 0;
+
+        for(Scenario scenario : scenarios)
+        {
+            steps += scenario.steps;
+            bounces += scenario.bounces;
+        }
+
+        if(print)
+        {
+            System.out.printf("%d\t\t%s\t%.1f\t\t%.1f\t\t%d%n",
+                    scenarios.length, mode, elapsed / 1e6,
+                    (double)elapsed / steps, bounces);
+        }
+    }
+
+    /**
+     * A ball dropped from a height, stepped on a virtual clock.
+     */
+    private static class Scenario
+    {
+        final Simulation simulation = new Simulation();
+        long now;
+        int steps;
+        int bounces;
+        boolean done;
+
+        /**
+         * Creates an instance of {@code Scenario} and starts its simulation.
+         *
+         * @param height the drop height in meters
+         * @param material the ID of the material of the ball
+         */
+        Scenario(double height, int material)
+        {
+            simulation.getBall().setMaterial(new Material(material));
+            simulation.reset(Converter.toMeters(BounceArea.DEFAULT_WIDTH),
+                    height);
+            simulation.start(0);
+        }
+
+        /**
+         * Moves the simulation on by one step.
+         *
+         * @return {@code true} if it is to be stepped again
+         */
+        boolean step()
+        {
+            now += STEP;
+            steps++;
+
+            if(simulation.step(now))
+            {
+                bounces++;
+            }
+
+            done = !simulation.isRunning() || now >= LIMIT;
+            return !done;
+        }
+    }
+}
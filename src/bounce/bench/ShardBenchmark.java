@@ -0,0 +1,161 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.bench;
+
+import java.util.Random;
+
+import bounce.logic.Material;
+import bounce.logic.ShardedWorld;
+import bounce.logic.World;
+
+/**
+ * Measures how the throughput of a {@link ShardedWorld} follows the number of
+ * threads stepping it, and checks that every ball ends where a single
+ * {@link World} puts it.  The same balls are dropped into a world with one,
+ * two, four... shards up to the specified number, and each is stepped for the
+ * same simulated time.
+ *
+ * <pre>
+ * usage: bounce.bench.ShardBenchmark [balls] [seconds] [threads]
+ * </pre>
+ */
+public class ShardBenchmark
+{
+    /** The simulated time between steps in seconds */
+    private static final double STEP = 0.01;
+
+    /** The greatest drop height in meters */
+    private static final double MAX_HEIGHT = 100;
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optionally the number of balls, the simulated time in
+     *        seconds, and the greatest number of threads
+     */
+    public static void main(String[] args)
+    {
+        int balls = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) :
+                Runtime.getRuntime().availableProcessors();
+        int steps = (int)(seconds / STEP);
+
+        World reference = new World();
+        populate(reference, null, balls);
+
+        long start = System.nanoTime();
+
+        for(int i = 0; i < steps; i++)
+        {
+            reference.step(STEP);
+        }
+
+        double single = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(balls + " balls, " + steps + " steps of " + STEP +
+                " s, " + Runtime.getRuntime().availableProcessors() +
+                " processors");
+        System.out.println("threads\tseconds\tball steps/s\tspeedup\tmatches");
+        print("world", single, balls, steps, single, true);
+
+        for(int t = 1; t <= threads; t = t < threads ? Math.min(t * 2, threads) :
+                threads + 1)
+        {
+            try(ShardedWorld world = new ShardedWorld(t))
+            {
+                populate(null, world, balls);
+
+                start = System.nanoTime();
+
+                for(int i = 0; i < steps; i++)
+                {
+                    world.step(STEP);
+                }
+
+                double elapsed = (System.nanoTime() - start) / 1e9;
+
+                print(Integer.toString(t), elapsed, balls, steps, single,
+                        matches(reference, world));
+            }
+        }
+    }
+
+    /**
+     * Drops the same balls into a world, using the same random heights every
+     * time.
+     *
+     * @param world a single world, or {@code null}
+     * @param sharded a sharded world, or {@code null}
+     * @param balls the number of balls
+     */
+    private static void populate(World world, ShardedWorld sharded, int balls)
+    {
+        Material[] materials = {new Material(Material.ID_RUBBER),
+                new Material(Material.ID_IRON),
+                new Material(Material.ID_STONE)};
+        Random random = new Random(1);
+
+        for(int i = 0; i < balls; i++)
+        {
+            double y = random.nextDouble() * MAX_HEIGHT;
+            Material material = materials[i % materials.length];
+
+            if(world != null)
+            {
+                world.add(0, y, 0.15, material);
+            }
+            else
+            {
+                sharded.add(0, y, 0.15, material);
+            }
+        }
+    }
+
+    /**
+     * Indicates whether every ball in a sharded world has exactly the state
+     * it has in a single world.
+     *
+     * @param reference the single world
+     * @param world the sharded world
+     * @return {@code true} if every ball matches
+     */
+    private static boolean matches(World reference, ShardedWorld world)
+    {
+        for(int i = 0; i < reference.size(); i++)
+        {
+            if(reference.getY(i) != world.getY(i) ||
+                    reference.getVelocity(i) != world.getVelocity(i) ||
+                    reference.isSleeping(i) != world.isSleeping(i))
+            {
+                return false;
+            }
+        }
+
+        return reference.getActiveCount() == world.getActiveCount();
+    }
+
+    /**
+     * Prints one line of results.
+     *
+     * @param name the number of threads, or the name of the reference
+     * @param seconds the time taken in seconds
+     * @param balls the number of balls
+     * @param steps the number of steps
+     * @param single the time taken by a single world in seconds
+     * @param matches whether the result matched that of a single world
+     */
+    private static void print(String name, double seconds, int balls,
+            int steps, double single, boolean matches)
+    {
+        System.out.printf("%s\t%.2f\t%.3g\t%.2f\t%s%n", name, seconds,
+                (double)balls * steps / seconds, single / seconds,
+                matches ? "yes" : "NO");
+    }
+}
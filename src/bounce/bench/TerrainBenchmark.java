@@ -0,0 +1,154 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.bench;
+
+import java.util.Random;
+
+import bounce.logic.Material;
+import bounce.logic.Terrain;
+import bounce.logic.World;
+
+/**
+ * Measures how the cost of a step of a {@link World} follows the number of
+ * segments of its {@link Terrain}.  Balls of mixed materials are dropped from
+ * random heights above hills drawn through points about as far apart as the
+ * balls are wide, so that a terrain of more segments is a wider one.  The
+ * first seconds are measured, while some balls are in the air and the rest
+ * bounce or roll on the slopes.  A world on flat ground is measured alongside
+ * for comparison.
+ *
+ * <pre>
+ * usage: bounce.bench.TerrainBenchmark [balls] [segments...]
+ * </pre>
+ */
+public class TerrainBenchmark
+{
+    /** The simulated time between steps in seconds */
+    private static final double STEP = 0.01;
+
+    /** The number of steps measured */
+    private static final int STEPS = 300;
+
+    /** The mean distance in meters between the points of the terrain */
+    private static final double SPACING = 0.1;
+
+    /** The greatest height of the hills in meters */
+    private static final double HILL_HEIGHT = 5;
+
+    /** The greatest drop height in meters, above the hills */
+    private static final double MAX_HEIGHT = 10;
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optionally the number of balls, followed by the numbers of
+     *        segments to measure
+     */
+    public static void main(String[] args)
+    {
+        int balls = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int[] sizes = {10000, 100000, 1000000};
+
+        if(args.length > 1)
+        {
+            sizes = new int[args.length - 1];
+
+            for(int i = 1; i < args.length; i++)
+            {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println(balls + " balls, " + STEPS + " steps of " + STEP +
+                " s");
+        System.out.println("segments\tstep (us)\tper ball (ns)\timpacts");
+
+        // Once to warm up, then measured
+        run(balls, null, false);
+        run(balls, null, true);
+
+        for(int segments : sizes)
+        {
+            Terrain terrain = hills(segments);
+
+            run(balls, terrain, false);
+            run(balls, terrain, true);
+        }
+    }
+
+    /**
+     * Creates rolling hills through points at uneven spacing.
+     *
+     * @param segments the number of segments
+     * @return the terrain
+     */
+    private static Terrain hills(int segments)
+    {
+        Random random = new Random(segments);
+        double[] xs = new double[segments + 1];
+        double[] heights = new double[segments + 1];
+
+        for(int k = 0; k <= segments; k++)
+        {
+            xs[k] = (k + (k > 0 && k < segments ?
+                    random.nextDouble() * 0.5 : 0)) * SPACING;
+            heights[k] = HILL_HEIGHT / 2 * (1 + Math.sin(xs[k] / 7) *
+                    Math.cos(xs[k] / 23));
+        }
+
+        return new Terrain(xs, heights);
+    }
+
+    /**
+     * Fills a world, steps it, and prints the time taken.
+     *
+     * @param balls the number of balls
+     * @param terrain the terrain, or {@code null} for flat ground
+     * @param print whether to print the results
+     */
+    private static void run(int balls, Terrain terrain, boolean print)
+    {
+        Material[] materials = {new Material(Material.ID_RUBBER),
+                new Material(Material.ID_IRON),
+                new Material(Material.ID_STONE)};
+        Random random = new Random(1);
+        World world = new World();
+        double width = terrain == null ? balls * SPACING :
+                terrain.getRight();
+
+        world.setWalls(0, width);
+        world.setTerrain(terrain);
+
+        for(int i = 0; i < balls; i++)
+        {
+            world.add(random.nextDouble() * (width - 0.15),
+                    HILL_HEIGHT + random.nextDouble() * MAX_HEIGHT, 0.15,
+                    materials[i % materials.length]);
+        }
+
+        long impacts = 0;
+        long start = System.nanoTime();
+
+        for(int i = 0; i < STEPS; i++)
+        {
+            impacts += world.step(STEP);
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        if(print)
+        {
+            System.out.printf("%s\t\t%.1f\t\t%.1f\t\t%d%n",
+                    terrain == null ? "flat" :
+                            String.valueOf(terrain.getSegmentCount()),
+                    elapsed / 1000d / STEPS, (double)elapsed / STEPS / balls,
+                    impacts);
+        }
+    }
+}
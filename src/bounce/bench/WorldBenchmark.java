@@ -0,0 +1,82 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.bench;
+
+import java.util.Random;
+
+import bounce.logic.Material;
+import bounce.logic.World;
+
+/**
+ * Measures how the cost of stepping a {@link World} follows the number of
+ * moving balls as they come to rest.  Balls of mixed materials are dropped
+ * from random heights and the world is stepped until most are asleep; the
+ * time per step is reported at intervals alongside the size of the active
+ * set.
+ *
+ * <pre>
+ * usage: bounce.bench.WorldBenchmark [balls] [seconds]
+ * </pre>
+ */
+public class WorldBenchmark
+{
+    /** The simulated time between steps in seconds */
+    private static final double STEP = 0.01;
+
+    /** The number of steps between reports */
+    private static final int REPORT_INTERVAL = 100;
+
+    /** The greatest drop height in meters */
+    private static final double MAX_HEIGHT = 10;
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optionally the number of balls and the simulated time in
+     *        seconds
+     */
+    public static void main(String[] args)
+    {
+        int balls = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+        Material[] materials = {new Material(Material.ID_RUBBER),
+                new Material(Material.ID_IRON),
+                new Material(Material.ID_STONE)};
+        Random random = new Random(1);
+        World world = new World();
+
+        for(int i = 0; i < balls; i++)
+        {
+            world.add(0, random.nextDouble() * MAX_HEIGHT, 0.15,
+                    materials[i % materials.length]);
+        }
+
+        System.out.println(balls + " balls, step " + STEP + " s");
+        System.out.println("time (s)\tactive\tsleeping\tstep (us)");
+
+        int steps = (int)(seconds / STEP);
+        long elapsed = 0;
+
+        for(int i = 1; i <= steps; i++)
+        {
+            long start = System.nanoTime();
+            world.step(STEP);
+            elapsed += System.nanoTime() - start;
+
+            if(i % REPORT_INTERVAL == 0)
+            {
+                System.out.printf("%.1f\t%d\t%d\t%.1f%n", world.getTime(),
+                        world.getActiveCount(), world.getSleepingCount(),
+                        elapsed / 1000d / REPORT_INTERVAL);
+                elapsed = 0;
+            }
+        }
+    }
+}
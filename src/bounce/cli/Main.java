@@ -0,0 +1,738 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import bounce.logic.AdaptiveIntegrator;
+import bounce.logic.BounceArea;
+import bounce.logic.Converter;
+import bounce.logic.EulerIntegrator;
+import bounce.logic.FixedPointSimulation;
+import bounce.logic.Integrator;
+import bounce.logic.Material;
+import bounce.logic.RungeKuttaIntegrator;
+import bounce.logic.Simulation;
+import bounce.logic.VerletIntegrator;
+import bounce.logic.VirtualClock;
+import bounce.logic.VirtualThreads;
+
+/**
+ * Runs one or more bounce simulations without a graphical interface and writes
+ * every impact with the ground as a line of text.  The simulations are driven by
+ * a virtual clock, so a run completes as quickly as the calculations allow and
+ * always produces the same output for the same input.
+ * <p>The simulations are run one after another, or each on a thread of its
+ * own, all of them sleeping on a shared {@link VirtualClock} between
+ * calculations.  Virtual threads let tens of thousands of simulations run at
+ * once; where the Java runtime has none, platform threads are used
+ * instead.  The output is the same either way.</p>
+ * <p>This class, and every class it uses, must never refer to AWT or Swing so
+ * that the JVM can start and exit without initializing a toolkit.</p>
+ *
+ * <pre>
+ * usage: bounce.cli.Main [options]
+ *   -h, --height &lt;m&gt;      drop height in meters (default 5)
+ *   -m, --material &lt;name&gt; rubber, iron, stone, elastic or a material ID
+ *   -f, --file &lt;path&gt;     read scenarios from a file, one per line:
+ *                          &lt;height&gt; [material]
+ *   -o, --out &lt;path&gt;      write the results to a file instead of stdout
+ *   -s, --step &lt;ms&gt;       virtual milliseconds between calculations
+ *   -t, --limit &lt;s&gt;       virtual seconds after which a run is stopped
+ *   -i, --integrator &lt;name&gt; closed (default), euler, verlet, rk4 or
+ *                          adaptive
+ *   -x, --arithmetic &lt;name&gt; double (default) or fixed, for reproducible
+ *                          integer arithmetic with the closed form
+ *   -p, --threads &lt;mode&gt; none (default) to run the scenarios one after
+ *                          another, or virtual or platform for a thread
+ *                          each
+ * </pre>
+ */
+public class Main
+{
+    /** The exit status for a successful run */
+    public static final int EXIT_OK = 0;
+
+    /** The exit status for invalid arguments or scenarios */
+    public static final int EXIT_USAGE = 1;
+
+    /** The exit status for a failure to read or write a file */
+    public static final int EXIT_IO = 2;
+
+    /** The default drop height in meters */
+    public static final double DEFAULT_HEIGHT = 5;
+
+    /** The default number of virtual milliseconds between calculations */
+    public static final int DEFAULT_STEP = 10;
+
+    /** The default number of virtual seconds after which a run is stopped */
+    public static final int DEFAULT_LIMIT = 600;
+
+    /** The header written before the results */
+    private static final String HEADER =
+            "scenario\theight\tmaterial\tbounce\ttime\tvelocity\tapex";
+
+    /** The material IDs that can be referred to by name */
+    private static final int[] NAMED_MATERIALS = {
+            Material.ID_RUBBER, Material.ID_IRON, Material.ID_STONE, -1};
+
+    private ArrayList<double[]> scenarios = new ArrayList<double[]>();
+    private String outPath;
+    private int step = DEFAULT_STEP;
+    private int limit = DEFAULT_LIMIT;
+    private String integrator;
+    private boolean fixed;
+    private String threads;
+
+    /**
+     * Parses the command-line arguments.
+     *
+     * @param args the command-line arguments
+     *
+     * @throws IllegalArgumentException if an argument is invalid
+     * @throws IOException if a scenario file cannot be read
+     */
+    void parse(String[] args) throws IOException
+    {
+        double height = DEFAULT_HEIGHT;
+        int material = Material.ID_RUBBER;
+        boolean fromFile = false;
+
+        for(int i = 0; i < args.length; i++)
+        {
+            String arg = args[i];
+
+            if(i + 1 >= args.length)
+            {
+                throw new IllegalArgumentException("missing value for " + arg);
+            }
+
+            String value = args[++i];
+
+            if("-h".equals(arg) || "--height".equals(arg))
+            {
+                height = parseHeight(value);
+            }
+            else if("-m".equals(arg) || "--material".equals(arg))
+            {
+                material = parseMaterial(value);
+            }
+            else if("-f".equals(arg) || "--file".equals(arg))
+            {
+                readScenarios(value);
+                fromFile = true;
+            }
+            else if("-o".equals(arg) || "--out".equals(arg))
+            {
+                outPath = value;
+            }
+            else if("-s".equals(arg) || "--step".equals(arg))
+            {
+                step = parsePositive(value);
+            }
+            else if("-t".equals(arg) || "--limit".equals(arg))
+            {
+                limit = parsePositive(value);
+            }
+            else if("-i".equals(arg) || "--integrator".equals(arg))
+            {
+                createIntegrator(value);
+                integrator = value;
+            }
+            else if("-x".equals(arg) || "--arithmetic".equals(arg))
+            {
+                fixed = parseArithmetic(value);
+            }
+            else if("-p".equals(arg) || "--threads".equals(arg))
+            {
+                createThreadFactory(value);
+                threads = value;
+            }
+            else
+            {
+                throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+
+        if(!fromFile)
+        {
+            scenarios.add(new double[] {height, material});
+        }
+
+        if(fixed && createIntegrator(integrator) != null)
+        {
+            throw new IllegalArgumentException(
+                    "fixed arithmetic requires the closed integrator");
+        }
+
+        for(double[] scenario : scenarios)
+        {
+            if(fixed && scenario[0] > FixedPointSimulation.MAX_HEIGHT)
+            {
+                throw new IllegalArgumentException("height " + scenario[0] +
+                        " exceeds the fixed arithmetic limit of " +
+                        FixedPointSimulation.MAX_HEIGHT);
+            }
+        }
+    }
+
+    /**
+     * Reads scenarios from a file.  Blank lines and lines beginning with '#'
+     * are ignored.
+     *
+     * @param path the path of the scenario file
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private void readScenarios(String path) throws IOException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(path), "UTF-8"));
+
+        try
+        {
+            String line;
+            int lineNumber = 0;
+
+            while((line = in.readLine()) != null)
+            {
+                lineNumber++;
+                line = line.trim();
+
+                if(line.length() == 0 || line.charAt(0) == '#')
+                {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+
+                try
+                {
+                    scenarios.add(new double[] {
+                            parseHeight(fields[0]),
+                            fields.length > 1 ?
+                                parseMaterial(fields[1]) : Material.ID_RUBBER});
+                }
+                catch(IllegalArgumentException e)
+                {
+                    throw new IllegalArgumentException(path + ":" +
+                            lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Parses a drop height in meters.
+     *
+     * @param value the text to parse
+     *
+     * @return the height in meters
+     * @throws IllegalArgumentException if the height is not positive
+     */
+    public static double parseHeight(String value)
+    {
+        try
+        {
+            double height = Double.parseDouble(value);
+
+            if(height > 0)
+            {
+                return height;
+            }
+        }
+        catch(NumberFormatException e)
+        {
+        }
+
+        throw new IllegalArgumentException("invalid height " + value);
+    }
+
+    /**
+     * Parses a positive whole number.
+     *
+     * @param value the text to parse
+     *
+     * @return the parsed number
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public static int parsePositive(String value)
+    {
+        try
+        {
+            int i = Integer.parseInt(value);
+
+            if(i > 0)
+            {
+                return i;
+            }
+        }
+        catch(NumberFormatException e)
+        {
+        }
+
+        throw new IllegalArgumentException("invalid value " + value);
+    }
+
+    /**
+     * Parses a material either by its name, as returned by
+     * {@link Material#toString()}, or by its ID.
+     *
+     * @param value the text to parse
+     *
+     * @return the ID of the material
+     * @throws IllegalArgumentException if the material is unknown
+     */
+    public static int parseMaterial(String value)
+    {
+        for(int id : NAMED_MATERIALS)
+        {
+            String name = new Material(id).toString().toLowerCase();
+            String v = value.toLowerCase();
+
+            if(name.equals(v) || name.endsWith(" " + v))
+            {
+                return id;
+            }
+        }
+
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch(NumberFormatException e)
+        {
+            throw new IllegalArgumentException("unknown material " + value);
+        }
+    }
+
+    /**
+     * Parses the kind of arithmetic to use.
+     *
+     * @param value double or fixed
+     *
+     * @return {@code true} for fixed-point arithmetic
+     */
+    private static boolean parseArithmetic(String value)
+    {
+        if("double".equals(value))
+        {
+            return false;
+        }
+        else if("fixed".equals(value))
+        {
+            return true;
+        }
+
+        throw new IllegalArgumentException("unknown arithmetic " + value);
+    }
+
+    /**
+     * Creates an integrator from its name.
+     *
+     * @param name closed, euler, verlet, rk4 or adaptive
+     *
+     * @return the integrator, or {@code null} for the closed form
+     */
+    static Integrator createIntegrator(String name)
+    {
+        if(name == null || "closed".equals(name))
+        {
+            return null;
+        }
+        else if("euler".equals(name))
+        {
+            return new EulerIntegrator();
+        }
+        else if("verlet".equals(name))
+        {
+            return new VerletIntegrator();
+        }
+        else if("rk4".equals(name))
+        {
+            return new RungeKuttaIntegrator();
+        }
+        else if("adaptive".equals(name))
+        {
+            return new AdaptiveIntegrator();
+        }
+
+        throw new IllegalArgumentException("unknown integrator " + name);
+    }
+
+    /**
+     * Creates the factory of the threads on which scenarios are run from the
+     * name of its mode.
+     *
+     * @param name none, virtual or platform
+     *
+     * @return the factory, or {@code null} to run the scenarios one after
+     *         another on the calling thread
+     */
+    static ThreadFactory createThreadFactory(String name)
+    {
+        if(name == null || "none".equals(name))
+        {
+            return null;
+        }
+        else if("virtual".equals(name))
+        {
+            return VirtualThreads.virtualFactory();
+        }
+        else if("platform".equals(name))
+        {
+            return VirtualThreads.platformFactory();
+        }
+
+        throw new IllegalArgumentException("unknown threads " + name);
+    }
+
+    /**
+     * Runs every scenario and writes the results.
+     *
+     * @param out the stream to which the results are written
+     *
+     * @throws IOException if the results cannot be written
+     */
+    void run(OutputStream out) throws IOException
+    {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"),
+                1 << 16);
+        StringBuilder sb = new StringBuilder(128);
+
+        w.write(HEADER);
+        w.write('\n');
+
+        ThreadFactory factory = createThreadFactory(threads);
+
+        if(factory != null)
+        {
+            runConcurrently(factory, w);
+        }
+        else
+        {
+            for(int i = 0; i < scenarios.size(); i++)
+            {
+                runScenario(i, sb, w, null);
+            }
+        }
+
+        w.flush();
+    }
+
+    /**
+     * Runs every scenario on a thread of its own, all of them sleeping on one
+     * {@link VirtualClock} between calculations, and writes the results in
+     * the order of the scenarios once every one has finished.
+     *
+     * @param factory the factory of the threads
+     * @param w the writer to which the results are written
+     *
+     * @throws IOException if the results cannot be written
+     */
+    private void runConcurrently(ThreadFactory factory, Writer w)
+            throws IOException
+    {
+        if("virtual".equals(threads) && !VirtualThreads.isAvailable())
+        {
+            System.err.println("bounce: virtual threads are not available, " +
+                    "using platform threads");
+        }
+
+        final VirtualClock clock = new VirtualClock(step);
+        final StringWriter[] results = new StringWriter[scenarios.size()];
+        final AtomicReference<RuntimeException> failure =
+                new AtomicReference<RuntimeException>();
+        Thread[] runners = new Thread[results.length];
+
+        // Every scenario is registered before any starts, so all start at 0
+        for(int i = 0; i < runners.length; i++)
+        {
+            final int index = i;
+            final VirtualClock.Sleeper sleeper = clock.register();
+
+            results[i] = new StringWriter();
+            runners[i] = factory.newThread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        runScenario(index, new StringBuilder(128),
+                                results[index], sleeper);
+                    }
+                    catch(IOException e)
+                    {
+                        // A StringWriter does not throw
+                    }
+                    catch(RuntimeException e)
+                    {
+                        failure.compareAndSet(null, e);
+                    }
+                    finally
+                    {
+                        sleeper.leave();
+                    }
+                }
+            });
+        }
+
+        for(Thread runner : runners)
+        {
+            runner.start();
+        }
+
+        try
+        {
+            for(Thread runner : runners)
+            {
+                runner.join();
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted");
+        }
+
+        if(failure.get() != null)
+        {
+            throw failure.get();
+        }
+
+        for(StringWriter result : results)
+        {
+            w.write(result.toString());
+        }
+    }
+
+    /**
+     * Runs a scenario with the chosen arithmetic.
+     *
+     * @param index the index of the scenario, starting at zero
+     * @param sb a buffer used to build each line
+     * @param w the writer to which the lines are written
+     * @param sleeper the sleeper through which the scenario waits for the
+     *        shared clock between calculations, or {@code null} if it does
+     *        not wait
+     *
+     * @throws IOException if a line cannot be written
+     */
+    private void runScenario(int index, StringBuilder sb, Writer w,
+            VirtualClock.Sleeper sleeper) throws IOException
+    {
+        double[] scenario = scenarios.get(index);
+
+        if(fixed)
+        {
+            runFixedScenario(index + 1, scenario[0], (int)scenario[1], sb, w,
+                    sleeper);
+        }
+        else
+        {
+            runScenario(index + 1, scenario[0], (int)scenario[1], sb, w,
+                    sleeper);
+        }
+    }
+
+    /**
+     * Drops a ball from the specified height and writes one line for each
+     * impact with the ground.  The bounce area is given the default width.
+     *
+     * @param number the number of the scenario, starting at one
+     * @param height the drop height in meters
+     * @param material the ID of the material the ball is made of
+     * @param sb a buffer used to build each line
+     * @param w the writer to which the lines are written
+     * @param sleeper the sleeper through which the scenario waits for the
+     *        shared clock between calculations, or {@code null} if it does
+     *        not wait
+     *
+     * @throws IOException if a line cannot be written
+     */
+    private void runScenario(int number, double height, int material,
+            StringBuilder sb, Writer w, VirtualClock.Sleeper sleeper)
+            throws IOException
+    {
+        Simulation simulation = new Simulation();
+        simulation.getBall().setMaterial(new Material(material));
+        simulation.setIntegrator(createIntegrator(integrator));
+        simulation.reset(Converter.toMeters(BounceArea.DEFAULT_WIDTH), height);
+
+        String name = simulation.getBall().getMaterial().toString();
+        long now = 0;
+        long end = limit * 1000L;
+        int bounce = 0;
+
+        simulation.start(now);
+
+        while(simulation.isRunning() && now < end)
+        {
+            if(sleeper != null)
+            {
+                sleeper.sleep();
+            }
+
+            now += step;
+
+            if(simulation.step(now))
+            {
+                sb.setLength(0);
+                sb.append(number).append('\t')
+                        .append(height).append('\t')
+                        .append(name).append('\t')
+                        .append(++bounce).append('\t')
+                        .append(now / 1000d).append('\t')
+                        .append(round(simulation.getReboundVelocity()))
+                        .append('\t')
+                        .append(simulation.getBall().getApex()).append('\n');
+                w.append(sb);
+            }
+        }
+    }
+
+    /**
+     * Drops a ball from the specified height using fixed-point arithmetic and
+     * writes one line for each step in which the ball struck the ground.  The
+     * time written is that of the impact itself rather than of the step.
+     *
+     * @param number the number of the scenario, starting at one
+     * @param height the drop height in meters
+     * @param material the ID of the material the ball is made of
+     * @param sb a buffer used to build each line
+     * @param w the writer to which the lines are written
+     * @param sleeper the sleeper through which the scenario waits for the
+     *        shared clock between calculations, or {@code null} if it does
+     *        not wait
+     *
+     * @throws IOException if a line cannot be written
+     */
+    private void runFixedScenario(int number, double height, int material,
+            StringBuilder sb, Writer w, VirtualClock.Sleeper sleeper)
+            throws IOException
+    {
+        FixedPointSimulation simulation = new FixedPointSimulation();
+        simulation.getBall().setMaterial(new Material(material));
+        simulation.reset(Converter.toMeters(BounceArea.DEFAULT_WIDTH), height);
+
+        String name = simulation.getBall().getMaterial().toString();
+        long now = 0;
+        long end = limit * 1000L;
+
+        simulation.start(now);
+
+        while(simulation.isRunning() && now < end)
+        {
+            if(sleeper != null)
+            {
+                sleeper.sleep();
+            }
+
+            now += step;
+
+            if(simulation.step(now))
+            {
+                sb.setLength(0);
+                sb.append(number).append('\t')
+                        .append(height).append('\t')
+                        .append(name).append('\t')
+                        .append(simulation.getBounceCount()).append('\t')
+                        .append(simulation.getImpactTime() / 1e6).append('\t')
+                        .append(round(FixedPointSimulation.toMeters(
+                                simulation.getImpactVelocity())))
+                        .append('\t')
+                        .append(FixedPointSimulation.toMeters(
+                                simulation.getImpactApex())).append('\n');
+                w.append(sb);
+            }
+        }
+    }
+
+    /**
+     * Rounds the specified value to 3 decimal places, the precision used by
+     * {@link bounce.logic.Physics}.
+     *
+     * @param value the value to round
+     *
+     * @return the rounded value
+     */
+    private static double round(double value)
+    {
+        return Math.round(value * 1000) / 1000d;
+    }
+
+    /**
+     * Runs the simulations described by the command-line arguments and exits
+     * with {@link #EXIT_OK}, {@link #EXIT_USAGE} or {@link #EXIT_IO}.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args)
+    {
+        Main m = new Main();
+        int status = EXIT_OK;
+
+        try
+        {
+            m.parse(args);
+
+            if(m.outPath == null)
+            {
+                m.run(System.out);
+            }
+            else
+            {
+                OutputStream out = new FileOutputStream(m.outPath);
+
+                try
+                {
+                    m.run(out);
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println("bounce: " + e.getMessage());
+            status = EXIT_USAGE;
+        }
+        catch(IOException e)
+        {
+            System.err.println("bounce: " + e.getMessage());
+            status = EXIT_IO;
+        }
+
+        System.out.flush();
+
+        if(status != EXIT_OK)
+        {
+            System.exit(status);
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 
 import bounce.logic.BounceArea;
+import bounce.metrics.Metrics;
 
 /**
  * Manages the communication between various GUI and logic components.
@@ -114,9 +115,16 @@ public class Controller implements PropertyChangeListener
      */
     public void propertyChange(PropertyChangeEvent evt)
     {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+
         for(PropertyChangeListener view : views)
         {
             view.propertyChange(evt);
         }
+
+        if(Metrics.ENABLED)
+        {
+            Metrics.DISPATCH_TIME.record(System.nanoTime() - start);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,493 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.gui;
+
+import java.awt.Canvas;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.HierarchyBoundsAdapter;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.awt.image.BufferStrategy;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+
+import bounce.logic.BounceArea;
+import bounce.logic.Converter;
+import bounce.logic.Material;
+
+/**
+ * A display that renders actively: a dedicated thread draws each frame into a
+ * page-flipped {@link BufferStrategy} at a target rate, instead of asking
+ * Swing's repaint manager to paint when it sees fit.  This avoids the
+ * coalescing and latency of passive painting when many balls or high refresh
+ * rates are needed.  It shares the {@link AnimatedDisplay} contract of
+ * {@link BounceDisplay}, so the two can be swapped.
+ * <p>Active displays are used by {@code BounceControlPanel} when the system
+ * property {@value #PROPERTY_ACTIVE} is {@code true}; the target frame rate is
+ * read from {@value #PROPERTY_FPS}.</p>
+ */
+public class ActiveBounceDisplay extends Canvas implements AnimatedDisplay
+{
+    /** The system property that selects active displays */
+    public static final String PROPERTY_ACTIVE = "bounce.active";
+
+    /** The system property holding the target frame rate */
+    public static final String PROPERTY_FPS = "bounce.active.fps";
+
+    /** The default target frame rate in frames per second */
+    public static final int DEFAULT_FPS = 60;
+
+    /** The name of the thread that renders the display */
+    public static final String THREAD_NAME_RENDER = "thread-render";
+
+    /** The number of buffers in the buffer strategy */
+    private static final int BUFFERS = 2;
+
+    private Animation animation;
+    private DisplayRenderer renderer;
+    private PropertyChangeListener listener;
+
+    /** The event sent to the listener, which is the same every time */
+    private final PropertyChangeEvent clockEvent =
+            new PropertyChangeEvent(this, null, null, null);
+    private final long frameInterval;
+
+    /** The thread drawing frames, or {@code null} if none is running */
+    private volatile Thread renderThread;
+
+    /**
+     * Whether any part of the canvas can be seen, worked out on the event
+     * dispatch thread whenever it or an ancestor is shown, hidden, moved or
+     * resized, and read by the render thread
+     */
+    private volatile boolean onScreen = false;
+
+    /**
+     * Creates an instance of {@code ActiveBounceDisplay} rendering at the rate
+     * given by {@value #PROPERTY_FPS}, or {@value #DEFAULT_FPS} frames per
+     * second.
+     */
+    public ActiveBounceDisplay()
+    {
+        this(Integer.getInteger(PROPERTY_FPS, DEFAULT_FPS));
+    }
+
+    /**
+     * Creates an instance of {@code ActiveBounceDisplay}.
+     *
+     * @param fps the target frame rate in frames per second
+     */
+    public ActiveBounceDisplay(int fps)
+    {
+        setName(BounceDisplay.nextName());
+        setIgnoreRepaint(true);
+
+        // At least a nanosecond, however high the rate asked for
+        frameInterval = Math.max(1,
+                TimeUnit.SECONDS.toNanos(1) / Math.max(1, fps));
+        animation = new Animation(getName());
+        renderer = new DisplayRenderer(getName(), frameInterval,
+                TimeUnit.NANOSECONDS);
+
+        ViewportControls.install(this, renderer.getViewport());
+
+        addHierarchyListener(new HierarchyListener()
+        {
+            public void hierarchyChanged(HierarchyEvent e)
+            {
+                updateOnScreen();
+            }
+        });
+        addHierarchyBoundsListener(new HierarchyBoundsAdapter()
+        {
+            @Override
+            public void ancestorMoved(HierarchyEvent e)
+            {
+                updateOnScreen();
+            }
+
+            @Override
+            public void ancestorResized(HierarchyEvent e)
+            {
+                updateOnScreen();
+            }
+        });
+        addComponentListener(new ComponentAdapter()
+        {
+            @Override
+            public void componentMoved(ComponentEvent e)
+            {
+                updateOnScreen();
+            }
+
+            @Override
+            public void componentResized(ComponentEvent e)
+            {
+                updateOnScreen();
+            }
+
+            @Override
+            public void componentShown(ComponentEvent e)
+            {
+                updateOnScreen();
+            }
+
+            @Override
+            public void componentHidden(ComponentEvent e)
+            {
+                updateOnScreen();
+            }
+        });
+    }
+
+    /**
+     * Gets the component that shows the animation.
+     *
+     * @return this component
+     */
+    public Component getComponent()
+    {
+        return this;
+    }
+
+    /**
+     * Creates the buffer strategy once the canvas has a native peer.
+     */
+    @Override
+    public void addNotify()
+    {
+        super.addNotify();
+        createBufferStrategy(BUFFERS);
+        renderFrame();
+    }
+
+    /**
+     * Stops rendering before the native peer is destroyed.
+     */
+    @Override
+    public void removeNotify()
+    {
+        stopRendering();
+        super.removeNotify();
+    }
+
+    /**
+     * Paints a frame when the canvas is exposed while it is not animated.
+     * While it is animated, the render thread repaints it anyway.
+     *
+     * @param g ignored; frames are drawn through the buffer strategy
+     */
+    @Override
+    public void paint(Graphics g)
+    {
+        if(renderThread == null)
+        {
+            renderFrame();
+        }
+    }
+
+    /**
+     * Paints without clearing first, since every frame fills the canvas.
+     *
+     * @param g ignored; frames are drawn through the buffer strategy
+     */
+    @Override
+    public void update(Graphics g)
+    {
+        paint(g);
+    }
+
+    /**
+     * Works out whether any part of the canvas can be seen, taking into
+     * account a scroll pane it may be placed in.  This is called on the event
+     * dispatch thread, so that the render thread need only read the result.
+     */
+    private void updateOnScreen()
+    {
+        if(!isShowing())
+        {
+            onScreen = false;
+            return;
+        }
+
+        Container viewport =
+                SwingUtilities.getAncestorOfClass(JViewport.class, this);
+
+        if(viewport == null)
+        {
+            onScreen = true;
+            return;
+        }
+
+        Rectangle bounds = SwingUtilities.convertRectangle(
+                getParent(), getBounds(), viewport);
+
+        onScreen = bounds.intersects(0, 0, viewport.getWidth(),
+                viewport.getHeight());
+    }
+
+    /**
+     * Draws one frame into the back buffer and shows it.  Frames are redrawn
+     * if the contents of the buffers were lost while drawing.
+     */
+    private void renderFrame()
+    {
+        BufferStrategy strategy = getBufferStrategy();
+
+        if(strategy == null)
+        {
+            return;
+        }
+
+        do
+        {
+            do
+            {
+                Graphics2D g = (Graphics2D)strategy.getDrawGraphics();
+
+                try
+                {
+                    renderer.setTerrain(animation.getTerrain());
+                    renderer.paint(g, getWidth(), getHeight(),
+                            getPreferredSize(), animation.getBalls(),
+                            animation.isRunning());
+                }
+                finally
+                {
+                    g.dispose();
+                }
+            }
+            while(strategy.contentsRestored());
+
+            strategy.show();
+        }
+        while(strategy.contentsLost());
+
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    /**
+     * Starts the thread that draws a frame at every deadline of the target
+     * frame rate.  Frames are not drawn while the canvas cannot be seen.
+     */
+    private synchronized void startRendering()
+    {
+        if(renderThread != null)
+        {
+            return;
+        }
+
+        renderThread = new Thread(THREAD_NAME_RENDER + "-" + getName())
+        {
+            @Override
+            public void run()
+            {
+                long deadline = System.nanoTime();
+
+                while(renderThread == this)
+                {
+                    boolean visible = onScreen;
+                    animation.setOnScreen(visible);
+
+                    if(visible)
+                    {
+                        renderFrame();
+                    }
+
+                    deadline += frameInterval;
+                    long wait = deadline - System.nanoTime();
+
+                    if(wait > 0)
+                    {
+                        LockSupport.parkNanos(wait);
+                    }
+                    else
+                    {
+                        // Too far behind to catch up, so start afresh
+                        deadline = System.nanoTime();
+                    }
+                }
+            }
+        };
+        renderThread.setDaemon(true);
+        renderThread.start();
+    }
+
+    /**
+     * Stops the render thread, waiting for it to finish its current frame.
+     */
+    private void stopRendering()
+    {
+        Thread t;
+
+        synchronized(this)
+        {
+            t = renderThread;
+            renderThread = null;
+        }
+
+        if(t != null && t != Thread.currentThread())
+        {
+            LockSupport.unpark(t);
+
+            try
+            {
+                t.join();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Gets the time elapsed in seconds since the very beginning of the bounce.
+     *
+     * @return the time elapsed in seconds
+     */
+    public double getClockTime()
+    {
+        return animation.getClockTime();
+    }
+
+    /**
+     * Begins the animation by registering it with the shared
+     * {@link PhysicsScheduler} and starting the render thread.
+     */
+    public void start()
+    {
+        animation.start();
+        startRendering();
+    }
+
+    /**
+     * Stops the animation and repositions the falling object to its initial
+     * drop height.
+     */
+    public void reset()
+    {
+        stopRendering();
+        animation.reset(
+                Converter.toMeters((int)getPreferredSize().getWidth()),
+                Converter.toMeters((int)getPreferredSize().getHeight()));
+
+        notifyListener();
+        renderFrame();
+    }
+
+    /**
+     * Sets the listener that listens for updates to the elapsed time that gets
+     * displayed on the screen.
+     *
+     * @param listener the listener that monitors the time value
+     */
+    public void setPropertyChangeListener(PropertyChangeListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Notifies the listener when the elapsed time value has been updated.
+     */
+    private void notifyListener()
+    {
+        if(listener != null)
+        {
+            listener.propertyChange(clockEvent);
+        }
+    }
+
+    /**
+     * Resizes the canvas to the specified size and resets it.  The top-level
+     * ancestor is packed in the event that the resizing of the canvas requires
+     * a resizing of the entire window.
+     *
+     * @param size the size to which the canvas will be set
+     */
+    public void resizeDisplay(Dimension size)
+    {
+        setPreferredSize(size);
+        setSize(size);
+        reset();
+
+        Container container = SwingUtilities.getWindowAncestor(this);
+        if(container instanceof Main)
+        {
+            ((Main)container).packKeepingBottom();
+        }
+    }
+
+    /**
+     * Changes the material of the ball.
+     *
+     * @param material the new material
+     */
+    public void changeMaterial(Material material)
+    {
+        animation.setMaterial(material);
+        reset();
+    }
+
+    /**
+     * Sets whether the balls are antialiased, and repaints them.
+     *
+     * @param antialiased {@code true} to antialias
+     */
+    public void setAntialiased(boolean antialiased)
+    {
+        renderer.setAntialiased(antialiased);
+        repaint();
+    }
+
+    /**
+     * Changes the number of balls animated.
+     *
+     * @param count the number of balls, at least one
+     */
+    public void changeBallCount(int count)
+    {
+        animation.setBallCount(count);
+        reset();
+    }
+
+    /**
+     * Receives events from a controller when values to a relevant model are
+     * updated.
+     *
+     * @param evt the event received
+     *
+     * @see PropertyChangeListener
+     * @see PropertyChangeEvent
+     */
+    public void propertyChange(PropertyChangeEvent evt)
+    {
+        if(BounceArea.FIELD_SIZE.equals(evt.getPropertyName()))
+        {
+            resizeDisplay((Dimension)evt.getNewValue());
+        }
+        else if(BounceArea.FIELD_BALL_COUNT.equals(evt.getPropertyName()))
+        {
+            changeBallCount(((Integer)evt.getNewValue()).intValue());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.gui;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import bounce.logic.BounceArea;
+import bounce.logic.Converter;
+import bounce.logic.Material;
+import bounce.logic.Physics.Direction;
+
+/**
+ * Checks that the steady state of an animation allocates nothing: once
+ * warmed up, neither moving the ball on a tick nor painting a frame of it may
+ * allocate more than {@link #BUDGET_BYTES} bytes per thousand, as counted for
+ * the current thread by the JVM.  The process exits with status 1 if either
+ * budget is exceeded, so the check can be run as part of a build.
+ * <p>The animation is driven directly, on a virtual clock, rather than by the
+ * shared {@link PhysicsScheduler}, and its frames are painted to an image.
+ * When the ball comes to rest it is dropped again outside the measurement,
+ * since a reset is not part of the steady state, and the first frame after it,
+ * which takes up the new material, is not measured either.  An animation of
+ * many balls can be checked by giving their number.</p>
+ *
+ * <pre>
+ * usage: bounce.gui.AllocationBudget [iterations] [balls]
+ * </pre>
+ */
+public class AllocationBudget
+{
+    /** The greatest number of bytes allowed per thousand ticks or frames */
+    public static final long BUDGET_BYTES = 64;
+
+    /** The number of iterations run before measuring */
+    private static final int WARMUP = 50000;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+
+    private final Animation animation = new Animation("budget", null);
+    private final DisplayRenderer renderer =
+            new DisplayRenderer("budget", BounceDisplay.DELAY_ANIMATION);
+    private final Dimension area = new Dimension(
+            BounceArea.DEFAULT_WIDTH, BounceArea.DEFAULT_HEIGHT);
+    private final BufferedImage image = new BufferedImage(
+            area.width, area.height, BufferedImage.TYPE_INT_ARGB);
+    private final Graphics2D g = image.createGraphics();
+
+    private long now;
+    private long tickBytes;
+    private long frameBytes;
+
+    /**
+     * Runs the check and prints the results.
+     *
+     * @param args optionally the number of measured iterations and the number
+     *        of balls
+     */
+    public static void main(String[] args)
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int balls = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        AllocationBudget budget = new AllocationBudget();
+
+        budget.animation.setBallCount(balls);
+
+        budget.run(WARMUP);
+        budget.tickBytes = 0;
+        budget.frameBytes = 0;
+        budget.run(iterations);
+
+        boolean passed = budget.report("tick", budget.tickBytes, iterations) &
+                budget.report("frame", budget.frameBytes, iterations);
+
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Moves the ball and paints a frame the specified number of times.
+     *
+     * @param iterations the number of ticks and frames
+     */
+    private void run(int iterations)
+    {
+        long id = Thread.currentThread().getId();
+
+        for(int i = 0; i < iterations; i++)
+        {
+            boolean dropped = !animation.isRunning() || !isMoving();
+
+            if(dropped)
+            {
+                drop();
+            }
+
+            long start = threads.getThreadAllocatedBytes(id);
+            now += BounceDisplay.DELAY_CALC;
+            animation.tick(now);
+            long ticked = threads.getThreadAllocatedBytes(id);
+            renderer.paint(g, area.width, area.height, area,
+                    animation.getBalls(), true);
+            long painted = threads.getThreadAllocatedBytes(id);
+
+            tickBytes += ticked - start;
+
+            if(!dropped)
+            {
+                frameBytes += painted - ticked;
+            }
+        }
+    }
+
+    /**
+     * Drops the ball again, alternating between materials.
+     */
+    private void drop()
+    {
+        Material material = new Material(
+                animation.getBall().getMaterial().getId() == Material.ID_RUBBER ?
+                Material.ID_IRON : Material.ID_RUBBER);
+
+        animation.setMaterial(material);
+        animation.reset(Converter.toMeters(area.width),
+                Converter.toMeters(area.height));
+        now = System.currentTimeMillis();
+        animation.start(now);
+    }
+
+    /**
+     * Indicates whether the first ball painted on the last frame was moving.
+     *
+     * @return {@code false} once the ball has come to rest
+     */
+    private boolean isMoving()
+    {
+        return animation.getBall().getDirection() != Direction.NONE;
+    }
+
+    /**
+     * Prints the bytes allocated by ticks or frames, and whether they were
+     * within the budget.
+     *
+     * @param name the name of what was measured
+     * @param bytes the number of bytes allocated
+     * @param iterations the number of ticks or frames
+     * @return {@code true} if the allocation was within the budget
+     */
+    private boolean report(String name, long bytes, int iterations)
+    {
+        double perThousand = bytes * 1000d / iterations;
+        boolean passed = perThousand <= BUDGET_BYTES;
+
+        System.out.printf("%s: %d bytes in %d, %.1f per thousand: %s%n", name,
+                bytes, iterations, perThousand, passed ? "ok" : "OVER BUDGET");
+
+        return passed;
+    }
+}
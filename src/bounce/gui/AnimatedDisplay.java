@@ -0,0 +1,87 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.gui;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.beans.PropertyChangeListener;
+
+import bounce.logic.Material;
+
+/**
+ * A display in which a falling object is animated.  A display is registered
+ * with a {@code Controller} as a view, and resizes itself when the size of its
+ * {@code BounceArea} changes.
+ *
+ * @see BounceDisplay
+ * @see ActiveBounceDisplay
+ */
+public interface AnimatedDisplay extends PropertyChangeListener
+{
+    /**
+     * Gets the component that shows the animation.
+     *
+     * @return the component to be added to a container
+     */
+    Component getComponent();
+
+    /**
+     * Begins the animation.
+     */
+    void start();
+
+    /**
+     * Stops the animation and repositions the falling object to its initial
+     * drop height.
+     */
+    void reset();
+
+    /**
+     * Resizes the display to the specified size and resets it.
+     *
+     * @param size the size to which the display will be set
+     */
+    void resizeDisplay(Dimension size);
+
+    /**
+     * Changes the material of the falling object.
+     *
+     * @param material the new material
+     */
+    void changeMaterial(Material material);
+
+    /**
+     * Changes the number of falling objects.
+     *
+     * @param count the number of objects, at least one
+     */
+    void changeBallCount(int count);
+
+    /**
+     * Sets whether the falling objects are antialiased.
+     *
+     * @param antialiased {@code true} to antialias
+     */
+    void setAntialiased(boolean antialiased);
+
+    /**
+     * Gets the time elapsed in seconds since the very beginning of the bounce.
+     *
+     * @return the time elapsed in seconds
+     */
+    double getClockTime();
+
+    /**
+     * Sets the listener that listens for updates to the elapsed time that gets
+     * displayed on the screen.
+     *
+     * @param listener the listener that monitors the time value
+     */
+    void setPropertyChangeListener(PropertyChangeListener listener);
+}
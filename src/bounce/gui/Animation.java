@@ -0,0 +1,680 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.gui;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import bounce.logic.Ball;
+import bounce.logic.Material;
+import bounce.logic.Simulation;
+import bounce.logic.SpatialHash;
+import bounce.logic.StatePublisher;
+import bounce.logic.StateRing;
+import bounce.logic.SweepAndPrune;
+import bounce.logic.Terrain;
+import bounce.logic.World;
+import bounce.metrics.ImpactEvent;
+import bounce.metrics.Metrics;
+import bounce.metrics.SimulationEvent;
+import bounce.metrics.TickEvent;
+
+/**
+ * The animation shown by one display: a simulation, whether it is running, and
+ * whether the display showing it can be seen.  An animation is moved on by the
+ * shared {@link PhysicsScheduler}, independently of how its display paints.
+ * <p>The ball being simulated is never shared with the thread that paints.
+ * Every change to it is published to a {@link StateRing}, from which the
+ * painting thread copies the latest state into a ball of its own.  Other
+ * consumers can subscribe to the animation's {@link StatePublisher}, which
+ * follows the ring however often it is replaced.</p>
+ * <p>An animation of more than one ball moves them in a {@link World}, in
+ * which they collide with each other.  The first ball is the one the
+ * simulation would drop; the others are given random positions and diameters
+ * and mixed materials, the same for every reset, and are thrown sideways to
+ * bounce between the edges of the area.  Colliding balls are found with the
+ * broad phase named by {@value #PROPERTY_BROAD_PHASE}, and they bounce on the
+ * terrain loaded from the file named by {@value #PROPERTY_TERRAIN}, if
+ * any.</p>
+ */
+public class Animation
+{
+    /**
+     * The system property naming the broad phase through which balls that
+     * may collide are found, either {@code grid} (the default) for a
+     * {@link SpatialHash} or {@code sweep} for a {@link SweepAndPrune}
+     */
+    public static final String PROPERTY_BROAD_PHASE = "bounce.broadphase";
+
+    /**
+     * The system property naming a file holding a polyline of the
+     * {@link Terrain} on which the balls of an animation of many balls
+     * bounce; there is none if it is not set or the file cannot be loaded
+     */
+    public static final String PROPERTY_TERRAIN = "bounce.terrain";
+
+    /** The smallest diameter in meters of the balls added to the first */
+    public static final double MIN_DIAMETER = 0.1;
+
+    /** The largest diameter in meters of the balls added to the first */
+    public static final double MAX_DIAMETER = 0.3;
+
+    /**
+     * The number of diameters from {@link #MIN_DIAMETER} to
+     * {@link #MAX_DIAMETER} given to the balls added to the first, few enough
+     * for every size and material to keep a sprite in the cache
+     */
+    public static final int DIAMETERS = 5;
+
+    /**
+     * The greatest speed in meters per second, either way, at which the balls
+     * added to the first are thrown sideways
+     */
+    public static final double MAX_THROW = 1;
+
+    /** The rate per second at which air drag slows the balls of a world */
+    public static final double DRAG = 0.1;
+
+    /**
+     * The longest time in milliseconds by which a world is stepped at once;
+     * a longer gap, such as after dropped ticks, is covered in steps of this
+     * length, so that balls do not pass through each other or the terrain
+     */
+    public static final int MAX_WORLD_STEP = BounceDisplay.DELAY_CALC;
+
+    /** The number of slots in the ring of an animation of many balls */
+    private static final int MULTI_BALL_CAPACITY = 8;
+
+    /** The materials given in turn to the balls added to the first */
+    private static final Material[] MATERIALS = {
+            new Material(Material.ID_RUBBER),
+            new Material(Material.ID_IRON),
+            new Material(Material.ID_STONE)};
+
+    /** The terrain named by {@link #PROPERTY_TERRAIN}, or {@code null} */
+    private static final Terrain TERRAIN = loadTerrain();
+
+    /** Whether the ball is being animated */
+    private volatile boolean running = false;
+
+    /** Whether any part of the display could be seen on the last frame */
+    private volatile boolean onScreen = true;
+
+    /** Whether the ball must catch up on time spent off screen */
+    private volatile boolean seekPending = false;
+
+    /** The time in milliseconds at which the simulation was last started */
+    private long startTime;
+
+    /** The number of balls animated from the next reset */
+    private int ballCount = 1;
+
+    /** The balls being animated if there are more than one, or {@code null} */
+    private World world;
+
+    /** The time in milliseconds up to which the world has been stepped */
+    private long lastStep;
+
+    /** The balls into which the world is copied before being published */
+    private Ball[] published;
+
+    private final String name;
+    private final PhysicsScheduler scheduler;
+    private final Simulation simulation;
+
+    /** The ring to which the balls are published, replaced with their number */
+    private volatile Channel channel = new Channel(1);
+
+    /** The publisher through which other consumers follow the ring */
+    private final StatePublisher publisher;
+
+    /**
+     * Creates an instance of {@code Animation}.
+     *
+     * @param name the name of the display showing the animation
+     */
+    public Animation(String name)
+    {
+        this(name, PhysicsScheduler.getShared());
+    }
+
+    /**
+     * Creates an instance of {@code Animation} moved on by the specified
+     * scheduler.
+     *
+     * @param name the name of the display showing the animation
+     * @param scheduler the scheduler, or {@code null} if the caller moves the
+     *        animation on by calling {@link #tick(long)} itself
+     */
+    Animation(String name, PhysicsScheduler scheduler)
+    {
+        this.name = name;
+        this.scheduler = scheduler;
+        simulation = new Simulation();
+        publisher = new StatePublisher(channel.ring);
+
+        publish(System.currentTimeMillis(), 0);
+    }
+
+    /**
+     * Loads the terrain named by {@link #PROPERTY_TERRAIN}.
+     *
+     * @return the terrain, or {@code null} if none is named or it cannot be
+     *         loaded
+     */
+    private static Terrain loadTerrain()
+    {
+        String path = System.getProperty(PROPERTY_TERRAIN);
+
+        if(path == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return Terrain.loadPolyline(Paths.get(path));
+        }
+        catch(IOException | InvalidPathException e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Gets the terrain on which the balls bounce.  Only an animation of many
+     * balls has one.
+     *
+     * @return the terrain, or {@code null} if there is none
+     */
+    public Terrain getTerrain()
+    {
+        return channel.frame.length > 1 ? TERRAIN : null;
+    }
+
+    /**
+     * Gets the ring to which the state of the balls is published after every
+     * change, so that other consumers can follow the animation.  The ring is
+     * replaced when the animation is reset with a different number of balls.
+     *
+     * @return the ring
+     */
+    public StateRing getStateRing()
+    {
+        return channel.ring;
+    }
+
+    /**
+     * Gets the publisher of the ticks of the animation, to which recorders,
+     * exporters and other consumers can subscribe and unsubscribe at any time
+     * without holding up the animation.  Each tick carries the number of
+     * bounces during it.
+     *
+     * @return the publisher
+     */
+    public StatePublisher getPublisher()
+    {
+        return publisher;
+    }
+
+    /**
+     * Gets the ball to be painted, holding the most recently published state
+     * of the first ball being animated.  This must only be called by the
+     * thread that paints the display.
+     *
+     * @return the ball to be painted
+     */
+    public Ball getBall()
+    {
+        return getBalls()[0];
+    }
+
+    /**
+     * Gets the balls to be painted, holding the most recently published state
+     * of the balls being animated.  This must only be called by the thread
+     * that paints the display, and the array must not be changed.
+     *
+     * @return the balls to be painted
+     */
+    public Ball[] getBalls()
+    {
+        Channel c = channel;
+
+        c.view.readLatest(c.frame);
+        return c.frame;
+    }
+
+    /**
+     * Sets the number of balls to be animated.  The change takes effect when
+     * the animation is next reset.
+     *
+     * @param count the number of balls, at least one
+     */
+    public void setBallCount(int count)
+    {
+        if(count < 1)
+        {
+            throw new IllegalArgumentException("count must be positive");
+        }
+
+        synchronized(simulation)
+        {
+            ballCount = count;
+        }
+    }
+
+    /**
+     * Changes the material of the ball being animated.  The change is
+     * published when the animation is next reset.
+     *
+     * @param material the new material
+     */
+    public void setMaterial(Material material)
+    {
+        synchronized(simulation)
+        {
+            simulation.getBall().setMaterial(material);
+        }
+    }
+
+    /**
+     * Indicates whether the ball is being animated.
+     *
+     * @return {@code true} between {@link #start()} and {@link #reset}
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Starts the simulation and registers it with the shared
+     * {@link PhysicsScheduler}.
+     */
+    public void start()
+    {
+        start(System.currentTimeMillis());
+    }
+
+    /**
+     * Starts the simulation at the specified time and registers it with its
+     * scheduler.
+     *
+     * @param now the current time in milliseconds
+     */
+    void start(long now)
+    {
+        synchronized(simulation)
+        {
+            startTime = now;
+            lastStep = now;
+            simulation.start(now);
+            publish(now, 0);
+        }
+
+        running = true;
+        seekPending = false;
+        recordSimulationEvent(SimulationEvent.ACTION_START);
+
+        if(scheduler != null)
+        {
+            scheduler.register(this);
+        }
+    }
+
+    /**
+     * Stops the simulation and places the ball at the top of a bounce area of
+     * the specified size, with any other balls at their starting positions.
+     *
+     * @param width the width of the bounce area in meters
+     * @param height the height of the bounce area in meters
+     */
+    public void reset(double width, double height)
+    {
+        running = false;
+
+        if(scheduler != null)
+        {
+            scheduler.unregister(this);
+        }
+
+        synchronized(simulation)
+        {
+            simulation.reset(width, height);
+            populate(width, height);
+            publish(System.currentTimeMillis(), 0);
+        }
+
+        recordSimulationEvent(SimulationEvent.ACTION_RESET);
+    }
+
+    /**
+     * Gets the time elapsed in seconds since the very beginning of the bounce.
+     *
+     * @return the time elapsed in seconds
+     */
+    public double getClockTime()
+    {
+        return simulation.getClockTime();
+    }
+
+    /**
+     * Updates the time elapsed since the beginning of the bounce.
+     */
+    public void updateClockTime()
+    {
+        simulation.updateClockTime(System.currentTimeMillis());
+    }
+
+    /**
+     * Sets whether any part of the display could be seen on the last frame.
+     *
+     * @param onScreen {@code true} if the display can be seen
+     */
+    public void setOnScreen(boolean onScreen)
+    {
+        if(onScreen && !this.onScreen)
+        {
+            seekPending = true;
+        }
+
+        this.onScreen = onScreen;
+    }
+
+    /**
+     * Called by the {@link PhysicsScheduler} on every tick to move the ball.
+     * A single ball that cannot be seen is not calculated; when it comes back
+     * into view it is moved straight to where it should be by now.  A world
+     * of many balls cannot be moved straight there, so it is stepped whether
+     * it can be seen or not.
+     *
+     * Once the ball has come to rest, the animation unregisters itself until
+     * it is started again.
+     *
+     * @param now the time in milliseconds at which the tick was due
+     */
+    void tick(long now)
+    {
+        if(!running)
+        {
+            return;
+        }
+
+        long tickStart = Metrics.ENABLED ? System.nanoTime() : 0;
+
+        synchronized(simulation)
+        {
+            // A late tick may have been due before the simulation started
+            if(!running || now < startTime || !onScreen && world == null)
+            {
+                return;
+            }
+
+            if(world != null ? world.getActiveCount() == 0 :
+                    !simulation.isRunning())
+            {
+                /* Unregister under the lock, so a concurrent restart, which
+                 * registers after starting the simulation, is not undone.
+                 */
+                if(scheduler != null)
+                {
+                    scheduler.unregister(this);
+                }
+                return;
+            }
+
+            int bounces = 0;
+
+            if(world != null)
+            {
+                while(lastStep < now)
+                {
+                    long step = Math.min(now - lastStep, MAX_WORLD_STEP);
+
+                    bounces += world.step(step / 1000d);
+                    lastStep += step;
+                }
+
+                seekPending = false;
+            }
+            else
+            {
+                bounces = calculateNewPosition(now) ? 1 : 0;
+            }
+
+            publish(now, bounces);
+        }
+
+        if(Metrics.ENABLED)
+        {
+            Metrics.STEP_TIME.record(System.nanoTime() - tickStart);
+        }
+    }
+
+    /**
+     * Fills the world with the number of balls set, or discards it if there
+     * is only one.  The first ball is where the simulation placed its own.
+     * The others are dropped from random heights and positions across the
+     * area and thrown sideways at up to {@link #MAX_THROW}; each has one of
+     * {@link #DIAMETERS} diameters between {@link #MIN_DIAMETER} and
+     * {@link #MAX_DIAMETER}, and the materials are taken in turn; only the
+     * first ball follows the selected material.  The edges of the area are
+     * walls.  The ring is replaced if the number of balls has changed.
+     *
+     * @param width the width of the bounce area in meters
+     * @param height the height of the bounce area in meters
+     */
+    private void populate(double width, double height)
+    {
+        if(ballCount == 1)
+        {
+            world = null;
+            published = null;
+        }
+        else
+        {
+            Ball first = simulation.getBall();
+            Random random = new Random(ballCount);
+
+            if(world == null)
+            {
+                world = new World();
+                world.setCollisionsEnabled(true);
+                world.setDrag(DRAG);
+                world.setTerrain(TERRAIN);
+
+                if("sweep".equals(System.getProperty(PROPERTY_BROAD_PHASE)))
+                {
+                    world.setBroadPhase(new SweepAndPrune());
+                }
+            }
+            else
+            {
+                world.clear();
+            }
+
+            world.setWalls(0, Math.max(width, MAX_DIAMETER));
+            world.add(first.getX(), first.getY(), first.getDiameter(),
+                    first.getMaterial());
+
+            for(int i = 1; i < ballCount; i++)
+            {
+                double d = MIN_DIAMETER + random.nextInt(DIAMETERS) *
+                        (MAX_DIAMETER - MIN_DIAMETER) / (DIAMETERS - 1);
+
+                int added = world.add(
+                        random.nextDouble() * Math.max(0, width - d),
+                        random.nextDouble() * Math.max(0, height - d), d,
+                        MATERIALS[i % MATERIALS.length]);
+
+                world.applyImpulse(added,
+                        (random.nextDouble() * 2 - 1) * MAX_THROW, 0);
+            }
+
+            if(published == null || published.length != ballCount)
+            {
+                published = Channel.newBalls(ballCount);
+            }
+        }
+
+        if(channel.frame.length != ballCount)
+        {
+            channel = new Channel(ballCount);
+            publisher.setRing(channel.ring);
+        }
+    }
+
+    /**
+     * Publishes the state of the balls being animated to the ring, and wakes
+     * the subscribers waiting for it.
+     *
+     * @param now the current time in milliseconds
+     * @param bounces the number of bounces since the last time published
+     */
+    private void publish(long now, int bounces)
+    {
+        if(world == null)
+        {
+            channel.ring.publish(now, simulation.getBall(), bounces);
+        }
+        else
+        {
+            for(int i = 0; i < published.length; i++)
+            {
+                world.copyTo(i, published[i]);
+            }
+
+            channel.ring.publish(now, published, bounces);
+        }
+
+        publisher.signal();
+    }
+
+    /**
+     * Calculates the new position of the falling object, recording the
+     * calculation and any impact with the ground as Flight Recorder events.
+     *
+     * @param now the current time in milliseconds
+     * @return {@code true} if the ball struck the ground
+     */
+    private boolean calculateNewPosition(long now)
+    {
+        Ball ball = simulation.getBall();
+        TickEvent tick = new TickEvent();
+        tick.begin();
+
+        boolean impact;
+
+        if(seekPending && simulation.canSeek())
+        {
+            impact = simulation.seek(now);
+        }
+        else
+        {
+            impact = simulation.step(now);
+        }
+
+        seekPending = false;
+
+        if(tick.shouldCommit())
+        {
+            tick.display = name;
+            tick.height = ball.getY();
+            tick.velocity = ball.getVelocity();
+            tick.direction = ball.getDirection().name();
+            tick.commit();
+        }
+
+        if(impact)
+        {
+            ImpactEvent event = new ImpactEvent();
+
+            if(event.shouldCommit())
+            {
+                event.display = name;
+                event.material = ball.getMaterial().toString();
+                event.velocity = ball.getVelocity();
+                event.apex = ball.getApex();
+                event.commit();
+            }
+        }
+
+        return impact;
+    }
+
+    /**
+     * Records the start or reset of the simulation as a Flight Recorder event.
+     *
+     * @param action either {@link SimulationEvent#ACTION_START} or
+     *        {@link SimulationEvent#ACTION_RESET}
+     */
+    private void recordSimulationEvent(String action)
+    {
+        SimulationEvent event = new SimulationEvent();
+
+        if(event.shouldCommit())
+        {
+            Ball ball = simulation.getBall();
+
+            event.display = name;
+            event.action = action;
+            event.material = ball.getMaterial().toString();
+            event.height = ball.getApex();
+            event.commit();
+        }
+    }
+
+    /**
+     * A ring to which the balls are published, with the reader and balls
+     * through which the painting thread follows it.  The three are replaced
+     * together, so the painting thread never sees balls of the wrong number.
+     */
+    private static class Channel
+    {
+        final StateRing ring;
+        final StateRing.Reader view;
+
+        /** The balls painted, updated from the ring by the painting thread */
+        final Ball[] frame;
+
+        /**
+         * Creates an instance of {@code Channel}.
+         *
+         * @param balls the number of balls published
+         */
+        Channel(int balls)
+        {
+            ring = balls == 1 ? new StateRing() : new StateRing(
+                    MULTI_BALL_CAPACITY, balls, StateRing.WaitStrategy.PARK);
+            view = ring.newReader(false, StateRing.WaitStrategy.PARK);
+            frame = newBalls(balls);
+        }
+
+        /**
+         * Creates the specified number of balls of the default diameter.
+         *
+         * @param count the number of balls
+         * @return the balls
+         */
+        static Ball[] newBalls(int count)
+        {
+            Ball[] balls = new Ball[count];
+
+            for(int i = 0; i < count; i++)
+            {
+                balls[i] = new Ball(Ball.DEFAULT_DIAMETER);
+            }
+
+            return balls;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.beans.PropertyChangeListener;
 import java.text.DecimalFormat;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -30,18 +31,20 @@ import bounce.logic.Converter;
 import bounce.logic.Material;
 
 /**
- * A reusable JPanel containing a {@code BounceDisplay} object as well as
+ * A reusable JPanel containing an {@code AnimatedDisplay} object as well as
  * several components used to control and read from that object.
  */
 public class BounceControlPanel extends JPanel implements PropertyChangeListener
 {
     private Controller ctrl;
-    private BounceDisplay bounceDisplay;
+    private AnimatedDisplay bounceDisplay;
     private JButton startButton;
     private JButton resetButton;
     private JLabel timeField;
     private JComboBox heightCombo;
     private JComboBox materialCombo;
+    private JComboBox ballCountCombo;
+    private JCheckBox antialiasBox;
     private DecimalFormat formatter = new DecimalFormat("0.000");
 
     /**
@@ -71,14 +74,21 @@ public class BounceControlPanel extends JPanel implements PropertyChangeListener
         setLayout(new GridBagLayout());
         GridBagConstraints con = new GridBagConstraints();
 
-        bounceDisplay = new BounceDisplay();
+        if(Boolean.getBoolean(ActiveBounceDisplay.PROPERTY_ACTIVE))
+        {
+            bounceDisplay = new ActiveBounceDisplay();
+        }
+        else
+        {
+            bounceDisplay = new BounceDisplay();
+        }
         con.anchor = GridBagConstraints.NORTH;
         con.gridheight = 1;
         con.gridwidth = 3;
         con.gridx = 0;
         con.gridy = 0;
         con.insets = new Insets(5, 5, 0, 5);
-        add(bounceDisplay, con);
+        add(bounceDisplay.getComponent(), con);
 
         JLabel timeLabel = new JLabel("Time (s):");
         Font font = new Font(timeLabel.getFont().getName(), Font.PLAIN,
@@ -132,10 +142,30 @@ public class BounceControlPanel extends JPanel implements PropertyChangeListener
         con.gridx = 1;
         add(materialCombo, con);
 
+        JLabel ballCountLabel = new JLabel("Balls");
+        ballCountLabel.setFont(font);
+        con.anchor = GridBagConstraints.WEST;
+        con.gridwidth = 1;
+        con.gridx = 0;
+        con.gridy = 4;
+        add(ballCountLabel, con);
+
+        ballCountCombo = new JComboBox(new Integer[]{1, 10, 100, 500});
+        con.anchor = GridBagConstraints.NORTHWEST;
+        con.gridwidth = 2;
+        con.gridx = 1;
+        add(ballCountCombo, con);
+
+        antialiasBox = new JCheckBox("Antialiased", true);
+        antialiasBox.setFont(font);
+        con.gridx = 1;
+        con.gridy = 5;
+        add(antialiasBox, con);
+
         startButton = new JButton("Start");
         con.fill = GridBagConstraints.NONE;
         con.gridx = 0;
-        con.gridy = 4;
+        con.gridy = 6;
         con.insets = new Insets(5, 5, 5, 5);
         add(startButton, con);
 
@@ -190,6 +220,26 @@ public class BounceControlPanel extends JPanel implements PropertyChangeListener
                 startButton.setEnabled(true);
             }
         });
+
+        ballCountCombo.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent ae)
+            {
+                ctrl.setModelProperty(BounceArea.class,
+                        BounceArea.FIELD_BALL_COUNT,
+                        (Integer)ballCountCombo.getSelectedItem());
+
+                startButton.setEnabled(true);
+            }
+        });
+
+        antialiasBox.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent ae)
+            {
+                bounceDisplay.setAntialiased(antialiasBox.isSelected());
+            }
+        });
     }
 
     /**
@@ -198,7 +248,8 @@ public class BounceControlPanel extends JPanel implements PropertyChangeListener
      */
     private void resizeBounceDisplay()
     {
-        int width = (int)bounceDisplay.getPreferredSize().getWidth();
+        int width = (int)bounceDisplay.getComponent().getPreferredSize()
+                .getWidth();
         int height = ((Integer)heightCombo.getSelectedItem()).intValue() *
                 Converter.SCALE_PIXELS_PER_METER;
 
@@ -231,6 +282,10 @@ public class BounceControlPanel extends JPanel implements PropertyChangeListener
 
             heightCombo.setSelectedItem(i.intValue() / Converter.SCALE_PIXELS_PER_METER);
         }
+        else if(BounceArea.FIELD_BALL_COUNT.equals(evt.getPropertyName()))
+        {
+            ballCountCombo.setSelectedItem(evt.getNewValue());
+        }
         else
         {
             refreshTimeDisplay();
@@ -15,30 +15,50 @@ import java.awt.Insets;
 import javax.swing.JPanel;
 
 /**
- * A panel designed to display multiple {@code BounceControlPanel} objects.
+ * A panel designed to display multiple {@code BounceControlPanel} objects,
+ * arranged in a grid.  All of their displays share one {@link FrameClock} and
+ * one {@link PhysicsScheduler}, so the number of panels is limited only by the
+ * time taken to calculate and paint them.
  */
 public class BounceDemoPanel extends JPanel
 {
+    /** The number of panels shown by default */
+    public static final int DEFAULT_PANELS = 3;
+
+    /** The largest number of panels in one row of the grid */
+    public static final int MAX_COLUMNS = 6;
+
     /**
-     * Creates an instance of {@code BounceDemoPanel}.
+     * Creates an instance of {@code BounceDemoPanel} with the default number
+     * of panels.
      */
     public BounceDemoPanel()
+    {
+        this(DEFAULT_PANELS);
+    }
+
+    /**
+     * Creates an instance of {@code BounceDemoPanel}.
+     *
+     * @param panels the number of panels to show
+     */
+    public BounceDemoPanel(int panels)
     {
         setLayout(new GridBagLayout());
         GridBagConstraints con = new GridBagConstraints();
 
+        int columns = Math.min(panels, MAX_COLUMNS);
+
         con.anchor = GridBagConstraints.SOUTH;
         con.gridheight = 1;
         con.gridwidth = 1;
-        con.gridx = 0;
-        con.gridy = 0;
         con.insets = new Insets(0, 0, 0, 0);
-        add(new BounceControlPanel(), con);
-
-        con.gridx = 1;
-        add(new BounceControlPanel(), con);
 
-        con.gridx = 2;
-        add(new BounceControlPanel(), con);
+        for(int i = 0; i < panels; i++)
+        {
+            con.gridx = i % columns;
+            con.gridy = i / columns;
+            add(new BounceControlPanel(), con);
+        }
     }
-}
\ No newline at end of file
+}
@@ -8,33 +8,28 @@
  */
 package bounce.gui;
 
-import java.awt.Color;
+import java.awt.Component;
 import java.awt.Container;
 import java.awt.Dimension;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Point;
-import java.awt.RenderingHints;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JComponent;
-import javax.swing.Timer;
 
 import bounce.logic.BounceArea;
-import bounce.logic.Ball;
 import bounce.logic.Converter;
 import bounce.logic.Material;
-import bounce.logic.Physics;
-import bounce.logic.Physics.Direction;
 
 /**
  * A component in which two-dimensional objects are animated so that they appear
- * to bounce under a typical gravitational force.
+ * to bounce under a typical gravitational force.  The component is painted
+ * passively, through Swing's repaint manager, on every frame of the shared
+ * {@link FrameClock}.  The view can be zoomed and panned with the mouse.
  */
-public class BounceDisplay extends JComponent implements PropertyChangeListener
+public class BounceDisplay extends JComponent implements AnimatedDisplay
 {
     /** Delay in milliseconds between repaints */
     public static final int DELAY_ANIMATION = 15;
@@ -51,129 +46,57 @@ public class BounceDisplay extends JComponent implements PropertyChangeListener
     /** The name of the thread that calculates the ball's position */
     public static final String THREAD_NAME_CALC = "thread-calc";
 
-    /** The time in milliseconds at which the ball starts moving */
-    private long displacementStart;
+    /** The number of displays created, used to give each a unique name */
+    private static final AtomicInteger displayCount = new AtomicInteger();
 
-    /** The time elapsed in seconds from the start of a displacement */
-    private double displacementTime;
-
-    /** The time it should take to reach a particular apex */
-    private double timeToApex;
-    
-    /** The time at which the "display" clock starts */
-    private long clockStart;
-
-    /** The total elapsed time to be displayed */
-    private double clockTime;
-
-    /** Flag used to maintain the life of the calculation thread */
-    private volatile boolean killCalc = false;
-
-    private Ball ball;
-    private Timer animTimer;
+    private Animation animation;
+    private DisplayRenderer renderer;
     private PropertyChangeListener listener;
 
+    /** The event sent to the listener, which is the same every time */
+    private final PropertyChangeEvent clockEvent =
+            new PropertyChangeEvent(this, null, null, null);
+
     /**
      * Creates an instance of {@code BounceDisplay}.
      */
     public BounceDisplay()
     {
-        ball = new Ball(Ball.DEFAULT_DIAMETER);
-        animTimer = new Timer(DELAY_ANIMATION, getPaintTimerListener());
-    }
+        setName(nextName());
+        animation = new Animation(getName());
+        renderer = new DisplayRenderer(getName(), DELAY_ANIMATION);
 
-    private ActionListener getPaintTimerListener()
-    {
-        return new ActionListener()
-        {
-            public void actionPerformed(ActionEvent evt)
-            {
-                repaint();
-            }
-        };
+        ViewportControls.install(this, renderer.getViewport());
     }
 
     /**
-     * Draws a horizontal dashed line.  The blank spaces makes up one third of
-     * the length of the line.  One blank segment is 3% of the total blank
-     * space.  One solid segment is twice the length of a blank.
-     * <p>Therefore, if the total length of the line is 300 pixels, there will
-     * be 100 pixels of blank space, with each blank segment measuring 3 pixels,
-     * and each solid measuring 6 pixels.</p>
+     * Gets a unique name for a new display.
      *
-     * @param g the {@code Graphics2D} object used to draw the line
-     * @param x1 the starting point
-     * @param x2 the ending point
-     * @param y the y position of the line
+     * @return the name of the display
      */
-    private void drawHorizontalDashedLine(Graphics2D g, int x1, int x2, int y)
+    static String nextName()
     {
-        int width = x2 - x1;
-        int blank = (int)(width / 3 * 0.03);
-        int solid = blank * 2;
-
-        for(int i = 0; i < width; i += (solid + blank))
-        {
-            g.drawLine(i, y, i + solid - 1, y);
-        }
+        return "display-" + displayCount.incrementAndGet();
     }
 
     /**
-     * Calculates the scale height of the mark in meters based on the supplied
-     * y position in pixels.
-     *
-     * @param pixels the y position of the mark in pixels
+     * Gets the component that shows the animation.
      *
-     * @return the scale height in meters of the corresponding mark
+     * @return this component
      */
-    private int calcRuleMark(int pixels)
+    public Component getComponent()
     {
-        return ((int)getPreferredSize().getHeight() / 
-                Converter.SCALE_PIXELS_PER_METER) -
-                ((pixels + 1) / Converter.SCALE_PIXELS_PER_METER);
+        return this;
     }
 
     /**
-     * Gets a string with the number of meters and meter abbreviation to be used
-     * when painting the scaled rule, e.g. "5 m".
-     *
-     * @param pixels y position on the component where the mark will be painted
+     * Gets the animation shown by this display.
      *
-     * @return the text to be written above or below a scale mark
+     * @return the animation
      */
-    private String getRuleMarkText(int pixels)
+    Animation getAnimation()
     {
-        return Integer.toString(calcRuleMark(pixels)) + Converter.ABBREV_METER;
-    }
-
-    /**
-     * Paints a scaled rule along the left side of the component indicating,
-     * marked off in meters.
-     *
-     * @param g the {@code Graphics2D} object on which the scale is painted
-     */
-    private void paintRule(Graphics2D g)
-    {
-        g.setColor(Color.BLACK);
-
-        for(int i = 0; i < getPreferredSize().getHeight(); i++)
-        {
-            if(i == 0 || ((i + 1) % Converter.SCALE_PIXELS_PER_METER) == 0)
-            {
-                drawHorizontalDashedLine(
-                        g, 0, (int)getPreferredSize().getWidth() - 1, i);
-
-                if(i + 1 < getPreferredSize().getHeight())
-                {
-                    g.drawString(getRuleMarkText(i), 1,
-                            i + g.getFontMetrics().getHeight());
-                }
-                else
-                {
-                    g.drawString(getRuleMarkText(i), 1, i - 2);
-                }
-            }
-        }
+        return animation;
     }
 
     /**
@@ -187,100 +110,10 @@ public class BounceDisplay extends JComponent implements PropertyChangeListener
     {
         super.paintComponent(graphics);
 
-        Graphics2D g = (Graphics2D)graphics;
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
-
-        // Paint background
-        g.setColor(Color.WHITE);
-        g.fillRect(0, 0, getWidth(), getHeight());
-
-        paintRule(g);
-
-        ball.paint(g, (int)getPreferredSize().getHeight());
-    }
-
-    /**
-     * Gets the time elapsed in seconds since the start of the current bounce
-     * movement.  (One movement being either a free fall from the apex, or a
-     * rise to the apex from the ground.)
-     *
-     * @return the time elapsed in seconds
-     */
-    private double getElapsedBounceTime()
-    {
-        return (System.currentTimeMillis() - displacementStart) / 1000d;
-    }
-
-    /**
-     * Resets the time at which one bounce movement begins.  The current system
-     * time is used to reset the value. (One movement being either a free fall
-     * from the apex, or a rise to the apex from the ground.)
-     */
-    private void resetDisplacementStartTime()
-    {
-        displacementStart = System.currentTimeMillis();
-    }
-
-    /**
-     * Calculates the new position of the falling object based on its current
-     * direction of travel, and the time at which it started moving.
-     */
-    private void calculateNewPosition()
-    {
-        displacementTime = getElapsedBounceTime();
-        double displacement = Physics.calcDisplacement(
-                ball.getDirection(), displacementTime, ball.getVelocity());
-
-        switch(ball.getDirection())
-        {
-            case UP:
-            {
-                ball.setY(displacement);
-
-                if(ball.getY() >= ball.getApex() ||
-                        displacementTime >= timeToApex)
-                {
-                    ball.setY(ball.getApex());
-                    ball.setVelocity(0);
-                    ball.setDirection(Direction.DOWN);
-
-                    resetDisplacementStartTime();
-                }
-                break;
-            }
-            case DOWN:
-            {
-                ball.setY(ball.getApex() - displacement);
-
-                if(ball.getY() < 0)
-                {
-                    ball.setY(0);
-                }
-
-                if(ball.getY() == 0 && getHeight() > 0)
-                {
-                    ball.setVelocity(Physics.calcVelocity(ball.getApex()) *
-                            ball.getMaterial().getCor());
-                    ball.setApex(Physics.calcBounceApex(ball.getVelocity()));
-                    ball.setDirection(Direction.UP);
-
-                    timeToApex = Physics.calcTimeToApex(
-                            ball.getApex(), ball.getVelocity());
-
-                    resetDisplacementStartTime();
-
-                    if(Converter.toPixels(ball.getApex()) <= 0)
-                    {
-                        ball.setDirection(Direction.NONE);
-                    }
-                }
-                break;
-            }
-            default:
-            {
-            }
-        }
+        renderer.setTerrain(animation.getTerrain());
+        renderer.paint((Graphics2D)graphics, getWidth(), getHeight(),
+                getPreferredSize(), animation.getBalls(),
+                animation.isRunning());
     }
 
     /**
@@ -289,7 +122,7 @@ public class BounceDisplay extends JComponent implements PropertyChangeListener
      */
     private void updateClockTime()
     {
-        clockTime = (System.currentTimeMillis() - clockStart) / 1000d;
+        animation.updateClockTime();
         notifyListener();
     }
 
@@ -300,43 +133,18 @@ public class BounceDisplay extends JComponent implements PropertyChangeListener
      */
     public double getClockTime()
     {
-        return clockTime;
+        return animation.getClockTime();
     }
 
     /**
-     * Begins the animation by starting the timer that calculates the falling
-     * objects position.
+     * Begins the animation by registering it with the shared
+     * {@link PhysicsScheduler}, which calculates the falling object's position,
+     * and the display with the shared {@link FrameClock}, which repaints it.
      */
     public void start()
     {
-        resetDisplacementStartTime();
-        clockStart = System.currentTimeMillis();
-        killCalc = false;
-
-        Thread t = new Thread(THREAD_NAME_CALC)
-        {
-            @Override
-            public void run()
-            {
-                while(!killCalc && ball.getDirection() != Direction.NONE)
-                {
-                    /* TODO replace when precision time bug is fixed */
-//                    updateClockTime()
-                    calculateNewPosition();
-
-                    try
-                    {
-                        Thread.sleep(DELAY_CALC);
-                    }
-                    catch(InterruptedException e)
-                    {
-                    }
-                }
-            }
-        };
-
-        t.start();
-        animTimer.start();
+        animation.start();
+        FrameClock.getShared().register(this);
     }
 
     /**
@@ -345,20 +153,10 @@ public class BounceDisplay extends JComponent implements PropertyChangeListener
      */
     public void reset()
     {
-        killCalc = true;
-        animTimer.stop();
-
-        double height = Converter.toMeters((int)getPreferredSize().getHeight());
-
-        ball.setDiameter(Ball.DEFAULT_DIAMETER);
-        ball.setX((Converter.toMeters((int)getPreferredSize().getWidth()) / 2) -
-                (ball.getDiameter() / 2));
-        ball.setY(height - ball.getDiameter());
-        ball.setApex(ball.getY());
-        ball.setVelocity(0);
-        ball.setDirection(Direction.DOWN);
-
-        clockTime = 0;
+        FrameClock.getShared().unregister(this);
+        animation.reset(
+                Converter.toMeters((int)getPreferredSize().getWidth()),
+                Converter.toMeters((int)getPreferredSize().getHeight()));
 
         notifyListener();
         repaint();
@@ -382,8 +180,7 @@ public class BounceDisplay extends JComponent implements PropertyChangeListener
     {
         if(listener != null)
         {
-            listener.propertyChange(
-                    new PropertyChangeEvent(this, null, null, null));
+            listener.propertyChange(clockEvent);
         }
     }
 
@@ -399,20 +196,11 @@ public class BounceDisplay extends JComponent implements PropertyChangeListener
         setPreferredSize(size);
         setSize(size);
         reset();
-        
+
         Container container = getTopLevelAncestor();
         if(container instanceof Main)
         {
-            /* Set it so that the frame appears to be resized using the top
-             * border of the frame rather than the bottom.
-             */
-            Main m = (Main)container;
-            int oldHeight = (int)m.getSize().getHeight();
-            m.pack();
-            int diff = (int)m.getSize().getHeight() - oldHeight;
-            Point p = m.getLocation();
-            p.move((int)p.getX(), (int)p.getY() - diff);
-            m.setLocation(p);
+            ((Main)container).packKeepingBottom();
         }
     }
 
@@ -423,7 +211,29 @@ public class BounceDisplay extends JComponent implements PropertyChangeListener
      */
     public void changeMaterial(Material material)
     {
-        ball.setMaterial(material);
+        animation.setMaterial(material);
+        reset();
+    }
+
+    /**
+     * Sets whether the balls are antialiased, and repaints them.
+     *
+     * @param antialiased {@code true} to antialias
+     */
+    public void setAntialiased(boolean antialiased)
+    {
+        renderer.setAntialiased(antialiased);
+        repaint();
+    }
+
+    /**
+     * Changes the number of balls animated.
+     *
+     * @param count the number of balls, at least one
+     */
+    public void changeBallCount(int count)
+    {
+        animation.setBallCount(count);
         reset();
     }
 
@@ -442,5 +252,9 @@ public class BounceDisplay extends JComponent implements PropertyChangeListener
         {
             resizeDisplay((Dimension)evt.getNewValue());
         }
+        else if(BounceArea.FIELD_BALL_COUNT.equals(evt.getPropertyName()))
+        {
+            changeBallCount(((Integer)evt.getNewValue()).intValue());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,517 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.gui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.util.concurrent.TimeUnit;
+
+import bounce.logic.Ball;
+import bounce.logic.Converter;
+import bounce.logic.Terrain;
+import bounce.logic.Viewport;
+import bounce.metrics.FrameEvent;
+import bounce.metrics.Histogram;
+import bounce.metrics.Metrics;
+
+/**
+ * Paints one frame of a display: a background, a scaled rule, and the falling
+ * object, through a {@link Viewport} that can be zoomed and panned.  Marks and
+ * balls that lie outside the surface are skipped before anything is converted
+ * or drawn.  A renderer does not depend on the kind of component it paints, so
+ * it is shared by the passive {@link BounceDisplay}, the actively rendered
+ * {@link ActiveBounceDisplay}, and offscreen images.
+ * <p>A terrain, if set, is painted over the background one column of pixels
+ * at a time, so that the cost does not depend on how finely it is divided.
+ * </p>
+ * <p>Many balls are painted in batches of one material: the color is set once
+ * for each material, or, when antialiasing is on, each ball is copied from a
+ * sprite without setting a color at all.  Antialiasing is on unless turned
+ * off with {@link #setAntialiased(boolean)}.</p>
+ */
+public class DisplayRenderer
+{
+    /** The color in which a terrain is painted */
+    private static final Color TERRAIN_COLOR = Color.GRAY;
+
+    /** The number of heights in meters whose rule labels are kept */
+    private static final int RULE_MARK_TEXTS = 1024;
+
+    /**
+     * The labels of the marks at each height, created as they are first
+     * painted; two threads creating the same label at once is harmless
+     */
+    private static final String[] ruleMarkTexts = new String[RULE_MARK_TEXTS];
+
+    private final String name;
+    private final long frameInterval;
+    private final Viewport viewport = new Viewport();
+    private Histogram paintTime;
+
+    /** The terrain painted under the balls, or {@code null} */
+    private Terrain terrain;
+
+    /** Whether the terrain and balls are antialiased */
+    private volatile boolean antialiased = true;
+
+    /** Whether each ball has been painted in the current frame */
+    private boolean[] painted = new boolean[0];
+
+    /** The sprites of the balls painted by this renderer */
+    private final SpriteCache cache =
+            new SpriteCache(SpriteCache.DEFAULT_CAPACITY);
+
+    /** The balls painted when there is only one, reused on every frame */
+    private final Ball[] single = new Ball[1];
+
+    /** The time from {@link System#nanoTime()} of the last paint */
+    private long lastPaint;
+
+    /**
+     * Creates an instance of {@code DisplayRenderer}.
+     *
+     * @param name the name of the display, used to identify its metrics
+     * @param frameInterval the intended delay in milliseconds between frames
+     */
+    public DisplayRenderer(String name, int frameInterval)
+    {
+        this(name, frameInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates an instance of {@code DisplayRenderer} whose frames are not a
+     * whole number of milliseconds apart.
+     *
+     * @param name the name of the display, used to identify its metrics
+     * @param frameInterval the intended delay between frames
+     * @param unit the unit of the delay
+     */
+    public DisplayRenderer(String name, long frameInterval, TimeUnit unit)
+    {
+        this.name = name;
+        this.frameInterval = unit.toNanos(frameInterval);
+
+        if(this.frameInterval <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "frameInterval must be positive");
+        }
+
+        if(Metrics.ENABLED)
+        {
+            paintTime = Metrics.paintTime(name);
+        }
+    }
+
+    /**
+     * Gets the viewport through which frames are painted.  It may be zoomed
+     * and panned while frames are being painted.
+     *
+     * @return the viewport
+     */
+    public Viewport getViewport()
+    {
+        return viewport;
+    }
+
+    /**
+     * Sets the terrain painted under the balls.  It must only be set by the
+     * thread that paints.
+     *
+     * @param terrain the terrain, or {@code null} for none
+     */
+    public void setTerrain(Terrain terrain)
+    {
+        this.terrain = terrain;
+    }
+
+    /**
+     * Sets whether the terrain and balls are antialiased.  Without
+     * antialiasing, balls are filled directly rather than copied from
+     * sprites, which is faster but leaves their edges jagged.  This may be
+     * called from any thread, and applies from the next frame.
+     *
+     * @param antialiased {@code true} to antialias
+     */
+    public void setAntialiased(boolean antialiased)
+    {
+        this.antialiased = antialiased;
+    }
+
+    /**
+     * Indicates whether the terrain and balls are antialiased.
+     *
+     * @return {@code true} if they are antialiased
+     */
+    public boolean isAntialiased()
+    {
+        return antialiased;
+    }
+
+    /**
+     * Draws a horizontal dashed line.  The blank spaces makes up one third of
+     * the length of the line.  One blank segment is 3% of the total blank
+     * space.  One solid segment is twice the length of a blank.
+     * <p>Therefore, if the total length of the line is 300 pixels, there will
+     * be 100 pixels of blank space, with each blank segment measuring 3 pixels,
+     * and each solid measuring 6 pixels.</p>
+     *
+     * @param g the {@code Graphics2D} object used to draw the line
+     * @param x1 the starting point
+     * @param x2 the ending point
+     * @param y the y position of the line
+     */
+    private static void drawHorizontalDashedLine(Graphics2D g, int x1, int x2,
+            int y)
+    {
+        int width = x2 - x1;
+        int blank = Math.max(1, (int)(width / 3 * 0.03));
+        int solid = blank * 2;
+
+        for(int i = 0; i < width; i += (solid + blank))
+        {
+            g.drawLine(i, y, i + solid - 1, y);
+        }
+    }
+
+    /**
+     * Gets a string with the number of meters and meter abbreviation to be used
+     * when painting the scaled rule, e.g. "5 m".  The labels of the lower
+     * marks are only created once.
+     *
+     * @param meters the height of the mark in meters
+     *
+     * @return the text to be written above or below a scale mark
+     */
+    private static String getRuleMarkText(int meters)
+    {
+        if(meters < 0 || meters >= RULE_MARK_TEXTS)
+        {
+            return Integer.toString(meters) + Converter.ABBREV_METER;
+        }
+
+        String text = ruleMarkTexts[meters];
+
+        if(text == null)
+        {
+            text = Integer.toString(meters) + Converter.ABBREV_METER;
+            ruleMarkTexts[meters] = text;
+        }
+
+        return text;
+    }
+
+    /**
+     * Paints a scaled rule across the area, marked off in meters.  Only the
+     * marks that fall on the surface are considered, so the cost does not
+     * depend on the height of the area or the zoom.
+     *
+     * @param g the {@code Graphics2D} object on which the scale is painted
+     * @param viewport the mapping from meters to pixels
+     * @param width the width of the surface in pixels
+     * @param height the height of the surface in pixels
+     * @param area the size of the bounce area in pixels at the default scale
+     */
+    private static void paintRule(Graphics2D g, Viewport viewport, int width,
+            int height, Dimension area)
+    {
+        g.setColor(Color.BLACK);
+
+        int spacing = viewport.getMarkSpacing();
+        int top = area.height / Converter.SCALE_PIXELS_PER_METER;
+        double lowest = Math.max(0, viewport.toMetersY(height, height));
+        double highest = Math.min(top, viewport.toMetersY(0, height));
+        int right = Math.min(width, viewport.toPixelsX(
+                Converter.toMeters(area.width))) - 1;
+        int fontHeight = g.getFontMetrics().getHeight();
+
+        for(long m = (long)Math.ceil(lowest / spacing) * spacing;
+                m <= highest; m += spacing)
+        {
+            // Marks are drawn on the row above the height they stand for
+            int y = Math.max(0, viewport.toPixelsY(m, height) - 1);
+
+            drawHorizontalDashedLine(g, 0, right, y);
+
+            if(y + fontHeight < height)
+            {
+                g.drawString(getRuleMarkText((int)m), 1, y + fontHeight);
+            }
+            else
+            {
+                g.drawString(getRuleMarkText((int)m), 1, y - 2);
+            }
+        }
+    }
+
+    /**
+     * Paints the background and scaled rule of a bounce area at the default
+     * scale.
+     *
+     * @param g the {@code Graphics2D} object used to paint
+     * @param width the width of the surface in pixels
+     * @param height the height of the surface in pixels
+     * @param area the size of the bounce area in pixels
+     */
+    public static void paintBackground(Graphics2D g, int width, int height,
+            Dimension area)
+    {
+        paintBackground(g, new Viewport(), width, height, area);
+    }
+
+    /**
+     * Paints the background and scaled rule of a bounce area through the
+     * specified viewport.
+     *
+     * @param g the {@code Graphics2D} object used to paint
+     * @param viewport the mapping from meters to pixels
+     * @param width the width of the surface in pixels
+     * @param height the height of the surface in pixels
+     * @param area the size of the bounce area in pixels at the default scale
+     */
+    public static void paintBackground(Graphics2D g, Viewport viewport,
+            int width, int height, Dimension area)
+    {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+
+        paintRule(g, viewport, width, height, area);
+    }
+
+    /**
+     * Paints a frame, including a background, scaled rule, and falling
+     * object, recording it as a Flight Recorder event and in the display's
+     * metrics.
+     *
+     * @param g the {@code Graphics2D} object used to paint
+     * @param width the width of the surface in pixels
+     * @param height the height of the surface in pixels
+     * @param area the size of the bounce area in pixels
+     * @param ball the falling object
+     * @param running whether the display is being animated, in which case
+     *        frames are expected at the intended interval
+     */
+    public void paint(Graphics2D g, int width, int height, Dimension area,
+            Ball ball, boolean running)
+    {
+        paint(g, width, height, area, ball, null, running);
+    }
+
+    /**
+     * Paints a frame, including a background, scaled rule, and falling
+     * objects batched by material, recording it as a Flight Recorder event
+     * and in the display's metrics.
+     *
+     * @param g the {@code Graphics2D} object used to paint
+     * @param width the width of the surface in pixels
+     * @param height the height of the surface in pixels
+     * @param area the size of the bounce area in pixels
+     * @param balls the falling objects
+     * @param running whether the display is being animated, in which case
+     *        frames are expected at the intended interval
+     */
+    public void paint(Graphics2D g, int width, int height, Dimension area,
+            Ball[] balls, boolean running)
+    {
+        paint(g, width, height, area, null, balls, running);
+    }
+
+    /**
+     * Paints a frame of either one falling object or many.
+     *
+     * @param g the {@code Graphics2D} object used to paint
+     * @param width the width of the surface in pixels
+     * @param height the height of the surface in pixels
+     * @param area the size of the bounce area in pixels
+     * @param ball the falling object, or {@code null} if there are many
+     * @param balls the falling objects, or {@code null} if there is one
+     * @param running whether the display is being animated
+     */
+    private void paint(Graphics2D g, int width, int height, Dimension area,
+            Ball ball, Ball[] balls, boolean running)
+    {
+        long paintStart = Metrics.ENABLED ? System.nanoTime() : 0;
+        FrameEvent frame = new FrameEvent();
+        frame.begin();
+
+        paintBackground(g, viewport, width, height, area);
+
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiased ?
+                RenderingHints.VALUE_ANTIALIAS_ON :
+                RenderingHints.VALUE_ANTIALIAS_OFF);
+
+        if(terrain != null)
+        {
+            paintTerrain(g, width, height);
+        }
+
+        if(ball != null)
+        {
+            single[0] = ball;
+            paintBalls(g, single, width, height);
+        }
+        else
+        {
+            paintBalls(g, balls, width, height);
+        }
+
+        if(frame.shouldCommit())
+        {
+            frame.display = name;
+            frame.width = width;
+            frame.height = height;
+            frame.commit();
+        }
+
+        if(Metrics.ENABLED)
+        {
+            recordPaint(paintStart, running);
+        }
+    }
+
+    /**
+     * Paints the terrain down to the ground, as a line in each column of
+     * pixels from the height of the terrain at its middle.
+     *
+     * @param g the {@code Graphics2D} object used to paint
+     * @param width the width of the surface in pixels
+     * @param height the height of the surface in pixels
+     */
+    private void paintTerrain(Graphics2D g, int width, int height)
+    {
+        Color oldColor = g.getColor();
+        int ground = Math.min(height, viewport.toPixelsY(0, height));
+        double half = 0.5 / viewport.getScale();
+
+        g.setColor(TERRAIN_COLOR);
+
+        for(int px = 0; px < width; px++)
+        {
+            double h = terrain.getHeight(viewport.toMetersX(px) + half);
+            int py = Math.max(0, viewport.toPixelsY(h, height));
+
+            if(h > 0 && py < ground)
+            {
+                g.drawLine(px, py, px, ground);
+            }
+        }
+
+        g.setColor(oldColor);
+    }
+
+    /**
+     * Paints balls one material at a time.  Each pass takes the first ball
+     * not yet painted and paints every later ball of the same material, so
+     * the color is changed once per material rather than once per ball.
+     * Balls that lie outside the surface are skipped.  A single ball is
+     * painted the same way.
+     *
+     * @param g the {@code Graphics2D} object used to paint
+     * @param balls the balls
+     * @param width the width of the surface in pixels
+     * @param height the height of the surface in pixels
+     */
+    private void paintBalls(Graphics2D g, Ball[] balls, int width, int height)
+    {
+        int count = balls.length;
+        boolean sprites = RenderingHints.VALUE_ANTIALIAS_ON.equals(
+                g.getRenderingHint(RenderingHints.KEY_ANTIALIASING));
+        Color oldColor = g.getColor();
+
+        if(painted.length < count)
+        {
+            painted = new boolean[count];
+        }
+
+        for(int i = 0; i < count; i++)
+        {
+            painted[i] = false;
+        }
+
+        for(int i = 0; i < count; i++)
+        {
+            if(painted[i])
+            {
+                continue;
+            }
+
+            int material = balls[i].getMaterial().getId();
+            Color color = MaterialColors.of(balls[i].getMaterial());
+
+            if(!sprites)
+            {
+                g.setColor(color);
+            }
+
+            for(int j = i; j < count; j++)
+            {
+                Ball b = balls[j];
+
+                if(painted[j] || b.getMaterial().getId() != material)
+                {
+                    continue;
+                }
+
+                painted[j] = true;
+
+                double d = b.getDiameter();
+
+                if(!viewport.isVisible(b.getX(), b.getY(), d, width, height))
+                {
+                    continue;
+                }
+
+                int px = viewport.toPixelsX(b.getX());
+                int py = viewport.toPixelsY(b.getY() + d, height);
+                int pd = Math.max(1, viewport.toPixels(d));
+
+                if(sprites)
+                {
+                    cache.paint(g, color, px, py, pd);
+                }
+                else
+                {
+                    g.fillOval(px, py, pd, pd);
+                }
+            }
+        }
+
+        g.setColor(oldColor);
+    }
+
+    /**
+     * Records the duration of a paint, and counts the animation frames that
+     * were due since the previous paint but were coalesced or never painted.
+     *
+     * @param paintStart the time from {@link System#nanoTime()} at which the
+     *        paint started
+     * @param running whether the display is being animated
+     */
+    private void recordPaint(long paintStart, boolean running)
+    {
+        paintTime.record(System.nanoTime() - paintStart);
+
+        if(running && lastPaint != 0)
+        {
+            long frames = (paintStart - lastPaint) / frameInterval;
+
+            if(frames > 1)
+            {
+                Metrics.addFramesSkipped(frames - 1);
+            }
+        }
+
+        lastPaint = running ? paintStart : 0;
+    }
+}
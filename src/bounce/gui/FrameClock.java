@@ -0,0 +1,124 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+
+import javax.swing.Timer;
+
+/**
+ * A single timer that repaints every running {@link BounceDisplay}, no matter
+ * how many there are.  On each frame, every display is told whether it can be
+ * seen; displays that are scrolled out of view or hidden are not repainted.
+ * <p>All methods must be called on the event dispatch thread.</p>
+ */
+public class FrameClock
+{
+    /** The clock shared by every display */
+    private static final FrameClock shared =
+            new FrameClock(BounceDisplay.DELAY_ANIMATION);
+
+    private ArrayList<BounceDisplay> displays = new ArrayList<BounceDisplay>();
+    private Timer timer;
+
+    /**
+     * Creates an instance of {@code FrameClock}.
+     *
+     * @param delay the delay in milliseconds between frames
+     */
+    public FrameClock(int delay)
+    {
+        timer = new Timer(delay, new ActionListener()
+        {
+            public void actionPerformed(ActionEvent evt)
+            {
+                frame();
+            }
+        });
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Gets the clock shared by every display.
+     *
+     * @return the shared clock
+     */
+    public static FrameClock getShared()
+    {
+        return shared;
+    }
+
+    /**
+     * Adds a display to be repainted on every frame, and starts the clock if
+     * it is not already running.
+     *
+     * @param display the display to add
+     */
+    public void register(BounceDisplay display)
+    {
+        if(!displays.contains(display))
+        {
+            displays.add(display);
+        }
+
+        if(!timer.isRunning())
+        {
+            timer.start();
+        }
+    }
+
+    /**
+     * Stops repainting a display, and stops the clock if no displays remain.
+     *
+     * @param display the display to remove
+     */
+    public void unregister(BounceDisplay display)
+    {
+        displays.remove(display);
+
+        if(displays.isEmpty())
+        {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Indicates whether the specified display is registered.
+     *
+     * @param display the display
+     *
+     * @return {@code true} if the display is repainted on every frame
+     */
+    public boolean isRegistered(BounceDisplay display)
+    {
+        return displays.contains(display);
+    }
+
+    /**
+     * Updates whether each display can be seen, and repaints those that can.
+     */
+    private void frame()
+    {
+        for(int i = 0; i < displays.size(); i++)
+        {
+            BounceDisplay display = displays.get(i);
+            boolean onScreen = display.isShowing() &&
+                    !display.getVisibleRect().isEmpty();
+
+            display.getAnimation().setOnScreen(onScreen);
+
+            if(onScreen)
+            {
+                display.repaint();
+            }
+        }
+    }
+}
@@ -8,7 +8,15 @@
  */
 package bounce.gui;
 
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Toolkit;
+
+import javax.swing.BorderFactory;
 import javax.swing.JFrame;
+import javax.swing.JScrollPane;
+
+import bounce.metrics.Metrics;
 
 /**
  * A basic frame that houses one or more displays used to animate bouncing
@@ -16,30 +24,100 @@ import javax.swing.JFrame;
  */
 public class Main extends JFrame
 {
+    /** The largest fraction of the screen taken by the frame when packed */
+    private static final double MAX_SCREEN_FRACTION = 0.9;
+
     /**
      * Creates a basic instance of {@code Main}.
      */
     public Main()
+    {
+        this(BounceDemoPanel.DEFAULT_PANELS);
+    }
+
+    /**
+     * Creates an instance of {@code Main} with the specified number of
+     * displays.  If the displays do not fit on the screen they can be
+     * scrolled.
+     *
+     * @param panels the number of displays
+     */
+    public Main(int panels)
     {
         super("Bounce 0.1.1 (alpha)");
 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        getContentPane().add(new BounceDemoPanel());
+
+        JScrollPane scroll = new JScrollPane(new BounceDemoPanel(panels));
+        scroll.setBorder(BorderFactory.createEmptyBorder());
+        scroll.getVerticalScrollBar().setUnitIncrement(16);
+        scroll.getHorizontalScrollBar().setUnitIncrement(16);
+        getContentPane().add(scroll);
+        pack();
+    }
+
+    /**
+     * Limits the packed size of the frame to most of the screen, so that a
+     * large grid of displays is scrolled rather than pushed off screen.
+     */
+    @Override
+    public void pack()
+    {
+        super.pack();
+
+        Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+        int width = (int)(screen.getWidth() * MAX_SCREEN_FRACTION);
+        int height = (int)(screen.getHeight() * MAX_SCREEN_FRACTION);
+
+        if(getWidth() > width || getHeight() > height)
+        {
+            setSize(Math.min(getWidth(), width), Math.min(getHeight(), height));
+            validate();
+        }
+    }
+
+    /**
+     * Packs the frame so that it appears to be resized using its top border
+     * rather than the bottom.
+     */
+    public void packKeepingBottom()
+    {
+        int oldHeight = (int)getSize().getHeight();
         pack();
+        int diff = (int)getSize().getHeight() - oldHeight;
+        Point p = getLocation();
+        p.move((int)p.getX(), (int)p.getY() - diff);
+        setLocation(p);
     }
 
     /**
      * Creates and displays an instance of {@code Main}.
      *
-     * @param args optional command-line arguments (currently ignored)
+     * @param args optionally the number of displays to show
      */
     public static void main(String[] args)
     {
-        Main m = new Main();
+        Metrics.register();
+
+        int panels = BounceDemoPanel.DEFAULT_PANELS;
+
+        if(args.length > 0)
+        {
+            try
+            {
+                panels = Math.max(1, Integer.parseInt(args[0]));
+            }
+            catch(NumberFormatException e)
+            {
+                System.err.println("Invalid number of displays: " + args[0]);
+            }
+        }
+
+        Main m = new Main(panels);
 
         // Center the frame
         m.setLocationRelativeTo(null);
 
         m.setVisible(true);
     }
-}
\ No newline at end of file
+}
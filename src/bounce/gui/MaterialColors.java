@@ -0,0 +1,69 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.gui;
+
+import java.awt.Color;
+
+import bounce.logic.Material;
+
+/**
+ * The colors in which balls of each {@link Material} are painted.  They are
+ * kept here rather than in the material itself, so that the simulation can be
+ * run without loading AWT.
+ */
+public final class MaterialColors
+{
+    /** The color of rubber */
+    public static final Color RUBBER = new Color(160, 130, 40);
+
+    /** The color of iron */
+    public static final Color IRON = new Color(120, 55, 25);
+
+    /** The color of stone */
+    public static final Color STONE = Color.GRAY;
+
+    /** The color of a perfectly elastic material */
+    public static final Color ELASTIC = Color.BLACK;
+
+    /**
+     * Not used.
+     */
+    private MaterialColors()
+    {
+    }
+
+    /**
+     * Gets the color of a material.
+     *
+     * @param material the material
+     * @return the color of the material
+     */
+    public static Color of(Material material)
+    {
+        switch(material.getId())
+        {
+            case Material.ID_RUBBER:
+            {
+                return RUBBER;
+            }
+            case Material.ID_IRON:
+            {
+                return IRON;
+            }
+            case Material.ID_STONE:
+            {
+                return STONE;
+            }
+            default:
+            {
+                return ELASTIC;
+            }
+        }
+    }
+}
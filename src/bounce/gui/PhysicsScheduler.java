@@ -0,0 +1,340 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.gui;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import bounce.metrics.Metrics;
+
+/**
+ * A single thread that calculates the position of the ball in every running
+ * {@link Animation}, no matter how many displays there are.  The thread is
+ * started when the first animation is registered and waits while none are.
+ * An animation whose ball has come to rest unregisters itself until it is
+ * started again, so only moving balls cost anything per tick.
+ * <p>Ticks are due at fixed deadlines, one interval apart, measured from
+ * {@link System#nanoTime()}; the thread parks until each deadline rather than
+ * sleeping for the interval after its work, so the rate does not drift with
+ * the time the work takes.  A tick that starts a whole interval or more late
+ * is an overrun, and the ticks it missed are either run straight away or
+ * dropped, according to the scheduler's {@link OverrunPolicy}.  Each tick is
+ * given the time at which it was due, so an impact is found at the same moment
+ * however late the tick ran.  The policy of the shared scheduler is read from
+ * {@value #PROPERTY_OVERRUN}.</p>
+ */
+public class PhysicsScheduler
+{
+    /**
+     * The system property naming the overrun policy of the shared scheduler,
+     * either {@code catch-up} (the default) or {@code drop}
+     */
+    public static final String PROPERTY_OVERRUN = "bounce.overrun";
+
+    /**
+     * The greatest number of missed ticks run to catch up; any more are
+     * dropped, so that a long stall does not lead to a long burst
+     */
+    public static final int MAX_CATCH_UP = 10;
+
+    /** The scheduler shared by every animation */
+    private static final PhysicsScheduler shared = new PhysicsScheduler(
+            BounceDisplay.DELAY_CALC, OverrunPolicy.fromProperty(
+                    System.getProperty(PROPERTY_OVERRUN)));
+
+    /**
+     * The registered animations, replaced rather than changed so that a tick
+     * can walk them without a lock or an iterator
+     */
+    private volatile Animation[] animations = new Animation[0];
+    private final int delay;
+    private final OverrunPolicy policy;
+    private Thread thread;
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates an instance of {@code PhysicsScheduler} that catches up on
+     * missed ticks.
+     *
+     * @param delay the delay in milliseconds between calculations
+     */
+    public PhysicsScheduler(int delay)
+    {
+        this(delay, OverrunPolicy.CATCH_UP);
+    }
+
+    /**
+     * Creates an instance of {@code PhysicsScheduler}.
+     *
+     * @param delay the delay in milliseconds between calculations
+     * @param policy what to do with the ticks missed when a tick overruns
+     */
+    public PhysicsScheduler(int delay, OverrunPolicy policy)
+    {
+        this.delay = delay;
+        this.policy = policy;
+    }
+
+    /**
+     * Gets the scheduler shared by every animation.
+     *
+     * @return the shared scheduler
+     */
+    public static PhysicsScheduler getShared()
+    {
+        return shared;
+    }
+
+    /**
+     * Gets what is done with the ticks missed when a tick overruns.
+     *
+     * @return the overrun policy
+     */
+    public OverrunPolicy getPolicy()
+    {
+        return policy;
+    }
+
+    /**
+     * Gets the number of ticks run.
+     *
+     * @return the number of ticks
+     */
+    public long getTickCount()
+    {
+        return ticks.get();
+    }
+
+    /**
+     * Gets the number of ticks that started a whole interval or more after
+     * they were due.
+     *
+     * @return the number of overruns
+     */
+    public long getOverrunCount()
+    {
+        return overruns.get();
+    }
+
+    /**
+     * Gets the number of ticks that were missed and never run.
+     *
+     * @return the number of dropped ticks
+     */
+    public long getDroppedTickCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Adds an animation whose ball is to be moved on every tick, and starts the
+     * calculation thread if it is not already running.
+     *
+     * @param animation the animation to add
+     */
+    public synchronized void register(Animation animation)
+    {
+        if(indexOf(animation) < 0)
+        {
+            Animation[] added = Arrays.copyOf(animations,
+                    animations.length + 1);
+            added[added.length - 1] = animation;
+            animations = added;
+        }
+
+        if(thread == null)
+        {
+            thread = new Thread(BounceDisplay.THREAD_NAME_CALC)
+            {
+                @Override
+                public void run()
+                {
+                    calculate();
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Stops moving the ball of an animation.
+     *
+     * @param animation the animation to remove
+     */
+    public synchronized void unregister(Animation animation)
+    {
+        int i = indexOf(animation);
+
+        if(i >= 0)
+        {
+            Animation[] removed = new Animation[animations.length - 1];
+            System.arraycopy(animations, 0, removed, 0, i);
+            System.arraycopy(animations, i + 1, removed, i,
+                    removed.length - i);
+            animations = removed;
+        }
+    }
+
+    /**
+     * Finds a registered animation.
+     *
+     * @param animation the animation
+     * @return its index, or -1 if it is not registered
+     */
+    private int indexOf(Animation animation)
+    {
+        Animation[] current = animations;
+
+        for(int i = 0; i < current.length; i++)
+        {
+            if(current[i] == animation)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Waits until at least one animation is registered.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private synchronized void awaitAnimations() throws InterruptedException
+    {
+        while(animations.length == 0)
+        {
+            wait();
+        }
+    }
+
+    /**
+     * Moves the ball of every registered animation once per tick, for as long
+     * as the application runs.
+     */
+    private void calculate()
+    {
+        long interval = TimeUnit.MILLISECONDS.toNanos(delay);
+        long previous = 0;
+        long deadline = System.nanoTime();
+
+        while(true)
+        {
+            try
+            {
+                if(animations.length == 0)
+                {
+                    previous = 0;
+                    awaitAnimations();
+
+                    // Time spent idle is not owed
+                    deadline = System.nanoTime();
+                }
+
+                long tickStart = System.nanoTime();
+                long late = tickStart - deadline;
+
+                if(late >= interval)
+                {
+                    deadline += skip(late / interval) * interval;
+                    late = tickStart - deadline;
+                }
+
+                if(Metrics.ENABLED)
+                {
+                    Metrics.recordTick(previous, tickStart, interval);
+                    previous = tickStart;
+                }
+
+                // The time at which the tick was due
+                long now = System.currentTimeMillis() -
+                        TimeUnit.NANOSECONDS.toMillis(late);
+
+                Animation[] current = animations;
+
+                for(int i = 0; i < current.length; i++)
+                {
+                    current[i].tick(now);
+                }
+
+                ticks.incrementAndGet();
+                deadline += interval;
+
+                long remaining;
+
+                while((remaining = deadline - System.nanoTime()) > 0)
+                {
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+            catch(InterruptedException e)
+            {
+            }
+        }
+    }
+
+    /**
+     * Records an overrun and decides how many of the missed ticks to drop.
+     *
+     * @param missed the number of whole intervals by which the tick is late
+     * @return the number of ticks dropped
+     */
+    private long skip(long missed)
+    {
+        long drop = policy == OverrunPolicy.DROP ?
+                missed : Math.max(0, missed - MAX_CATCH_UP);
+
+        overruns.incrementAndGet();
+        dropped.addAndGet(drop);
+
+        if(Metrics.ENABLED)
+        {
+            Metrics.addTicksOverrun(1);
+            Metrics.addTicksDropped(drop);
+        }
+
+        return drop;
+    }
+
+    /**
+     * What a scheduler does with the ticks it missed when a tick overruns.
+     */
+    public static enum OverrunPolicy
+    {
+        /**
+         * Runs the missed ticks straight away, up to {@link #MAX_CATCH_UP} of
+         * them, so no step of the simulation is lost.
+         */
+        CATCH_UP,
+
+        /** Drops the missed ticks and runs only the latest. */
+        DROP;
+
+        /**
+         * Gets the policy named by a system property.
+         *
+         * @param value {@code catch-up}, {@code drop}, or {@code null}
+         * @return the policy, or {@link #CATCH_UP} if the value does not name
+         *         one
+         */
+        static OverrunPolicy fromProperty(String value)
+        {
+            return "drop".equals(value) ? DROP : CATCH_UP;
+        }
+    }
+}
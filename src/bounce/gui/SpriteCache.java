@@ -0,0 +1,257 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of pre-rendered ball sprites keyed by color and diameter in
+ * pixels.  Each antialiased ball is rasterized once into a
+ * translucent image compatible with the destination, after which painting a
+ * ball is an image copy.  When the cache is full, the least recently used
+ * sprite is evicted.
+ * <p>Sprites are rendered at the device scale of the destination, so that they
+ * stay sharp on high resolution screens.  When a destination with a different
+ * scale is painted, every sprite is discarded.</p>
+ * <p>Each {@link DisplayRenderer} has a cache of its own, so displays painted
+ * by different threads never contend for one.  A cache must be used by one
+ * thread at a time.</p>
+ */
+public class SpriteCache
+{
+    /** The default number of sprites held by a cache */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Map<Key, BufferedImage> sprites;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /** The key looked up on every paint, reused so a hit allocates nothing */
+    private final Key probe = new Key(0);
+
+    /** The device scale at which the cached sprites were rendered */
+    private double scaleX = 1;
+    private double scaleY = 1;
+
+    /**
+     * Creates an instance of {@code SpriteCache}.
+     *
+     * @param capacity the largest number of sprites held
+     */
+    public SpriteCache(final int capacity)
+    {
+        sprites = new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Key, BufferedImage> eldest)
+            {
+                if(size() > capacity)
+                {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Paints a ball of the specified color and diameter with its top left
+     * corner at the specified position.
+     *
+     * @param g the {@code Graphics2D} object on which the ball is painted
+     * @param color the color of the ball
+     * @param x the x position of the ball in pixels
+     * @param y the y position of the ball in pixels
+     * @param diameter the diameter of the ball in pixels
+     */
+    public void paint(Graphics2D g, Color color, int x, int y, int diameter)
+    {
+        if(diameter <= 0)
+        {
+            return;
+        }
+
+        AffineTransform transform = g.getTransform();
+        BufferedImage sprite = get(g.getDeviceConfiguration(), color,
+                diameter, Math.abs(transform.getScaleX()),
+                Math.abs(transform.getScaleY()));
+
+        g.drawImage(sprite, x, y, diameter, diameter, null);
+    }
+
+    /**
+     * Gets the sprite of a ball, rendering it if it is not already cached.
+     *
+     * @param config the configuration of the destination
+     * @param color the color of the ball
+     * @param diameter the diameter of the ball in pixels
+     * @param sx the horizontal device scale of the destination
+     * @param sy the vertical device scale of the destination
+     * @return the sprite
+     */
+    private BufferedImage get(GraphicsConfiguration config, Color color,
+            int diameter, double sx, double sy)
+    {
+        long key = ((long)color.getRGB() << 32) | diameter;
+
+        if(sx != scaleX || sy != scaleY)
+        {
+            sprites.clear();
+            scaleX = sx;
+            scaleY = sy;
+        }
+
+        probe.value = key;
+        BufferedImage sprite = sprites.get(probe);
+
+        if(sprite != null)
+        {
+            hits++;
+            return sprite;
+        }
+
+        misses++;
+        sprite = render(config, color, diameter, sx, sy);
+        sprites.put(new Key(key), sprite);
+
+        return sprite;
+    }
+
+    /**
+     * Rasterizes an antialiased ball into a new translucent image.
+     *
+     * @param config the configuration of the destination
+     * @param color the color of the ball
+     * @param diameter the diameter of the ball in pixels
+     * @param sx the horizontal device scale of the destination
+     * @param sy the vertical device scale of the destination
+     * @return the image of the ball
+     */
+    private static BufferedImage render(GraphicsConfiguration config,
+            Color color, int diameter, double sx, double sy)
+    {
+        int width = Math.max(1, (int)Math.ceil(diameter * sx));
+        int height = Math.max(1, (int)Math.ceil(diameter * sy));
+        BufferedImage sprite = config.createCompatibleImage(width, height,
+                Transparency.TRANSLUCENT);
+
+        Graphics2D g = sprite.createGraphics();
+
+        try
+        {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            g.scale(width / (double)diameter, height / (double)diameter);
+            g.setColor(color);
+            g.fillOval(0, 0, diameter, diameter);
+        }
+        finally
+        {
+            g.dispose();
+        }
+
+        return sprite;
+    }
+
+    /**
+     * Removes every sprite from the cache.  The statistics are kept.
+     */
+    public void clear()
+    {
+        sprites.clear();
+    }
+
+    /**
+     * Gets the number of sprites in the cache.
+     *
+     * @return the number of sprites
+     */
+    public int size()
+    {
+        return sprites.size();
+    }
+
+    /**
+     * Gets the number of balls painted from a cached sprite.
+     *
+     * @return the number of hits
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Gets the number of balls for which a sprite had to be rendered.
+     *
+     * @return the number of misses
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Gets the number of sprites evicted to keep the cache within capacity.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Gets a summary of the cache's statistics.
+     *
+     * @return a string representation of the cache
+     */
+    @Override
+    public String toString()
+    {
+        return "size=" + size() + " hits=" + getHits() + " misses=" +
+                getMisses() + " evictions=" + getEvictions();
+    }
+
+    /**
+     * The color and diameter of a sprite, packed into a {@code long}.
+     */
+    private static final class Key
+    {
+        long value;
+
+        Key(long value)
+        {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof Key && ((Key)o).value == value;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(value);
+        }
+    }
+}
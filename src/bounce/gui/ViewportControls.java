@@ -0,0 +1,93 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.gui;
+
+import java.awt.Component;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+
+import bounce.logic.Viewport;
+
+/**
+ * Lets the user zoom and pan the viewport of a display with the mouse: the
+ * wheel zooms about the pointer, dragging pans, and a double click returns to
+ * the default scale.
+ */
+public class ViewportControls extends MouseAdapter
+{
+    /** The factor by which one notch of the mouse wheel changes the scale */
+    public static final double ZOOM_STEP = 1.25;
+
+    private final Component component;
+    private final Viewport viewport;
+    private int lastX;
+    private int lastY;
+
+    /**
+     * Creates an instance of {@code ViewportControls}.
+     *
+     * @param component the component showing the viewport
+     * @param viewport the viewport to be controlled
+     */
+    private ViewportControls(Component component, Viewport viewport)
+    {
+        this.component = component;
+        this.viewport = viewport;
+    }
+
+    /**
+     * Adds mouse controls for a viewport to the component showing it.
+     *
+     * @param component the component showing the viewport
+     * @param viewport the viewport to be controlled
+     */
+    public static void install(Component component, Viewport viewport)
+    {
+        ViewportControls controls = new ViewportControls(component, viewport);
+
+        component.addMouseListener(controls);
+        component.addMouseMotionListener(controls);
+        component.addMouseWheelListener(controls);
+    }
+
+    @Override
+    public void mouseWheelMoved(MouseWheelEvent e)
+    {
+        viewport.zoom(Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()),
+                e.getX(), e.getY(), component.getHeight());
+        component.repaint();
+    }
+
+    @Override
+    public void mousePressed(MouseEvent e)
+    {
+        lastX = e.getX();
+        lastY = e.getY();
+    }
+
+    @Override
+    public void mouseDragged(MouseEvent e)
+    {
+        viewport.pan(e.getX() - lastX, e.getY() - lastY);
+        lastX = e.getX();
+        lastY = e.getY();
+        component.repaint();
+    }
+
+    @Override
+    public void mouseClicked(MouseEvent e)
+    {
+        if(e.getClickCount() == 2)
+        {
+            viewport.reset();
+            component.repaint();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+/**
+ * Calculates the acceleration of a body moving along one axis.
+ *
+ * @see Integrator
+ */
+public interface Acceleration
+{
+    /**
+     * Calculates the acceleration of a body at the specified position and
+     * velocity.
+     *
+     * @param position the position of the body in meters
+     * @param velocity the velocity of the body in meters per second
+     * @return the acceleration in meters per second squared
+     */
+    double at(double position, double velocity);
+}
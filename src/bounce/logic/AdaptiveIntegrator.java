@@ -0,0 +1,145 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+/**
+ * Wraps another integrator and chooses the size of each step according to how
+ * close the body is to the ground.  In free flight, a single step covers as
+ * much as {@link #getMaxStep()}.  When the body is falling and is predicted to
+ * reach the ground within the step, the step is shortened to end at the
+ * predicted contact, but never below {@link #getMinStep()}, so that contact is
+ * resolved close to the moment it happens rather than up to a full step late.
+ */
+public class AdaptiveIntegrator implements Integrator
+{
+    /** The default largest step in seconds */
+    public static final double DEFAULT_MAX_STEP = 0.05;
+
+    /** The default smallest step in seconds */
+    public static final double DEFAULT_MIN_STEP = 0.0001;
+
+    private final Integrator integrator;
+    private final double maxStep;
+    private final double minStep;
+
+    /**
+     * Creates an adaptive velocity Verlet integrator with the default limits.
+     */
+    public AdaptiveIntegrator()
+    {
+        this(new VerletIntegrator(), DEFAULT_MAX_STEP, DEFAULT_MIN_STEP);
+    }
+
+    /**
+     * Creates an instance of {@code AdaptiveIntegrator}.
+     *
+     * @param integrator the integrator that performs each step
+     * @param maxStep the largest step in seconds
+     * @param minStep the smallest step in seconds
+     */
+    public AdaptiveIntegrator(Integrator integrator, double maxStep,
+            double minStep)
+    {
+        this.integrator = integrator;
+        this.maxStep = maxStep;
+        this.minStep = minStep;
+    }
+
+    /**
+     * Gets the largest step taken in free flight.
+     * @return the largest step in seconds
+     */
+    public double getMaxStep() {
+        return maxStep;
+    }
+
+    /**
+     * Gets the smallest step taken near contact.
+     * @return the smallest step in seconds
+     */
+    public double getMinStep() {
+        return minStep;
+    }
+
+    /**
+     * Predicts the time until a body reaches the ground, assuming its current
+     * acceleration stays constant.
+     *
+     * @param y the height in meters
+     * @param v the velocity in meters per second
+     * @param a the acceleration in meters per second squared
+     * @return the time in seconds, or infinity if the body will not land; a
+     *         body on the ground lands at once unless it is moving up
+     */
+    static double timeToContact(double y, double v, double a)
+    {
+        if(y <= 0)
+        {
+            // A body leaving the ground lands again after 2v/g
+            if(v > 0)
+            {
+                return a < 0 ? -2 * v / a : Double.POSITIVE_INFINITY;
+            }
+
+            return 0;
+        }
+
+        if(a == 0)
+        {
+            return v < 0 ? -y / v : Double.POSITIVE_INFINITY;
+        }
+
+        // Solve y + vt + at^2/2 = 0 for the first positive root
+        double discriminant = v * v - 2 * a * y;
+
+        if(discriminant < 0)
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        /* Calculate the smaller root from the product of the roots, to avoid
+         * losing it to cancellation when the body is very close to the ground.
+         */
+        double q = -0.5 * (v + Math.copySign(Math.sqrt(discriminant), v));
+        double t1 = q / (0.5 * a);
+        double t2 = q != 0 ? y / q : Double.POSITIVE_INFINITY;
+        double t = Double.POSITIVE_INFINITY;
+
+        if(t1 > 0)
+        {
+            t = t1;
+        }
+        if(t2 > 0 && t2 < t)
+        {
+            t = t2;
+        }
+
+        return t;
+    }
+
+    public double step(double[] state, Acceleration acceleration, double dt)
+    {
+        double h = Math.min(dt, maxStep);
+        double contact = timeToContact(state[POSITION], state[VELOCITY],
+                acceleration.at(state[POSITION], state[VELOCITY]));
+
+        if(contact < h)
+        {
+            h = Math.min(h, Math.max(contact, minStep));
+        }
+
+        return integrator.step(state, acceleration, h);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "adaptive-" + integrator;
+    }
+}
@@ -8,14 +8,12 @@
  */
 package bounce.logic;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
-
 import bounce.logic.Physics.Direction;
 
 /**
- * Represents a ball and stores the information needed to paint it.  It is also
- * capable of painting itself.
+ * Represents a ball and stores the information needed to paint it.  Balls are
+ * painted by the graphical interface, so that the simulation can be run
+ * without loading AWT.
  */
 public class Ball
 {
@@ -205,37 +203,4 @@ public class Ball
         this.y = y;
     }
     // </editor-fold>
-
-    /**
-     * Paints the ball using its stored values and the specified
-     * {@code Graphics2D} object.
-     *
-     * @param g the {@code Graphics2D} object that will paint the ball
-     * @param drawingHeight the height of the drawing area in pixels
-     */
-    public void paint(Graphics2D g, int drawingHeight)
-    {
-        Color oldColor = g.getColor();
-
-        g.setColor(getMaterial().getColor());
-        g.fillOval(Converter.toPixels(getX()),
-                Converter.invertYValue(getY(), getDiameter(), drawingHeight),
-                Converter.toPixels(getDiameter()),
-                Converter.toPixels(getDiameter()));
-
-        g.setColor(oldColor);
-
-        // Traces
-        /*
-        System.out.println("\n\n\npainting ball...");
-        System.out.println("x       : " + getX() + " m");
-        System.out.println("y       : " + getY() + " m");
-        System.out.println("diameter: " + getDiameter() + " m");
-        System.out.println("\nx       : " + Converter.toPixels(getX()) + " px");
-        System.out.println("y       : " + Converter.invertYValue(
-                getY(), getDiameter(), windowHeight) + " px");
-        System.out.println("diameter: " + 
-                Converter.toPixels(getDiameter()) + " px");
-        */
-    }
-}
\ No newline at end of file
+}
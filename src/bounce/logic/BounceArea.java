@@ -11,7 +11,8 @@ package bounce.logic;
 import java.awt.Dimension;
 
 /**
- * Represents an area in which a bounce animation is painted.
+ * Represents an area in which a bounce animation is painted, and the number of
+ * balls bouncing in it.
  */
 public class BounceArea extends PresentationModel
 {
@@ -24,20 +25,27 @@ public class BounceArea extends PresentationModel
     /** String identifying the Size field */
     public static final String FIELD_SIZE = "Size";
 
+    /** String identifying the BallCount field */
+    public static final String FIELD_BALL_COUNT = "BallCount";
+
     /** The size of a bounce area in pixels */
     private Dimension size;
 
+    /** The number of balls bouncing in the area */
+    private Integer ballCount;
+
     /**
      * Creates an instance of {@code BounceArea}.
      */
     public BounceArea(){}
 
     /**
-     * Initializes the bounce area to a preset default size.
+     * Initializes the bounce area to a preset default size, holding one ball.
      */
     public void init()
     {
         setSize(new Dimension(DEFAULT_WIDTH, DEFAULT_HEIGHT));
+        setBallCount(1);
     }
 
     /**
@@ -63,4 +71,33 @@ public class BounceArea extends PresentationModel
             this.size = size;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the number of balls bouncing in the area.
+     *
+     * @return the number of balls
+     */
+    public Integer getBallCount()
+    {
+        return ballCount;
+    }
+
+    /**
+     * Sets the number of balls bouncing in the area.
+     *
+     * @param ballCount the number of balls, at least one
+     */
+    public void setBallCount(Integer ballCount)
+    {
+        if(ballCount.intValue() < 1)
+        {
+            throw new IllegalArgumentException("ballCount must be positive");
+        }
+
+        if(!ballCount.equals(getBallCount()))
+        {
+            firePropertyChange(FIELD_BALL_COUNT, getBallCount(), ballCount);
+            this.ballCount = ballCount;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+/**
+ * The complete sequence of bounces of a ball dropped from a given height,
+ * calculated in advance.  Bounce {@code i} (starting at zero) is the ball's
+ * {@code i + 1}th impact with the ground.  The values are calculated with the
+ * same formulas and rounding as a closed-form {@link Simulation}, so a
+ * simulation can take them from a timeline instead of recalculating them.
+ * <p>A timeline is immutable and may be shared between threads.</p>
+ *
+ * @see BounceTimelineCache
+ */
+public class BounceTimeline
+{
+    /** The largest number of bounces calculated for one timeline */
+    public static final int MAX_BOUNCES = 10000;
+
+    private final double height;
+    private final double cor;
+    private final double gravity;
+    private final double[] impactTimes;
+    private final double[] velocities;
+    private final double[] apexes;
+    private final double[] timesToApex;
+
+    /**
+     * Creates an instance of {@code BounceTimeline}.
+     */
+    private BounceTimeline(double height, double cor, double gravity,
+            double[] impactTimes, double[] velocities, double[] apexes,
+            double[] timesToApex)
+    {
+        this.height = height;
+        this.cor = cor;
+        this.gravity = gravity;
+        this.impactTimes = impactTimes;
+        this.velocities = velocities;
+        this.apexes = apexes;
+        this.timesToApex = timesToApex;
+    }
+
+    /**
+     * Calculates the timeline of a ball dropped from rest.  The sequence ends
+     * with the first bounce whose apex rounds to less than one pixel, at which
+     * point the ball is considered to be at rest, or after
+     * {@link #MAX_BOUNCES} bounces.
+     *
+     * @param height the drop height in meters
+     * @param cor the coefficient of restitution of the ball's material
+     * @param gravity the acceleration due to gravity in meters per second
+     *        squared
+     * @return the timeline
+     */
+    public static BounceTimeline calculate(double height, double cor,
+            double gravity)
+    {
+        double[] impactTimes = new double[16];
+        double[] velocities = new double[16];
+        double[] apexes = new double[16];
+        double[] timesToApex = new double[16];
+
+        double apex = height;
+        double time = Math.sqrt(2 * height / gravity);
+        int count = 0;
+
+        while(count < MAX_BOUNCES)
+        {
+            if(count == impactTimes.length)
+            {
+                impactTimes = grow(impactTimes);
+                velocities = grow(velocities);
+                apexes = grow(apexes);
+                timesToApex = grow(timesToApex);
+            }
+
+            double velocity = Physics.calcVelocity(apex, gravity) * cor;
+            apex = Physics.calcBounceApex(velocity, gravity);
+
+            impactTimes[count] = time;
+            velocities[count] = velocity;
+            apexes[count] = apex;
+            timesToApex[count] = Physics.calcTimeToApex(apex, velocity);
+            count++;
+
+            if(Converter.toPixels(apex) <= 0)
+            {
+                break;
+            }
+
+            time += timesToApex[count - 1] + Math.sqrt(2 * apex / gravity);
+        }
+
+        return new BounceTimeline(height, cor, gravity,
+                trim(impactTimes, count), trim(velocities, count),
+                trim(apexes, count), trim(timesToApex, count));
+    }
+
+    /**
+     * Doubles the length of an array.
+     */
+    private static double[] grow(double[] a)
+    {
+        double[] grown = new double[a.length * 2];
+        System.arraycopy(a, 0, grown, 0, a.length);
+        return grown;
+    }
+
+    /**
+     * Shortens an array to the specified length.
+     */
+    private static double[] trim(double[] a, int length)
+    {
+        double[] trimmed = new double[length];
+        System.arraycopy(a, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Accessors">
+    /**
+     * Gets the height from which the ball is dropped.
+     * @return the drop height in meters
+     */
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the coefficient of restitution of the ball's material.
+     * @return the coefficient of restitution
+     */
+    public double getCor() {
+        return cor;
+    }
+
+    /**
+     * Gets the acceleration due to gravity.
+     * @return the gravity in meters per second squared
+     */
+    public double getGravity() {
+        return gravity;
+    }
+
+    /**
+     * Gets the number of bounces in the timeline.
+     * @return the number of bounces
+     */
+    public int getBounceCount() {
+        return impactTimes.length;
+    }
+
+    /**
+     * Gets the time of an impact, measured from the moment the ball is dropped.
+     * @param bounce the index of the bounce
+     * @return the time in seconds
+     */
+    public double getImpactTime(int bounce) {
+        return impactTimes[bounce];
+    }
+
+    /**
+     * Gets the velocity with which the ball rebounds from an impact.
+     * @param bounce the index of the bounce
+     * @return the velocity in meters per second
+     */
+    public double getVelocity(int bounce) {
+        return velocities[bounce];
+    }
+
+    /**
+     * Gets the apex the ball reaches after an impact.
+     * @param bounce the index of the bounce
+     * @return the apex in meters
+     */
+    public double getApex(int bounce) {
+        return apexes[bounce];
+    }
+
+    /**
+     * Gets the time the ball takes to rise to its apex after an impact.
+     * @param bounce the index of the bounce
+     * @return the time in seconds
+     */
+    public double getTimeToApex(int bounce) {
+        return timesToApex[bounce];
+    }
+    // </editor-fold>
+
+    /**
+     * Indicates whether the ball comes to rest at the specified bounce.
+     *
+     * @param bounce the index of the bounce
+     * @return {@code true} if this is the last bounce and the ball comes to
+     *         rest after it
+     */
+    public boolean isRest(int bounce)
+    {
+        return bounce == impactTimes.length - 1 &&
+                Converter.toPixels(apexes[bounce]) <= 0;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe cache of {@link BounceTimeline}s keyed by drop height,
+ * coefficient of restitution and gravity.  When the cache is full, the least
+ * recently used timeline is evicted.
+ * <p>A timeline is calculated outside the cache's lock, so two threads that
+ * miss on the same key at the same time may both calculate it; both receive
+ * equal timelines and only one is kept.</p>
+ */
+public class BounceTimelineCache
+{
+    /** The default number of timelines held by a cache */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /** The cache shared by every simulation */
+    private static final BounceTimelineCache shared =
+            new BounceTimelineCache(DEFAULT_CAPACITY);
+
+    private final Map<Key, BounceTimeline> timelines;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates an instance of {@code BounceTimelineCache}.
+     *
+     * @param capacity the largest number of timelines held
+     */
+    public BounceTimelineCache(final int capacity)
+    {
+        timelines = new LinkedHashMap<Key, BounceTimeline>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Key, BounceTimeline> eldest)
+            {
+                if(size() > capacity)
+                {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the cache shared by every simulation.
+     *
+     * @return the shared cache
+     */
+    public static BounceTimelineCache getShared()
+    {
+        return shared;
+    }
+
+    /**
+     * Gets the timeline of a ball dropped from the specified height,
+     * calculating it if it is not already cached.
+     *
+     * @param height the drop height in meters
+     * @param cor the coefficient of restitution of the ball's material
+     * @param gravity the acceleration due to gravity in meters per second
+     *        squared
+     * @return the timeline
+     */
+    public BounceTimeline get(double height, double cor, double gravity)
+    {
+        Key key = new Key(height, cor, gravity);
+        BounceTimeline timeline;
+
+        synchronized(timelines)
+        {
+            timeline = timelines.get(key);
+        }
+
+        if(timeline != null)
+        {
+            hits.incrementAndGet();
+            return timeline;
+        }
+
+        misses.incrementAndGet();
+        timeline = BounceTimeline.calculate(height, cor, gravity);
+
+        synchronized(timelines)
+        {
+            timelines.put(key, timeline);
+        }
+
+        return timeline;
+    }
+
+    /**
+     * Removes every timeline from the cache.  The statistics are kept.
+     */
+    public void clear()
+    {
+        synchronized(timelines)
+        {
+            timelines.clear();
+        }
+    }
+
+    /**
+     * Gets the number of timelines in the cache.
+     *
+     * @return the number of timelines
+     */
+    public int size()
+    {
+        synchronized(timelines)
+        {
+            return timelines.size();
+        }
+    }
+
+    /**
+     * Gets the number of requests that were answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of requests for which a timeline had to be calculated.
+     *
+     * @return the number of misses
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of timelines evicted to keep the cache within capacity.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * Gets a summary of the cache's statistics.
+     *
+     * @return a string representation of the cache
+     */
+    @Override
+    public String toString()
+    {
+        return "size=" + size() + " hits=" + getHits() + " misses=" +
+                getMisses() + " evictions=" + getEvictions();
+    }
+
+    /**
+     * The key under which a timeline is cached.
+     */
+    private static final class Key
+    {
+        private final double height;
+        private final double cor;
+        private final double gravity;
+
+        Key(double height, double cor, double gravity)
+        {
+            this.height = height;
+            this.cor = cor;
+            this.gravity = gravity;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof Key))
+            {
+                return false;
+            }
+
+            Key k = (Key)o;
+
+            return Double.compare(height, k.height) == 0 &&
+                    Double.compare(cor, k.cor) == 0 &&
+                    Double.compare(gravity, k.gravity) == 0;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            long h = Double.doubleToLongBits(height);
+            h = h * 31 + Double.doubleToLongBits(cor);
+            h = h * 31 + Double.doubleToLongBits(gravity);
+
+            return (int)(h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.util.Arrays;
+
+/**
+ * Finds the balls of a {@link World} that may overlap a ball, so that only
+ * they need be tested for a collision.  A broad phase is told of every ball
+ * that moves, so it can keep what it knows of them up to date from one step to
+ * the next rather than start afresh.  The candidates it finds may include
+ * balls that do not overlap, but never leave out one that does.
+ * <p>A world finds candidates with a {@link SpatialHash} unless it is given
+ * another broad phase with {@link World#setBroadPhase(BroadPhase)}.  A broad
+ * phase belongs to one world at a time and is not thread-safe.</p>
+ */
+public abstract class BroadPhase
+{
+    /**
+     * Creates a broad phase.  Only the classes of this package may extend it.
+     */
+    BroadPhase()
+    {
+    }
+
+    /**
+     * Empties the broad phase and sizes it for the specified number of balls,
+     * each of which is then moved into it before it is brought up to date.
+     *
+     * @param balls the number of balls
+     * @param reach the greatest distance in meters between the centers of two
+     *        balls that are to be found
+     */
+    abstract void clear(int balls, double reach);
+
+    /**
+     * Records the position of a ball.
+     *
+     * @param i the index of the ball
+     * @param x the x position of the left of the ball in meters
+     * @param y the height of the bottom of the ball in meters
+     * @param diameter the diameter of the ball in meters
+     */
+    abstract void move(int i, double x, double y, double diameter);
+
+    /**
+     * Brings the broad phase up to date once the balls that moved in a step,
+     * or every ball after it was cleared, have been moved.
+     */
+    abstract void update();
+
+    /**
+     * Finds the balls that may overlap a ball, or come within a margin of it.
+     *
+     * @param i the index of the ball, which is not among those found
+     * @param x the x position of the left of the ball in meters
+     * @param y the height of the bottom of the ball in meters
+     * @param diameter the diameter of the ball in meters
+     * @param margin the distance in meters by which the ball is widened
+     * @param into the candidates, emptied and then filled
+     */
+    abstract void near(int i, double x, double y, double diameter,
+            double margin, Candidates into);
+
+    /**
+     * A list of the indices of balls that may overlap a ball, reused from one
+     * search to the next.
+     */
+    static final class Candidates
+    {
+        /** The indices of the balls, of which the first {@link #count} hold */
+        int[] balls = new int[16];
+
+        /** The number of balls found */
+        int count;
+
+        /**
+         * Adds a ball to the list, growing it if it is full.
+         *
+         * @param i the index of the ball
+         */
+        void add(int i)
+        {
+            if(count == balls.length)
+            {
+                balls = Arrays.copyOf(balls, count * 2);
+            }
+
+            balls[count++] = i;
+        }
+    }
+}
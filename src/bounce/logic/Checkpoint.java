@@ -0,0 +1,494 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Saves the complete state of a {@link World} or a {@link Simulation} to a
+ * file, and restores it, so that a long run can be resumed exactly where it
+ * stopped.
+ * <p>A checkpoint begins with an eight-byte header that is never compressed:
+ *
+ * <pre>
+ * int    magic     "BNCE"
+ * short  version   {@link #VERSION}
+ * byte   kind      {@link #KIND_WORLD} or {@link #KIND_SIMULATION}
+ * byte   flags     {@link #FLAG_GZIP} if the rest is compressed
+ * </pre>
+ *
+ * The state follows in little-endian order.  The arrays of a world are copied
+ * in bulk through a direct buffer, so a world of millions of balls is written
+ * or read at close to the speed of the disk.  Compression makes the file
+ * several times smaller at a cost in time, and suits worlds in which many balls
+ * share a material and diameter.</p>
+ * <p>A simulation's absolute times are saved relative to the time of the
+ * checkpoint and restored relative to the time of the restore, so a simulation
+ * driven by the system clock continues from the same point after a restart.
+ * How a simulation is advanced (its integrator, acceleration and timeline
+ * cache) is configuration rather than state: it is not saved, and should be set
+ * as before the checkpoint was made.</p>
+ */
+public final class Checkpoint
+{
+    /** The first four bytes of every checkpoint */
+    public static final int MAGIC = 0x424E4345;
+
+    /**
+     * The version of the format written; version 2 added the horizontal
+     * velocities and drop positions of the balls of a world, and version 3
+     * the state by which its balls are held up and put to sleep
+     */
+    public static final short VERSION = 3;
+
+    /** The earliest version of the format that can still be read */
+    public static final short OLDEST_VERSION = 1;
+
+    /** A checkpoint holding a {@link World} */
+    public static final byte KIND_WORLD = 1;
+
+    /** A checkpoint holding a {@link Simulation} */
+    public static final byte KIND_SIMULATION = 2;
+
+    /** The flag set when the state is compressed */
+    public static final byte FLAG_GZIP = 1;
+
+    /** The size in bytes of the header */
+    private static final int HEADER_SIZE = 8;
+
+    /** The size in bytes of the buffer through which state is copied */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private Checkpoint()
+    {
+    }
+
+    /**
+     * Saves a world.
+     *
+     * @param world the world
+     * @param path the file to write, which is replaced if it exists
+     * @param compress whether to compress the state
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(World world, Path path, boolean compress)
+            throws IOException
+    {
+        try(Output out = Output.open(path, KIND_WORLD, compress))
+        {
+            world.write(out);
+        }
+    }
+
+    /**
+     * Restores a world.
+     *
+     * @param path the file to read
+     * @return the world, as it was when it was saved
+     * @throws IOException if the file cannot be read or does not hold a world
+     */
+    public static World loadWorld(Path path) throws IOException
+    {
+        try(Input in = Input.open(path, KIND_WORLD))
+        {
+            return World.read(in);
+        }
+    }
+
+    /**
+     * Saves a simulation, including the state of its ball.
+     *
+     * @param simulation the simulation
+     * @param now the current time in milliseconds
+     * @param path the file to write, which is replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(Simulation simulation, long now, Path path)
+            throws IOException
+    {
+        try(Output out = Output.open(path, KIND_SIMULATION, false))
+        {
+            simulation.write(out, now);
+        }
+    }
+
+    /**
+     * Restores a simulation, including the state of its ball.
+     *
+     * @param simulation the simulation into which the state is read
+     * @param now the current time in milliseconds, which takes the place of
+     *        the time at which the checkpoint was made
+     * @param path the file to read
+     * @throws IOException if the file cannot be read or does not hold a
+     *         simulation
+     */
+    public static void load(Simulation simulation, long now, Path path)
+            throws IOException
+    {
+        try(Input in = Input.open(path, KIND_SIMULATION))
+        {
+            simulation.read(in, now);
+        }
+    }
+
+    /**
+     * The state being written to a checkpoint.
+     */
+    static final class Output implements Closeable
+    {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(
+                BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        private Output(WritableByteChannel channel)
+        {
+            this.channel = channel;
+        }
+
+        /**
+         * Creates a file and writes the header.
+         *
+         * @param path the file
+         * @param kind the kind of state
+         * @param compress whether to compress the state
+         * @return the output
+         * @throws IOException if the file cannot be written
+         */
+        static Output open(Path path, byte kind, boolean compress)
+                throws IOException
+        {
+            FileChannel file = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+
+            try
+            {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putShort(VERSION).put(kind)
+                        .put(compress ? FLAG_GZIP : 0).flip();
+
+                while(header.hasRemaining())
+                {
+                    file.write(header);
+                }
+
+                if(compress)
+                {
+                    return new Output(Channels.newChannel(new GZIPOutputStream(
+                            Channels.newOutputStream(file), BUFFER_SIZE)));
+                }
+
+                return new Output(file);
+            }
+            catch(IOException e)
+            {
+                file.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Makes room in the buffer, writing it out if necessary.
+         *
+         * @param bytes the number of bytes needed
+         * @throws IOException if the buffer cannot be written
+         */
+        private void reserve(int bytes) throws IOException
+        {
+            if(buffer.remaining() < bytes)
+            {
+                flush();
+            }
+        }
+
+        /**
+         * Writes out the contents of the buffer.
+         *
+         * @throws IOException if the buffer cannot be written
+         */
+        private void flush() throws IOException
+        {
+            buffer.flip();
+
+            while(buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+
+            buffer.clear();
+        }
+
+        void putInt(int value) throws IOException
+        {
+            reserve(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException
+        {
+            reserve(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException
+        {
+            reserve(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        /**
+         * Writes the start of an array.
+         *
+         * @param values the array
+         * @param length the number of elements to write
+         * @throws IOException if the array cannot be written
+         */
+        void putDoubles(double[] values, int length) throws IOException
+        {
+            for(int offset = 0; offset < length;)
+            {
+                reserve(Double.BYTES);
+
+                int n = Math.min(length - offset,
+                        buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().put(values, offset, n);
+                buffer.position(buffer.position() + n * Double.BYTES);
+                offset += n;
+            }
+        }
+
+        /**
+         * Writes the start of an array.
+         *
+         * @param values the array
+         * @param length the number of elements to write
+         * @throws IOException if the array cannot be written
+         */
+        void putInts(int[] values, int length) throws IOException
+        {
+            for(int offset = 0; offset < length;)
+            {
+                reserve(Integer.BYTES);
+
+                int n = Math.min(length - offset,
+                        buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, offset, n);
+                buffer.position(buffer.position() + n * Integer.BYTES);
+                offset += n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                flush();
+            }
+            finally
+            {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * The state being read from a checkpoint.
+     */
+    static final class Input implements Closeable
+    {
+        private final ReadableByteChannel channel;
+        private final short version;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(
+                BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        private Input(ReadableByteChannel channel, short version)
+        {
+            this.channel = channel;
+            this.version = version;
+            buffer.limit(0);
+        }
+
+        /**
+         * Gets the version of the format in which the checkpoint was written.
+         *
+         * @return the version, from {@link #OLDEST_VERSION} to
+         *         {@link #VERSION}
+         */
+        short getVersion()
+        {
+            return version;
+        }
+
+        /**
+         * Opens a file and checks its header.
+         *
+         * @param path the file
+         * @param kind the kind of state expected
+         * @return the input
+         * @throws IOException if the file cannot be read, is not a checkpoint,
+         *         or holds another kind of state or an unknown version
+         */
+        static Input open(Path path, byte kind) throws IOException
+        {
+            FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+
+            try
+            {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+                while(header.hasRemaining())
+                {
+                    if(file.read(header) < 0)
+                    {
+                        throw new EOFException("not a checkpoint: " + path);
+                    }
+                }
+
+                header.flip();
+
+                if(header.getInt() != MAGIC)
+                {
+                    throw new IOException("not a checkpoint: " + path);
+                }
+
+                short version = header.getShort();
+
+                if(version < OLDEST_VERSION || version > VERSION)
+                {
+                    throw new IOException("unsupported checkpoint version " +
+                            version + ": " + path);
+                }
+
+                if(header.get() != kind)
+                {
+                    throw new IOException("wrong kind of checkpoint: " + path);
+                }
+
+                if((header.get() & FLAG_GZIP) != 0)
+                {
+                    return new Input(Channels.newChannel(new GZIPInputStream(
+                            Channels.newInputStream(file), BUFFER_SIZE)),
+                            version);
+                }
+
+                return new Input(file, version);
+            }
+            catch(IOException e)
+            {
+                file.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Reads until the buffer holds at least the specified number of bytes.
+         *
+         * @param bytes the number of bytes needed
+         * @throws IOException if the file cannot be read or ends too soon
+         */
+        private void require(int bytes) throws IOException
+        {
+            if(buffer.remaining() >= bytes)
+            {
+                return;
+            }
+
+            buffer.compact();
+
+            while(buffer.position() < bytes)
+            {
+                if(channel.read(buffer) < 0)
+                {
+                    throw new EOFException("checkpoint is truncated");
+                }
+            }
+
+            buffer.flip();
+        }
+
+        int getInt() throws IOException
+        {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException
+        {
+            require(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        double getDouble() throws IOException
+        {
+            require(Double.BYTES);
+            return buffer.getDouble();
+        }
+
+        /**
+         * Reads into the start of an array.
+         *
+         * @param values the array
+         * @param length the number of elements to read
+         * @throws IOException if the array cannot be read
+         */
+        void getDoubles(double[] values, int length) throws IOException
+        {
+            for(int offset = 0; offset < length;)
+            {
+                require(Double.BYTES);
+
+                int n = Math.min(length - offset,
+                        buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().get(values, offset, n);
+                buffer.position(buffer.position() + n * Double.BYTES);
+                offset += n;
+            }
+        }
+
+        /**
+         * Reads into the start of an array.
+         *
+         * @param values the array
+         * @param length the number of elements to read
+         * @throws IOException if the array cannot be read
+         */
+        void getInts(int[] values, int length) throws IOException
+        {
+            for(int offset = 0; offset < length;)
+            {
+                require(Integer.BYTES);
+
+                int n = Math.min(length - offset,
+                        buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().get(values, offset, n);
+                buffer.position(buffer.position() + n * Integer.BYTES);
+                offset += n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}
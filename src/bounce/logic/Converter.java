@@ -24,16 +24,30 @@ public class Converter
     /**
      * Converts the specified value from meters to pixels based on a preset
      * scale.  If there is a fraction remaining, it will be rounded to the
-     * nearest pixel, with fractions >= 0.5 being rounded up.
+     * nearest pixel, with fractions >= 0.5 being rounded up.  Only values
+     * too large for an {@code int} go through {@code BigDecimal}, so the
+     * conversion does not allocate.
      *
      * @param meters the value to be converted (in meters)
      * @return the number of pixels
      */
     public static int toPixels(double meters)
     {
-        BigDecimal bd = new BigDecimal(meters * SCALE_PIXELS_PER_METER);
-        bd = bd.setScale(0, BigDecimal.ROUND_HALF_UP);
-        return bd.intValue();
+        double pixels = meters * SCALE_PIXELS_PER_METER;
+        double magnitude = Math.abs(pixels);
+
+        if(!(magnitude < Integer.MAX_VALUE))
+        {
+            BigDecimal bd = new BigDecimal(pixels);
+            bd = bd.setScale(0, BigDecimal.ROUND_HALF_UP);
+            return bd.intValue();
+        }
+
+        // The fraction is exact, so this rounds as BigDecimal does
+        double whole = Math.floor(magnitude);
+        int rounded = (int)(magnitude - whole >= 0.5 ? whole + 1 : whole);
+
+        return pixels < 0 ? -rounded : rounded;
     }
 
     /**
@@ -0,0 +1,33 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+/**
+ * Advances a body using the semi-implicit (symplectic) Euler method: the
+ * velocity is updated first and the new velocity is used to update the
+ * position.  It is first-order accurate but does not gain energy over time, and
+ * needs one evaluation of the acceleration per step.
+ */
+public class EulerIntegrator implements Integrator
+{
+    public double step(double[] state, Acceleration acceleration, double dt)
+    {
+        state[VELOCITY] += acceleration.at(state[POSITION], state[VELOCITY]) *
+                dt;
+        state[POSITION] += state[VELOCITY] * dt;
+
+        return dt;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "euler";
+    }
+}
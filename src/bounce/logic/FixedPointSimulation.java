@@ -0,0 +1,432 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import bounce.logic.Physics.Direction;
+
+/**
+ * Calculates the motion of a single ball using integer arithmetic only.
+ * Positions are held in micrometers, times in microseconds and velocities in
+ * micrometers per second, all as {@code long}s, and every result is rounded
+ * down.  The same inputs therefore give bit-for-bit the same trajectory on any
+ * thread or machine, which the {@code double} and {@code BigDecimal} path of
+ * {@link Simulation} does not promise.
+ * <p>Unlike {@link Simulation}, the moments of impact and of reaching each apex
+ * are calculated exactly rather than detected at the next step, so the
+ * trajectory does not depend on how often the simulation is stepped.  Gravity
+ * is fixed at {@link Physics#GRAVITY}.  Drop heights of up to 100 km are
+ * supported without overflow.</p>
+ */
+public class FixedPointSimulation
+{
+    /** The number of micrometers in a meter */
+    public static final long MICROS_PER_METER = 1000000;
+
+    /** The number of microseconds in a second */
+    public static final long MICROS_PER_SECOND = 1000000;
+
+    /** Twice the acceleration due to gravity in micrometers per second squared */
+    public static final long TWO_G = 19600000;
+
+    /**
+     * The numerator and denominator of half the acceleration due to gravity in
+     * micrometers per microsecond squared: d = 49t<sup>2</sup> / 10<sup>7</sup>
+     */
+    private static final long HALF_G_NUM = 49;
+    private static final long HALF_G_DEN = 10000000;
+
+    /** The denominator of a coefficient of restitution in parts per million */
+    private static final long COR_DEN = 1000000;
+
+    /**
+     * The apex in micrometers below which the ball comes to rest; it is half a
+     * pixel, so the ball would no longer be seen to move
+     */
+    public static final long REST_APEX =
+            MICROS_PER_METER / Converter.SCALE_PIXELS_PER_METER / 2;
+
+    /** The greatest drop height in meters for which no value overflows */
+    public static final double MAX_HEIGHT = 100000;
+
+    /** The time in microseconds at which the current movement began */
+    private long phaseStart;
+
+    /** The duration in microseconds of the current movement */
+    private long phaseTime;
+
+    /** The height of the ball in micrometers */
+    private long y;
+
+    /** The speed at which the ball left the ground in micrometers per second */
+    private long velocity;
+
+    /** The apex of the current bounce in micrometers */
+    private long apex;
+
+    /** The coefficient of restitution in parts per million */
+    private long cor;
+
+    /** The time in microseconds of the last impact with the ground */
+    private long impactTime;
+
+    /** The speed in micrometers per second after the last impact */
+    private long impactVelocity;
+
+    /** The apex in micrometers following the last impact */
+    private long impactApex;
+
+    private Direction direction = Direction.NONE;
+    private int bounce;
+    private Ball ball;
+
+    /**
+     * Creates a simulation of a ball with the default diameter.
+     */
+    public FixedPointSimulation()
+    {
+        this(new Ball(Ball.DEFAULT_DIAMETER));
+    }
+
+    /**
+     * Creates a simulation of the specified ball.
+     *
+     * @param ball the ball to be simulated
+     */
+    public FixedPointSimulation(Ball ball)
+    {
+        this.ball = ball;
+    }
+
+    /**
+     * Gets the ball being simulated.  Its fields are updated from the integer
+     * state after every step.
+     *
+     * @return the ball
+     */
+    public Ball getBall()
+    {
+        return ball;
+    }
+
+    /**
+     * Converts meters to micrometers, rounding to the nearest micrometer.
+     *
+     * @param meters the value in meters
+     * @return the value in micrometers
+     */
+    public static long toMicrometers(double meters)
+    {
+        return Math.round(meters * MICROS_PER_METER);
+    }
+
+    /**
+     * Converts micrometers to meters.
+     *
+     * @param micrometers the value in micrometers
+     * @return the value in meters
+     */
+    public static double toMeters(long micrometers)
+    {
+        return micrometers / (double)MICROS_PER_METER;
+    }
+
+    /**
+     * Calculates the largest integer whose square does not exceed the
+     * specified value.  The estimate from floating point is corrected with
+     * integer comparisons, so the result is exact.
+     *
+     * @param n a non-negative value
+     * @return the integer square root of n
+     */
+    public static long isqrt(long n)
+    {
+        if(n < 0)
+        {
+            throw new IllegalArgumentException("negative value " + n);
+        }
+
+        long r = (long)Math.sqrt(n);
+
+        while(r * r > n)
+        {
+            r--;
+        }
+
+        while((r + 1) * (r + 1) <= n)
+        {
+            r++;
+        }
+
+        return r;
+    }
+
+    /**
+     * Calculates the distance fallen from rest in the specified time.
+     *
+     * @param time the time in microseconds
+     * @return the distance in micrometers
+     */
+    static long fallDistance(long time)
+    {
+        return HALF_G_NUM * time * time / HALF_G_DEN;
+    }
+
+    /**
+     * Calculates the time taken to fall from rest through the specified
+     * distance: t = &radic;(2d / g).
+     *
+     * @param distance the distance in micrometers
+     * @return the time in microseconds
+     */
+    static long fallTime(long distance)
+    {
+        return isqrt(distance * HALF_G_DEN / HALF_G_NUM);
+    }
+
+    /**
+     * Calculates the speed of an object that has fallen through the specified
+     * distance: v = &radic;(2gd).
+     *
+     * @param distance the distance in micrometers
+     * @return the speed in micrometers per second
+     */
+    static long impactVelocity(long distance)
+    {
+        return isqrt(TWO_G * distance);
+    }
+
+    /**
+     * Calculates the time taken to rise to the apex when leaving the ground at
+     * the specified speed: t = v / g.
+     *
+     * @param velocity the speed in micrometers per second
+     * @return the time in microseconds
+     */
+    static long riseTime(long velocity)
+    {
+        return velocity * 2 * MICROS_PER_SECOND / TWO_G;
+    }
+
+    /**
+     * Places the ball at the top of a bounce area of the specified size, ready
+     * to be dropped.
+     *
+     * @param width the width of the bounce area in meters
+     * @param height the height of the bounce area in meters
+     * @throws IllegalArgumentException if the height exceeds
+     *         {@link #MAX_HEIGHT}
+     */
+    public void reset(double width, double height)
+    {
+        if(height > MAX_HEIGHT)
+        {
+            throw new IllegalArgumentException(
+                    "height exceeds " + MAX_HEIGHT + " m: " + height);
+        }
+
+        ball.setDiameter(Ball.DEFAULT_DIAMETER);
+        ball.setX((width / 2) - (ball.getDiameter() / 2));
+
+        y = Math.max(0, toMicrometers(height - ball.getDiameter()));
+        apex = y;
+        velocity = 0;
+        direction = Direction.DOWN;
+        cor = Math.round(ball.getMaterial().getCor() * COR_DEN);
+        bounce = 0;
+        impactTime = 0;
+        impactVelocity = 0;
+        impactApex = 0;
+
+        updateBall();
+    }
+
+    /**
+     * Starts the ball falling.
+     *
+     * @param now the current time in milliseconds
+     */
+    public void start(long now)
+    {
+        phaseStart = now * 1000;
+        phaseTime = fallTime(apex);
+        bounce = 0;
+    }
+
+    /**
+     * Indicates whether the ball is still moving.
+     *
+     * @return {@code true} until the ball has come to rest
+     */
+    public boolean isRunning()
+    {
+        return direction != Direction.NONE;
+    }
+
+    /**
+     * Moves the ball to its position at the specified time.
+     *
+     * @param now the current time in milliseconds
+     * @return {@code true} if the ball struck the ground during this step
+     */
+    public boolean step(long now)
+    {
+        return stepMicros(now * 1000);
+    }
+
+    /**
+     * Moves the ball to its position at the specified time, passing through
+     * every apex and impact reached on the way.
+     *
+     * @param now the current time in microseconds
+     * @return {@code true} if the ball struck the ground during this step
+     */
+    public boolean stepMicros(long now)
+    {
+        boolean impact = false;
+
+        while(direction != Direction.NONE)
+        {
+            long t = now - phaseStart;
+
+            if(t < phaseTime)
+            {
+                if(direction == Direction.UP)
+                {
+                    y = Math.min(apex, velocity * t / MICROS_PER_SECOND -
+                            fallDistance(t));
+                }
+                else
+                {
+                    y = apex - fallDistance(t);
+                }
+                break;
+            }
+
+            phaseStart += phaseTime;
+
+            if(direction == Direction.UP)
+            {
+                y = apex;
+                velocity = 0;
+                direction = Direction.DOWN;
+                phaseTime = fallTime(apex);
+            }
+            else
+            {
+                impact = true;
+                bounce++;
+
+                y = 0;
+                velocity = impactVelocity(apex) * cor / COR_DEN;
+                apex = velocity * velocity / TWO_G;
+
+                impactTime = phaseStart;
+                impactVelocity = velocity;
+                impactApex = apex;
+
+                if(apex < REST_APEX)
+                {
+                    direction = Direction.NONE;
+                }
+                else
+                {
+                    direction = Direction.UP;
+                    phaseTime = riseTime(velocity);
+                }
+            }
+        }
+
+        updateBall();
+
+        return impact;
+    }
+
+    /**
+     * Copies the integer state to the ball, for painting and reporting.
+     */
+    private void updateBall()
+    {
+        ball.setY(toMeters(y));
+        ball.setVelocity(toMeters(velocity));
+        ball.setApex(toMeters(apex));
+        ball.setDirection(direction);
+    }
+
+    /**
+     * Gets the height of the ball.
+     *
+     * @return the height in micrometers
+     */
+    public long getY()
+    {
+        return y;
+    }
+
+    /**
+     * Gets the speed at which the ball last left the ground, or zero once it
+     * has passed its apex.
+     *
+     * @return the speed in micrometers per second
+     */
+    public long getVelocity()
+    {
+        return velocity;
+    }
+
+    /**
+     * Gets the apex of the current bounce.
+     *
+     * @return the apex in micrometers
+     */
+    public long getApex()
+    {
+        return apex;
+    }
+
+    /**
+     * Gets the time of the last impact with the ground, which may fall between
+     * two steps.
+     *
+     * @return the time in microseconds
+     */
+    public long getImpactTime()
+    {
+        return impactTime;
+    }
+
+    /**
+     * Gets the speed at which the ball left the ground after the last impact.
+     *
+     * @return the speed in micrometers per second
+     */
+    public long getImpactVelocity()
+    {
+        return impactVelocity;
+    }
+
+    /**
+     * Gets the apex of the bounce following the last impact.
+     *
+     * @return the apex in micrometers
+     */
+    public long getImpactApex()
+    {
+        return impactApex;
+    }
+
+    /**
+     * Gets the number of impacts with the ground since the ball was dropped.
+     *
+     * @return the number of impacts
+     */
+    public int getBounceCount()
+    {
+        return bounce;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+/**
+ * A constant downward acceleration.
+ */
+public class Gravity implements Acceleration
+{
+    /** Earth's average gravity, pointing down */
+    public static final Gravity EARTH = new Gravity(Physics.GRAVITY);
+
+    private final double gravity;
+
+    /**
+     * Creates an instance of {@code Gravity}.
+     *
+     * @param gravity the magnitude of the acceleration in meters per second
+     *        squared
+     */
+    public Gravity(double gravity)
+    {
+        this.gravity = gravity;
+    }
+
+    /**
+     * Gets the magnitude of the acceleration.
+     *
+     * @return the magnitude in meters per second squared
+     */
+    public double getGravity()
+    {
+        return gravity;
+    }
+
+    public double at(double position, double velocity)
+    {
+        return -gravity;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+/**
+ * Advances the position and velocity of a body along a vertical axis by a step
+ * in time.  The state of the body is held in a two-element array: the height
+ * in meters at {@link #POSITION}, and the velocity in meters per second, where
+ * positive is up, at {@link #VELOCITY}.
+ * <p>An integrator knows nothing of the ground; the caller detects and resolves
+ * contact between steps.  An integrator may choose to advance by less than the
+ * requested time, for instance to stop at a predicted contact, so the caller
+ * must keep stepping until the requested time has been used.</p>
+ */
+public interface Integrator
+{
+    /** The index of the position in a state array */
+    int POSITION = 0;
+
+    /** The index of the velocity in a state array */
+    int VELOCITY = 1;
+
+    /**
+     * Advances the state of a body by at most the specified time.
+     *
+     * @param state the position and velocity, updated in place
+     * @param acceleration the acceleration acting on the body
+     * @param dt the time in seconds by which to advance
+     * @return the time in seconds by which the state was actually advanced,
+     *         greater than zero and no more than {@code dt}
+     */
+    double step(double[] state, Acceleration acceleration, double dt);
+}
@@ -8,10 +8,9 @@
  */
 package bounce.logic;
 
-import java.awt.Color;
-
 /**
- * Stores data related to a specific material.
+ * Stores data related to a specific material.  The color in which it is
+ * painted is kept by the graphical interface, in {@code MaterialColors}.
  */
 /* TODO Make this class more scalable to avoid usage as in BounceControlPanel */
 public class Material
@@ -63,33 +62,6 @@ public class Material
         this.id = id;
     }
 
-    /**
-     * Gets the color of the material.
-     * @return the color of the material
-     */
-    public Color getColor()
-    {
-        switch(id)
-        {
-            case ID_RUBBER:
-            {
-                return new Color(160, 130, 40);
-            }
-            case ID_IRON:
-            {
-                return new Color(120, 55, 25);
-            }
-            case ID_STONE:
-            {
-                return Color.GRAY;
-            }
-            default:
-            {
-                return Color.BLACK;
-            }
-        }
-    }
-
     /**
      * Gets the coefficient of restitution (COR) of the material.
      * @return the COR of the material
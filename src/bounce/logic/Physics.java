@@ -27,6 +27,60 @@ public class Physics
     /** Earth's average gravity in meters per second squared */
     public static final double GRAVITY = 9.8;
 
+    /**
+     * The magnitude below which {@link #round3(double)} rounds without
+     * {@code BigDecimal}, keeping every count of half thousandths exact
+     */
+    private static final double ROUND_LIMIT = 1e12;
+
+    /**
+     * Rounds a value to three decimal places, with halves rounded away from
+     * zero.  The result is the same as that of
+     * {@code new BigDecimal(value).setScale(3, ROUND_HALF_UP).doubleValue()},
+     * but is found without allocating.  Which side of each boundary the exact
+     * value of the double lies on is decided with fused multiply-adds, which
+     * round only once, so the decision is never wrong.
+     *
+     * @param value the value
+     * @return the value rounded to the nearest thousandth
+     */
+    static double round3(double value)
+    {
+        double magnitude = Math.abs(value);
+
+        if(!(magnitude < ROUND_LIMIT))
+        {
+            BigDecimal bd = new BigDecimal(value);
+            bd = bd.setScale(3, BigDecimal.ROUND_HALF_UP);
+
+            return bd.doubleValue();
+        }
+
+        // Find the exact floor of the value in thousandths, then round it
+        double n = Math.floor(magnitude * 1000);
+
+        if(Math.fma(magnitude, 1000, -n) < 0)
+        {
+            n--;
+        }
+        else if(Math.fma(magnitude, 1000, -(n + 1)) >= 0)
+        {
+            n++;
+        }
+
+        if(Math.fma(magnitude, 1000, -(n + 0.5)) >= 0)
+        {
+            n++;
+        }
+
+        if(n == 0)
+        {
+            return 0;
+        }
+
+        return value < 0 ? -n / 1000 : n / 1000;
+    }
+
     /**
      * Calculates the total displacement that an object should have moved based
      * on the specified time and velocity.  The value is returned in meters
@@ -71,11 +125,8 @@ public class Physics
             }
         }
         
-        BigDecimal bd = new BigDecimal(
+        return round3(
                 (velocity * time) + (0.5d * acceleration * Math.pow(time, 2)));
-        bd = bd.setScale(3, BigDecimal.ROUND_HALF_UP);
-
-        return bd.doubleValue();
     }
 
     /**
@@ -99,10 +150,22 @@ public class Physics
      */
     public static double calcVelocity(double height)
     {
-        BigDecimal bd = new BigDecimal(Math.sqrt(2d * GRAVITY * height));
-        bd = bd.setScale(3, BigDecimal.ROUND_HALF_UP);
+        return calcVelocity(height, GRAVITY);
+    }
 
-        return bd.doubleValue();
+    /**
+     * Calculates the velocity of an object that has fallen from a specified
+     * height under the specified gravity.  The value is rounded in the same way
+     * as by {@link #calcVelocity(double)}.
+     *
+     * @param height the height in meters
+     * @param gravity the acceleration due to gravity in meters per second
+     *        squared
+     * @return the velocity of the object in meters per second
+     */
+    public static double calcVelocity(double height, double gravity)
+    {
+        return round3(Math.sqrt(2d * gravity * height));
     }
 
     /**
@@ -125,15 +188,26 @@ public class Physics
      * @return the distance in meters
      */
     public static double calcBounceApex(double velocity)
+    {
+        return calcBounceApex(velocity, GRAVITY);
+    }
+
+    /**
+     * Calculates the maximum height of a bounce under the specified gravity.
+     * The value is rounded in the same way as by
+     * {@link #calcBounceApex(double)}.
+     *
+     * @param velocity the initial velocity in meters per second
+     * @param gravity the acceleration due to gravity in meters per second
+     *        squared
+     * @return the distance in meters
+     */
+    public static double calcBounceApex(double velocity, double gravity)
     {
         /* We can always use 0 in place of the final velocity because at its
          * apex, an object is not moving.
          */
-        BigDecimal bd = new BigDecimal(
-                (0 - Math.pow(velocity, 2)) / (2d * -GRAVITY));
-        bd = bd.setScale(3, BigDecimal.ROUND_HALF_UP);
-
-        return bd.doubleValue();
+        return round3((0 - Math.pow(velocity, 2)) / (2d * -gravity));
     }
 
     /**
@@ -157,22 +231,37 @@ public class Physics
     public static double calcTimeToApex(
             double displacement, double velocity)
     {
-        BigDecimal bd;
-
         if(velocity > 0)
         {
             /* The average velocity is simply the initial velocity / 2, since at
              * the apex, the object will have a final velocity of zero.
              */
-            bd = new BigDecimal(displacement / (velocity / 2));
-        }
-        else
-        {
-            bd = new BigDecimal(0);
+            return round3(displacement / (velocity / 2));
         }
 
-        bd = bd.setScale(3, BigDecimal.ROUND_HALF_UP);
+        return 0;
+    }
 
-        return bd.doubleValue();
+    /**
+     * Calculates the mechanical energy of an object per kilogram of its mass.
+     * The value is not rounded.  The value is calculated using the formula:
+     * <br />
+     * <br />
+     * e = gh + &frac12; v<sup>2</sup> <br />
+     * <br />
+     * where: <br />
+     * <br />
+     * e = the energy in joules per kilogram <br />
+     * g = Earth's average gravity (9.8 m/s<sup>2</sup>) <br />
+     * h = the height in meters <br />
+     * v = the velocity in meters per second <br />
+     *
+     * @param height the height in meters
+     * @param velocity the velocity in meters per second
+     * @return the energy in joules per kilogram
+     */
+    public static double calcEnergy(double height, double velocity)
+    {
+        return GRAVITY * height + 0.5d * velocity * velocity;
     }
 }
\ No newline at end of file
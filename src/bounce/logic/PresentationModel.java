@@ -12,6 +12,8 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 
+import bounce.metrics.ModelChangeEvent;
+
 /**
  * Provides members and methods that allow listeners to be supported.  A class
  * that inherits from {@code PresentationModel} should store information that is
@@ -65,6 +67,9 @@ public abstract class PresentationModel
     public void firePropertyChange(
             String field, Object oldValue, Object newValue)
     {
+        ModelChangeEvent event = new ModelChangeEvent();
+        event.begin();
+
         PropertyChangeEvent evt = 
                 new PropertyChangeEvent(this, field, oldValue, newValue);
 
@@ -72,5 +77,15 @@ public abstract class PresentationModel
         {
             listener.propertyChange(evt);
         }
+
+        if(event.shouldCommit())
+        {
+            event.model = getClass();
+            event.field = field;
+            event.oldValue = String.valueOf(oldValue);
+            event.newValue = String.valueOf(newValue);
+            event.listeners = listeners.size();
+            event.commit();
+        }
     }
 }
\ No newline at end of file
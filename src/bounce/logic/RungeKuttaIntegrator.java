@@ -0,0 +1,47 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+/**
+ * Advances a body using the classical fourth-order Runge-Kutta method.  It is
+ * the most accurate of the fixed-step integrators for accelerations that depend
+ * on velocity, at the cost of four evaluations of the acceleration per step.
+ */
+public class RungeKuttaIntegrator implements Integrator
+{
+    public double step(double[] state, Acceleration acceleration, double dt)
+    {
+        double y = state[POSITION];
+        double v = state[VELOCITY];
+        double half = dt / 2;
+
+        double k1y = v;
+        double k1v = acceleration.at(y, v);
+
+        double k2y = v + k1v * half;
+        double k2v = acceleration.at(y + k1y * half, k2y);
+
+        double k3y = v + k2v * half;
+        double k3v = acceleration.at(y + k2y * half, k3y);
+
+        double k4y = v + k3v * dt;
+        double k4v = acceleration.at(y + k3y * dt, k4y);
+
+        state[POSITION] = y + dt / 6 * (k1y + 2 * k2y + 2 * k3y + k4y);
+        state[VELOCITY] = v + dt / 6 * (k1v + 2 * k2v + 2 * k3v + k4v);
+
+        return dt;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "rk4";
+    }
+}
@@ -0,0 +1,443 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.util.concurrent.Phaser;
+
+/**
+ * A population of balls like a {@link World}, divided into shards that are
+ * stepped in parallel.  Each shard is a world of its own holding every
+ * {@code n}th ball, so balls that come to rest are spread evenly over the
+ * shards and no two shards ever write to the same array.  The values of every
+ * ball after a step are exactly those a single world would give, since no ball
+ * depends on another.
+ * <p>The caller's thread steps the first shard and a fixed pool of worker
+ * threads steps the others.  On each step the workers are released and then
+ * gathered again through a {@link Phaser}; the only data they share is a
+ * count of impacts per shard, each held on a cache line of its own so that
+ * the workers do not contend for it.</p>
+ * <p>A sharded world must be stepped and changed by one thread at a time,
+ * and closed when it is no longer needed to stop its workers.</p>
+ */
+public class ShardedWorld implements AutoCloseable
+{
+    /** The name of each thread stepping a shard, followed by its number */
+    public static final String THREAD_NAME_SHARD = "thread-shard-";
+
+    /**
+     * The spacing of the impact counts in ints: 128 bytes, the unit in which
+     * adjacent cache lines may be fetched together
+     */
+    private static final int PAD = 32;
+
+    private final World[] shards;
+    private final Thread[] workers;
+    private final Phaser phaser;
+    private final int[] impacts;
+    private int size;
+
+    /** A failure in a worker during the current step */
+    private volatile RuntimeException failure;
+
+    /** The time to step by, written before the workers are released */
+    private double dt;
+
+    /**
+     * Creates an empty world under Earth's gravity.
+     *
+     * @param shards the number of shards, and of threads stepping them
+     */
+    public ShardedWorld(int shards)
+    {
+        this(shards, Physics.GRAVITY);
+    }
+
+    /**
+     * Creates an empty world.
+     *
+     * @param shards the number of shards, and of threads stepping them
+     * @param gravity the acceleration due to gravity in meters per second
+     *        squared
+     */
+    public ShardedWorld(int shards, double gravity)
+    {
+        if(shards < 1)
+        {
+            throw new IllegalArgumentException("shards must be positive");
+        }
+
+        this.shards = new World[shards];
+        this.workers = new Thread[shards - 1];
+        this.phaser = new Phaser(shards);
+        this.impacts = new int[(shards + 1) * PAD];
+
+        for(int s = 0; s < shards; s++)
+        {
+            this.shards[s] = new World(gravity);
+        }
+
+        for(int s = 1; s < shards; s++)
+        {
+            final int shard = s;
+
+            workers[s - 1] = new Thread(THREAD_NAME_SHARD + s)
+            {
+                @Override
+                public void run()
+                {
+                    work(shard);
+                }
+            };
+            workers[s - 1].setDaemon(true);
+            workers[s - 1].start();
+        }
+    }
+
+    /**
+     * Steps one shard on every tick until the world is closed.
+     *
+     * @param shard the index of the shard
+     */
+    private void work(int shard)
+    {
+        // Each step takes two phases: one to release, one to gather
+        while(phaser.arriveAndAwaitAdvance() >= 0)
+        {
+            try
+            {
+                impacts[(shard + 1) * PAD] = shards[shard].step(dt);
+            }
+            catch(RuntimeException e)
+            {
+                failure = e;
+            }
+
+            phaser.arriveAndAwaitAdvance();
+        }
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getShardCount()
+    {
+        return shards.length;
+    }
+
+    /**
+     * Adds a ball at rest at the specified position.
+     *
+     * @param x the x position of the ball in meters
+     * @param y the height of the bottom of the ball in meters
+     * @param diameter the diameter of the ball in meters
+     * @param material the material the ball is made of
+     * @return the index of the new ball
+     * @see World#add(double, double, double, Material)
+     */
+    public int add(double x, double y, double diameter, Material material)
+    {
+        int i = size++;
+
+        shards[i % shards.length].add(x, y, diameter, material);
+
+        return i;
+    }
+
+    /**
+     * Moves a sleeping ball back to the active set.
+     *
+     * @param i the index of the ball
+     */
+    public void wake(int i)
+    {
+        shards[i % shards.length].wake(i / shards.length);
+    }
+
+    /**
+     * Changes the vertical velocity of a ball, waking it if it is asleep.
+     *
+     * @param i the index of the ball
+     * @param impulse the change in velocity in meters per second, positive
+     *        upwards
+     */
+    public void applyImpulse(int i, double impulse)
+    {
+        shards[i % shards.length].applyImpulse(i / shards.length, impulse);
+    }
+
+    /**
+     * Changes the velocity of a ball in both directions, waking it if it is
+     * asleep.
+     *
+     * @param i the index of the ball
+     * @param horizontal the change in horizontal velocity in meters per
+     *        second, positive to the right
+     * @param vertical the change in vertical velocity in meters per second,
+     *        positive upwards
+     */
+    public void applyImpulse(int i, double horizontal, double vertical)
+    {
+        shards[i % shards.length].applyImpulse(i / shards.length, horizontal,
+                vertical);
+    }
+
+    /**
+     * Sets the walls off which the balls of every shard bounce.
+     *
+     * @param left the x position of the left wall in meters
+     * @param right the x position of the right wall in meters, greater than
+     *        that of the left
+     * @see World#setWalls(double, double)
+     */
+    public void setWalls(double left, double right)
+    {
+        for(World shard : shards)
+        {
+            shard.setWalls(left, right);
+        }
+    }
+
+    /**
+     * Sets the terrain on which the balls of every shard bounce.  A terrain
+     * cannot be changed, so the shards share it.
+     *
+     * @param terrain the terrain, or {@code null} for the ground alone
+     * @see World#setTerrain(Terrain)
+     */
+    public void setTerrain(Terrain terrain)
+    {
+        for(World shard : shards)
+        {
+            shard.setTerrain(terrain);
+        }
+    }
+
+    /**
+     * Sets the drag of the air in every shard.
+     *
+     * @param drag the rate in inverse seconds at which air slows a ball
+     * @see World#setDrag(double)
+     */
+    public void setDrag(double drag)
+    {
+        for(World shard : shards)
+        {
+            shard.setDrag(drag);
+        }
+    }
+
+    /**
+     * Returns every ball to the position from which it was dropped, at rest,
+     * and wakes it.
+     */
+    public void reset()
+    {
+        for(World shard : shards)
+        {
+            shard.reset();
+        }
+    }
+
+    /**
+     * Advances every moving ball by the specified time, stepping the shards
+     * in parallel, and returns once all of them have been stepped.
+     *
+     * @param dt the time in seconds
+     * @return the number of impacts with the ground during the step
+     * @throws IllegalStateException if the world has been closed
+     * @see World#step(double)
+     */
+    public int step(double dt)
+    {
+        if(phaser.isTerminated())
+        {
+            throw new IllegalStateException("world is closed");
+        }
+
+        if(workers.length == 0)
+        {
+            return shards[0].step(dt);
+        }
+
+        this.dt = dt;
+        failure = null;
+
+        // Release the workers, step the first shard, then wait for the rest
+        phaser.arriveAndAwaitAdvance();
+        int total = shards[0].step(dt);
+        phaser.arriveAndAwaitAdvance();
+
+        if(failure != null)
+        {
+            throw failure;
+        }
+
+        for(int s = 1; s < shards.length; s++)
+        {
+            total += impacts[(s + 1) * PAD];
+        }
+
+        return total;
+    }
+
+    /**
+     * Copies the state of a ball into a {@link Ball}, for painting.
+     *
+     * @param i the index of the ball
+     * @param ball the ball to which the state is copied
+     */
+    public void copyTo(int i, Ball ball)
+    {
+        shards[i % shards.length].copyTo(i / shards.length, ball);
+    }
+
+    /**
+     * Indicates whether a ball is asleep.
+     *
+     * @param i the index of the ball
+     * @return {@code true} if the ball is at rest in the sleeping set
+     */
+    public boolean isSleeping(int i)
+    {
+        return shards[i % shards.length].isSleeping(i / shards.length);
+    }
+
+    /**
+     * Gets the number of balls in the world.
+     *
+     * @return the number of balls
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the number of balls that are moving.
+     *
+     * @return the number of balls in the active sets
+     */
+    public int getActiveCount()
+    {
+        int count = 0;
+
+        for(World shard : shards)
+        {
+            count += shard.getActiveCount();
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the number of balls that are at rest.
+     *
+     * @return the number of balls in the sleeping sets
+     */
+    public int getSleepingCount()
+    {
+        int count = 0;
+
+        for(World shard : shards)
+        {
+            count += shard.getSleepingCount();
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the simulated time since the world was created or reset.
+     *
+     * @return the time in seconds
+     */
+    public double getTime()
+    {
+        return shards[0].getTime();
+    }
+
+    /**
+     * Gets the x position of a ball.
+     *
+     * @param i the index of the ball
+     * @return the x position in meters
+     */
+    public double getX(int i)
+    {
+        return shards[i % shards.length].getX(i / shards.length);
+    }
+
+    /**
+     * Gets the height of the bottom of a ball.
+     *
+     * @param i the index of the ball
+     * @return the height in meters
+     */
+    public double getY(int i)
+    {
+        return shards[i % shards.length].getY(i / shards.length);
+    }
+
+    /**
+     * Gets the vertical velocity of a ball.
+     *
+     * @param i the index of the ball
+     * @return the velocity in meters per second, positive upwards
+     */
+    public double getVelocity(int i)
+    {
+        return shards[i % shards.length].getVelocity(i / shards.length);
+    }
+
+    /**
+     * Gets the horizontal velocity of a ball.
+     *
+     * @param i the index of the ball
+     * @return the velocity in meters per second, positive to the right
+     */
+    public double getHorizontalVelocity(int i)
+    {
+        return shards[i % shards.length].getHorizontalVelocity(
+                i / shards.length);
+    }
+
+    /**
+     * Gets the diameter of a ball.
+     *
+     * @param i the index of the ball
+     * @return the diameter in meters
+     */
+    public double getDiameter(int i)
+    {
+        return shards[i % shards.length].getDiameter(i / shards.length);
+    }
+
+    /**
+     * Gets the ID of the material a ball is made of.
+     *
+     * @param i the index of the ball
+     * @return the material ID
+     */
+    public int getMaterial(int i)
+    {
+        return shards[i % shards.length].getMaterial(i / shards.length);
+    }
+
+    /**
+     * Stops the worker threads.  The world can still be read, but no longer
+     * stepped.
+     */
+    @Override
+    public void close()
+    {
+        phaser.forceTermination();
+    }
+}
@@ -0,0 +1,657 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.io.IOException;
+
+import bounce.logic.Physics.Direction;
+
+/**
+ * Calculates the motion of a single ball dropped within a bounce area.  A
+ * simulation holds no reference to any GUI component and is advanced by
+ * supplying the current time in milliseconds, so it can be driven either by the
+ * system clock or by a virtual clock.
+ */
+public class Simulation
+{
+    /** The time in milliseconds at which the ball starts moving */
+    private long displacementStart;
+
+    /** The time elapsed in seconds from the start of a displacement */
+    private double displacementTime;
+
+    /** The time it should take to reach a particular apex */
+    private double timeToApex;
+
+    /** The time at which the "display" clock starts */
+    private long clockStart;
+
+    /** The total elapsed time to be displayed */
+    private double clockTime;
+
+    /** The width of the bounce area in meters */
+    private double areaWidth;
+
+    /** The height of the bounce area in meters */
+    private double areaHeight;
+
+    /** The time in milliseconds of the last step taken by the integrator */
+    private long lastStep;
+
+    /** The position and velocity passed to the integrator */
+    private final double[] state = new double[2];
+
+    /** The number of impacts with the ground since the ball was dropped */
+    private int bounce;
+
+    /** The speed in meters per second at which the ball last left the ground */
+    private double rebound;
+
+    private Ball ball;
+    private BounceTimelineCache timelineCache =
+            BounceTimelineCache.getShared();
+    private BounceTimeline timeline;
+    private Integrator integrator;
+    private Acceleration acceleration = Gravity.EARTH;
+
+    /**
+     * Creates a simulation of a ball with the default diameter.
+     */
+    public Simulation()
+    {
+        this(new Ball(Ball.DEFAULT_DIAMETER));
+    }
+
+    /**
+     * Creates a simulation of the specified ball.
+     *
+     * @param ball the ball whose motion is calculated
+     */
+    public Simulation(Ball ball)
+    {
+        this.ball = ball;
+    }
+
+    /**
+     * Gets the ball whose motion is calculated.
+     *
+     * @return the simulated ball
+     */
+    public Ball getBall()
+    {
+        return ball;
+    }
+
+    /**
+     * Gets the integrator used to advance the ball.
+     *
+     * @return the integrator, or {@code null} if the ball's position is
+     *         calculated directly from the time elapsed since its last apex or
+     *         impact
+     */
+    public Integrator getIntegrator()
+    {
+        return integrator;
+    }
+
+    /**
+     * Sets the integrator used to advance the ball.  By default there is none
+     * and each position is calculated in closed form from the time elapsed
+     * since the ball's last apex or impact, which is only correct for a
+     * constant vertical gravity.  An integrator steps the ball forward from its
+     * previous state instead, so it can be used with any acceleration.
+     *
+     * @param integrator the integrator, or {@code null} to use the closed form
+     */
+    public void setIntegrator(Integrator integrator)
+    {
+        this.integrator = integrator;
+    }
+
+    /**
+     * Sets the cache from which the closed-form calculation takes the bounces
+     * of a ball.  By default the cache shared by every simulation is used.
+     *
+     * @param timelineCache the cache, or {@code null} to calculate every bounce
+     *        as it happens
+     */
+    public void setTimelineCache(BounceTimelineCache timelineCache)
+    {
+        this.timelineCache = timelineCache;
+    }
+
+    /**
+     * Sets the acceleration acting on the ball when an integrator is used.
+     *
+     * @param acceleration the acceleration
+     */
+    public void setAcceleration(Acceleration acceleration)
+    {
+        this.acceleration = acceleration;
+    }
+
+    /**
+     * Gets the time elapsed in seconds since the start of the current bounce
+     * movement.  (One movement being either a free fall from the apex, or a
+     * rise to the apex from the ground.)
+     *
+     * @param now the current time in milliseconds
+     *
+     * @return the time elapsed in seconds
+     */
+    private double getElapsedBounceTime(long now)
+    {
+        return (now - displacementStart) / 1000d;
+    }
+
+    /**
+     * Resets the time at which one bounce movement begins.  (One movement being
+     * either a free fall from the apex, or a rise to the apex from the ground.)
+     *
+     * @param now the current time in milliseconds
+     */
+    private void resetDisplacementStartTime(long now)
+    {
+        displacementStart = now;
+    }
+
+    /**
+     * Places the ball at the top of a bounce area of the specified size, ready
+     * to be dropped.
+     *
+     * @param width the width of the bounce area in meters
+     * @param height the height of the bounce area in meters
+     */
+    public void reset(double width, double height)
+    {
+        areaWidth = width;
+        areaHeight = height;
+
+        ball.setDiameter(Ball.DEFAULT_DIAMETER);
+        ball.setX((width / 2) - (ball.getDiameter() / 2));
+        ball.setY(height - ball.getDiameter());
+        ball.setApex(ball.getY());
+        ball.setVelocity(0);
+        ball.setDirection(Direction.DOWN);
+
+        clockTime = 0;
+    }
+
+    /**
+     * Starts the clocks used to time the displacement of the ball.
+     *
+     * @param now the current time in milliseconds
+     */
+    public void start(long now)
+    {
+        resetDisplacementStartTime(now);
+        clockStart = now;
+        lastStep = now;
+        bounce = 0;
+        rebound = 0;
+
+        if(timelineCache != null && integrator == null)
+        {
+            timeline = timelineCache.get(ball.getApex(),
+                    ball.getMaterial().getCor(), Physics.GRAVITY);
+        }
+        else
+        {
+            timeline = null;
+        }
+    }
+
+    /**
+     * Indicates whether the ball is still moving.
+     *
+     * @return {@code true} until the ball has come to rest
+     */
+    public boolean isRunning()
+    {
+        return ball.getDirection() != Direction.NONE;
+    }
+
+    /**
+     * Calculates the new position of the ball based on its current direction of
+     * travel, and the time at which it started moving.
+     *
+     * @param now the current time in milliseconds
+     *
+     * @return {@code true} if the ball struck the ground during this step
+     */
+    public boolean step(long now)
+    {
+        if(integrator != null)
+        {
+            return integrate(now);
+        }
+
+        displacementTime = getElapsedBounceTime(now);
+        double displacement = Physics.calcDisplacement(
+                ball.getDirection(), displacementTime, ball.getVelocity());
+
+        switch(ball.getDirection())
+        {
+            case UP:
+            {
+                ball.setY(displacement);
+
+                if(ball.getY() >= ball.getApex() ||
+                        displacementTime >= timeToApex)
+                {
+                    ball.setY(ball.getApex());
+                    ball.setVelocity(0);
+                    ball.setDirection(Direction.DOWN);
+
+                    resetDisplacementStartTime(now);
+                }
+                return false;
+            }
+            case DOWN:
+            {
+                ball.setY(ball.getApex() - displacement);
+
+                if(ball.getY() < 0)
+                {
+                    ball.setY(0);
+                }
+
+                if(ball.getY() == 0 && areaHeight > 0)
+                {
+                    if(timeline != null &&
+                            bounce < timeline.getBounceCount())
+                    {
+                        ball.setVelocity(timeline.getVelocity(bounce));
+                        ball.setApex(timeline.getApex(bounce));
+                        timeToApex = timeline.getTimeToApex(bounce);
+                    }
+                    else
+                    {
+                        ball.setVelocity(Physics.calcVelocity(ball.getApex()) *
+                                ball.getMaterial().getCor());
+                        ball.setApex(
+                                Physics.calcBounceApex(ball.getVelocity()));
+                        timeToApex = Physics.calcTimeToApex(
+                                ball.getApex(), ball.getVelocity());
+                    }
+
+                    ball.setDirection(Direction.UP);
+                    bounce++;
+                    rebound = ball.getVelocity();
+
+                    resetDisplacementStartTime(now);
+
+                    if(Converter.toPixels(ball.getApex()) <= 0)
+                    {
+                        ball.setDirection(Direction.NONE);
+                    }
+                    return true;
+                }
+                return false;
+            }
+            default:
+            {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Advances the ball using the integrator by the time elapsed since the
+     * previous step.  If a step would take the ball below the ground, it is
+     * replaced by a shorter step that ends at the predicted moment of impact,
+     * where the ball rebounds with its speed reduced by the coefficient of
+     * restitution of its material.
+     *
+     * @param now the current time in milliseconds
+     *
+     * @return {@code true} if the ball struck the ground during this step
+     */
+    private boolean integrate(long now)
+    {
+        double dt = (now - lastStep) / 1000d;
+        boolean impact = false;
+
+        lastStep = now;
+
+        if(!isRunning())
+        {
+            return false;
+        }
+
+        state[Integrator.POSITION] = ball.getY();
+        state[Integrator.VELOCITY] = ball.getDirection() == Direction.UP ?
+                ball.getVelocity() : -ball.getVelocity();
+
+        while(dt > 0)
+        {
+            double y = state[Integrator.POSITION];
+            double v = state[Integrator.VELOCITY];
+            double h = integrator.step(state, acceleration, dt);
+
+            if(state[Integrator.POSITION] <= 0 &&
+                    state[Integrator.VELOCITY] < 0 && areaHeight > 0)
+            {
+                /* Go back to the start of the step and only advance as far as
+                 * the predicted contact, so the bounce happens at the ground.
+                 */
+                double contact = AdaptiveIntegrator.timeToContact(
+                        y, v, acceleration.at(y, v));
+
+                if(contact < h)
+                {
+                    state[Integrator.POSITION] = y;
+                    state[Integrator.VELOCITY] = v;
+                    h = contact > 0 ?
+                            integrator.step(state, acceleration, contact) : 0;
+                }
+
+                state[Integrator.POSITION] = 0;
+                state[Integrator.VELOCITY] *= -ball.getMaterial().getCor();
+                rebound = state[Integrator.VELOCITY];
+                ball.setApex(calcApex(rebound));
+                impact = true;
+
+                if(Converter.toPixels(ball.getApex()) <= 0)
+                {
+                    state[Integrator.VELOCITY] = 0;
+                    break;
+                }
+            }
+            else if(v > 0 && state[Integrator.VELOCITY] <= 0)
+            {
+                ball.setApex(state[Integrator.POSITION]);
+            }
+
+            dt -= h;
+        }
+
+        ball.setY(state[Integrator.POSITION]);
+        ball.setVelocity(Math.abs(state[Integrator.VELOCITY]));
+
+        if(impact && state[Integrator.VELOCITY] == 0)
+        {
+            ball.setDirection(Direction.NONE);
+        }
+        else
+        {
+            ball.setDirection(state[Integrator.VELOCITY] > 0 ?
+                    Direction.UP : Direction.DOWN);
+        }
+
+        return impact;
+    }
+
+    /**
+     * Estimates the apex of a bounce under the acceleration acting on the
+     * ball, taking its vertical component at the ground as constant.  The
+     * estimate is replaced by the height the integrated ball actually reaches
+     * once it stops rising.  An acceleration that does not pull the ball back
+     * down would take it out of the area, whose height is used instead.
+     *
+     * @param velocity the velocity at which the ball leaves the ground in
+     *        meters per second
+     * @return the apex in meters
+     */
+    private double calcApex(double velocity)
+    {
+        double a = acceleration.at(0, velocity);
+
+        return a < 0 ? Physics.calcBounceApex(velocity, -a) : areaHeight;
+    }
+
+    /**
+     * Indicates whether the ball can be moved directly to its position at any
+     * time using {@link #seek(long)}.
+     *
+     * @return {@code true} if the bounces of the ball were taken from a
+     *         timeline when the simulation was started
+     */
+    public boolean canSeek()
+    {
+        return timeline != null;
+    }
+
+    /**
+     * Moves the ball directly to the position it has at the specified time,
+     * calculated from its timeline rather than by stepping through the time
+     * in between.  This is used to catch up on a simulation that has not been
+     * stepped for a while.  If the time lies beyond the end of the timeline,
+     * the ball is moved to its last impact and then stepped as usual.
+     *
+     * @param now the current time in milliseconds
+     *
+     * @return {@code true} if the ball struck the ground at least once since
+     *         it was last stepped
+     */
+    public boolean seek(long now)
+    {
+        if(timeline == null)
+        {
+            return step(now);
+        }
+
+        double t = (now - clockStart) / 1000d;
+        int previous = bounce;
+        int count = timeline.getBounceCount();
+
+        // Find the last impact at or before the specified time
+        int low = 0;
+        int high = count - 1;
+        int index = -1;
+
+        while(low <= high)
+        {
+            int mid = (low + high) >>> 1;
+
+            if(timeline.getImpactTime(mid) <= t)
+            {
+                index = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+
+        if(index < 0)
+        {
+            // Still falling from the drop height
+            ball.setY(timeline.getHeight() - Physics.calcDisplacement(
+                    Direction.DOWN, t, 0));
+            ball.setVelocity(0);
+            ball.setApex(timeline.getHeight());
+            ball.setDirection(Direction.DOWN);
+            resetDisplacementStartTime(clockStart);
+
+            return false;
+        }
+
+        double dt = t - timeline.getImpactTime(index);
+        long impact = now - Math.round(dt * 1000);
+
+        bounce = index + 1;
+        rebound = timeline.getVelocity(index);
+        ball.setApex(timeline.getApex(index));
+        timeToApex = timeline.getTimeToApex(index);
+
+        if(timeline.isRest(index))
+        {
+            ball.setY(0);
+            ball.setVelocity(timeline.getVelocity(index));
+            ball.setDirection(Direction.NONE);
+        }
+        else if(index == count - 1)
+        {
+            // The timeline ends here, so step on from the impact
+            ball.setY(0);
+            ball.setVelocity(timeline.getVelocity(index));
+            ball.setDirection(Direction.UP);
+            resetDisplacementStartTime(impact);
+            step(now);
+        }
+        else if(dt < timeToApex)
+        {
+            ball.setVelocity(timeline.getVelocity(index));
+            ball.setY(Physics.calcDisplacement(
+                    Direction.UP, dt, ball.getVelocity()));
+            ball.setDirection(Direction.UP);
+            resetDisplacementStartTime(impact);
+        }
+        else
+        {
+            double fall = dt - timeToApex;
+
+            ball.setVelocity(0);
+            ball.setY(Math.max(0, ball.getApex() -
+                    Physics.calcDisplacement(Direction.DOWN, fall, 0)));
+            ball.setDirection(Direction.DOWN);
+            resetDisplacementStartTime(now - Math.round(fall * 1000));
+        }
+
+        return bounce > previous;
+    }
+
+    /**
+     * Writes the state of the simulation and its ball to a checkpoint.  Times
+     * are written relative to the current time.
+     *
+     * @param out the checkpoint
+     * @param now the current time in milliseconds
+     * @throws IOException if the checkpoint cannot be written
+     */
+    void write(Checkpoint.Output out, long now) throws IOException
+    {
+        out.putDouble(areaWidth);
+        out.putDouble(areaHeight);
+        out.putLong(displacementStart - now);
+        out.putDouble(displacementTime);
+        out.putDouble(timeToApex);
+        out.putLong(clockStart - now);
+        out.putDouble(clockTime);
+        out.putLong(lastStep - now);
+        out.putInt(bounce);
+
+        out.putDouble(ball.getX());
+        out.putDouble(ball.getY());
+        out.putDouble(ball.getDiameter());
+        out.putDouble(ball.getVelocity());
+        out.putDouble(ball.getApex());
+        out.putInt(ball.getDirection().ordinal());
+        out.putInt(ball.getMaterial().getId());
+
+        // The timeline is found again from the values it was calculated from
+        out.putInt(timeline != null ? 1 : 0);
+
+        if(timeline != null)
+        {
+            out.putDouble(timeline.getHeight());
+            out.putDouble(timeline.getCor());
+            out.putDouble(timeline.getGravity());
+        }
+    }
+
+    /**
+     * Reads the state written by {@link #write(Checkpoint.Output, long)},
+     * replacing that of the simulation and its ball.
+     *
+     * @param in the checkpoint
+     * @param now the current time in milliseconds
+     * @throws IOException if the checkpoint cannot be read or is inconsistent
+     */
+    void read(Checkpoint.Input in, long now) throws IOException
+    {
+        areaWidth = in.getDouble();
+        areaHeight = in.getDouble();
+        displacementStart = now + in.getLong();
+        displacementTime = in.getDouble();
+        timeToApex = in.getDouble();
+        clockStart = now + in.getLong();
+        clockTime = in.getDouble();
+        lastStep = now + in.getLong();
+        bounce = in.getInt();
+
+        ball.setX(in.getDouble());
+        ball.setY(in.getDouble());
+        ball.setDiameter(in.getDouble());
+        ball.setVelocity(in.getDouble());
+        ball.setApex(in.getDouble());
+
+        int direction = in.getInt();
+
+        if(direction < 0 || direction >= Direction.values().length)
+        {
+            throw new IOException("inconsistent checkpoint: direction " +
+                    direction);
+        }
+
+        ball.setDirection(Direction.values()[direction]);
+        ball.setMaterial(new Material(in.getInt()));
+
+        if(in.getInt() != 0)
+        {
+            double height = in.getDouble();
+            double cor = in.getDouble();
+            double gravity = in.getDouble();
+
+            timeline = timelineCache != null ?
+                    timelineCache.get(height, cor, gravity) :
+                    BounceTimeline.calculate(height, cor, gravity);
+        }
+        else
+        {
+            timeline = null;
+        }
+    }
+
+    /**
+     * Gets the speed at which the ball left the ground after the last impact,
+     * however the ball is advanced.  This is the speed just after the impact
+     * rather than at the end of the step in which it happened.
+     *
+     * @return the speed in meters per second, or 0 if the ball has not yet
+     *         struck the ground
+     */
+    public double getReboundVelocity()
+    {
+        return rebound;
+    }
+
+    /**
+     * Gets the mechanical energy of the ball per kilogram of mass.
+     *
+     * @return the sum of the potential and kinetic energy in joules per
+     *         kilogram
+     */
+    public double getEnergy()
+    {
+        return Physics.calcEnergy(ball.getY(), ball.getVelocity());
+    }
+
+    /**
+     * Updates the time elapsed since the beginning of the bounce.
+     *
+     * @param now the current time in milliseconds
+     */
+    public void updateClockTime(long now)
+    {
+        clockTime = (now - clockStart) / 1000d;
+    }
+
+    /**
+     * Gets the time elapsed in seconds since the very beginning of the bounce.
+     *
+     * @return the time elapsed in seconds
+     */
+    public double getClockTime()
+    {
+        return clockTime;
+    }
+}
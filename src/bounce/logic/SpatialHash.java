@@ -0,0 +1,252 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.util.Arrays;
+
+/**
+ * A broad phase that files balls in a uniform grid of square cells, hashed
+ * into a power-of-two number of buckets, and finds the balls near a point
+ * without looking at every ball.  Each bucket holds a doubly linked list of
+ * balls threaded through arrays of primitives, so a ball that moves to another
+ * cell is unlinked and linked again in constant time, without allocation.
+ * <p>A cell is as wide as the largest ball, so any ball overlapping another
+ * has its center in the same cell or one of the eight around it.  Cells that
+ * hash to the same bucket share its list, which only adds candidates.  Where
+ * the sizes of balls vary widely, a cell holds many of the smaller balls, and
+ * a {@link SweepAndPrune} may find fewer candidates.</p>
+ * <p>A spatial hash is not thread-safe.</p>
+ */
+public class SpatialHash extends BroadPhase
+{
+    /** The number of cells searched around a point */
+    private static final int NEIGHBOURS = 9;
+
+    /** The marker for the end of a list or a ball in no bucket */
+    private static final int NONE = -1;
+
+    private int[] head = new int[0];
+    private int[] next = new int[0];
+    private int[] previous = new int[0];
+    private int[] bucket = new int[0];
+    private int mask;
+    private double inverseCellSize;
+
+    /** The buckets searched around a point, reused */
+    private final int[] cells = new int[NEIGHBOURS];
+
+    /**
+     * Creates an empty spatial hash.
+     */
+    public SpatialHash()
+    {
+    }
+
+    /**
+     * Empties the hash and sizes it for the specified number of balls, with
+     * cells as wide as the reach.
+     *
+     * @param balls the number of balls that will be inserted
+     * @param reach the width of a cell in meters
+     */
+    @Override
+    void clear(int balls, double reach)
+    {
+        int buckets = Integer.highestOneBit(Math.max(1, balls) * 2 - 1) * 2;
+
+        if(head.length != buckets)
+        {
+            head = new int[buckets];
+        }
+
+        if(next.length < balls)
+        {
+            next = new int[balls];
+            previous = new int[balls];
+            bucket = new int[balls];
+        }
+
+        Arrays.fill(head, NONE);
+        Arrays.fill(bucket, NONE);
+        mask = buckets - 1;
+        inverseCellSize = 1 / reach;
+    }
+
+    /**
+     * Gets the bucket holding the cell of a point.
+     *
+     * @param cx the x position in meters
+     * @param cy the height in meters
+     * @return the bucket
+     */
+    private int bucketOf(double cx, double cy)
+    {
+        return hash((int)Math.floor(cx * inverseCellSize),
+                (int)Math.floor(cy * inverseCellSize));
+    }
+
+    /**
+     * Hashes the coordinates of a cell to a bucket.
+     *
+     * @param cellX the column of the cell
+     * @param cellY the row of the cell
+     * @return the bucket
+     */
+    private int hash(int cellX, int cellY)
+    {
+        int h = cellX * 0x9E3779B1 ^ cellY * 0x85EBCA77;
+
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Places a ball in the bucket of the cell holding its center, moving it
+     * out of any bucket it was in before.
+     *
+     * @param i the index of the ball
+     * @param x the x position of the left of the ball in meters
+     * @param y the height of the bottom of the ball in meters
+     * @param diameter the diameter of the ball in meters
+     */
+    @Override
+    void move(int i, double x, double y, double diameter)
+    {
+        double r = diameter / 2;
+        int b = bucketOf(x + r, y + r);
+
+        if(bucket[i] == b)
+        {
+            return;
+        }
+
+        if(bucket[i] != NONE)
+        {
+            unlink(i);
+        }
+
+        int first = head[b];
+
+        next[i] = first;
+        previous[i] = NONE;
+
+        if(first != NONE)
+        {
+            previous[first] = i;
+        }
+
+        head[b] = i;
+        bucket[i] = b;
+    }
+
+    /**
+     * Takes a ball out of its bucket.
+     *
+     * @param i the index of the ball
+     */
+    private void unlink(int i)
+    {
+        int n = next[i];
+        int p = previous[i];
+
+        if(p != NONE)
+        {
+            next[p] = n;
+        }
+        else
+        {
+            head[bucket[i]] = n;
+        }
+
+        if(n != NONE)
+        {
+            previous[n] = p;
+        }
+
+        bucket[i] = NONE;
+    }
+
+    /**
+     * Does nothing, since every ball is filed as soon as it moves.
+     */
+    @Override
+    void update()
+    {
+    }
+
+    /**
+     * Finds the balls in the cell holding the center of a ball and in the
+     * eight cells around it.  The margin is taken to be within the reach the
+     * hash was cleared with.
+     *
+     * @param i the index of the ball
+     * @param x the x position of the left of the ball in meters
+     * @param y the height of the bottom of the ball in meters
+     * @param diameter the diameter of the ball in meters
+     * @param margin the distance in meters by which the ball is widened
+     * @param into the candidates, emptied and then filled
+     */
+    @Override
+    void near(int i, double x, double y, double diameter, double margin,
+            Candidates into)
+    {
+        double r = diameter / 2;
+        int count = neighbours(x + r, y + r, cells);
+
+        into.count = 0;
+
+        for(int k = 0; k < count; k++)
+        {
+            for(int j = head[cells[k]]; j != NONE; j = next[j])
+            {
+                if(j != i)
+                {
+                    into.add(j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the buckets of the cell holding a point and the eight cells around
+     * it, each bucket once.
+     *
+     * @param cx the x position in meters
+     * @param cy the height in meters
+     * @param into an array of at least {@link #NEIGHBOURS} elements that
+     *        receives the buckets
+     * @return the number of buckets
+     */
+    private int neighbours(double cx, double cy, int[] into)
+    {
+        int cellX = (int)Math.floor(cx * inverseCellSize);
+        int cellY = (int)Math.floor(cy * inverseCellSize);
+        int count = 0;
+
+        for(int dx = -1; dx <= 1; dx++)
+        {
+            for(int dy = -1; dy <= 1; dy++)
+            {
+                int b = hash(cellX + dx, cellY + dy);
+                int k = 0;
+
+                while(k < count && into[k] != b)
+                {
+                    k++;
+                }
+
+                if(k == count)
+                {
+                    into[count++] = b;
+                }
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Offers the ticks published to a {@link StateRing} to any number of
+ * {@link Flow.Subscriber}s, each receiving a {@link Snapshot} of the balls and
+ * of the bounces since the last one it received.  Subscribers may come and go
+ * while the ring is being published to.
+ * <p>Every subscription has a daemon thread of its own, which reads the ring
+ * through a reader that does not gate the publisher, so neither a slow
+ * subscriber nor one that stops requesting can hold up the thread that
+ * publishes, or any other subscriber.  A subscriber is given ticks in order
+ * and never more than it has requested.  Ticks overwritten before it reads
+ * them are skipped, and counted in the next snapshot, together with the
+ * bounces during them.</p>
+ * <p>The thread that publishes to the ring calls {@link #signal()} after every
+ * tick, which wakes the subscriptions that are waiting for one and allocates
+ * nothing.  Each subscription delivers the same {@link Snapshot} and balls
+ * every time, so nothing is allocated per tick delivered either; a subscriber
+ * must copy anything it keeps once {@code onNext} returns.</p>
+ */
+public class StatePublisher implements Flow.Publisher<StatePublisher.Snapshot>
+{
+    /** The prefix of the name of the thread of each subscription */
+    public static final String THREAD_NAME_SUBSCRIBER = "thread-subscriber-";
+
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    /**
+     * The subscriptions, replaced rather than changed so that a tick can walk
+     * them without a lock or an iterator
+     */
+    private volatile Subscription[] subscriptions = new Subscription[0];
+
+    /** The ring read by the subscriptions */
+    private volatile StateRing ring;
+
+    /** Whether the publisher has been closed */
+    private volatile boolean closed = false;
+
+    /**
+     * Creates an instance of {@code StatePublisher}.
+     *
+     * @param ring the ring whose ticks are offered to subscribers
+     */
+    public StatePublisher(StateRing ring)
+    {
+        this.ring = Objects.requireNonNull(ring);
+    }
+
+    /**
+     * Replaces the ring whose ticks are offered to subscribers, for example
+     * when the number of balls changes.  Each subscription moves to the new
+     * ring with its next tick.
+     *
+     * @param ring the new ring
+     */
+    public void setRing(StateRing ring)
+    {
+        this.ring = Objects.requireNonNull(ring);
+        signal();
+    }
+
+    /**
+     * Gets the number of subscriptions that have not been cancelled.
+     *
+     * @return the number of subscriptions
+     */
+    public int getSubscriberCount()
+    {
+        return subscriptions.length;
+    }
+
+    /**
+     * Adds a subscriber, which is given its subscription and then the ticks
+     * published from now on as it requests them, on a thread of its own.  A
+     * subscriber added after the publisher is closed is completed straight
+     * away.
+     *
+     * @param subscriber the subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Snapshot> subscriber)
+    {
+        Subscription subscription =
+                new Subscription(Objects.requireNonNull(subscriber));
+
+        add(subscription);
+        subscription.thread.start();
+
+        // Checked after the add, so a concurrent close is not missed
+        if(closed)
+        {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * Adds a subscription to those woken on every tick.
+     *
+     * @param subscription the subscription
+     */
+    private synchronized void add(Subscription subscription)
+    {
+        Subscription[] added =
+                Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        added[added.length - 1] = subscription;
+        subscriptions = added;
+    }
+
+    /**
+     * Removes a subscription from those woken on every tick, if it is there.
+     *
+     * @param subscription the subscription
+     */
+    private synchronized void remove(Subscription subscription)
+    {
+        for(int i = 0; i < subscriptions.length; i++)
+        {
+            if(subscriptions[i] == subscription)
+            {
+                Subscription[] removed =
+                        new Subscription[subscriptions.length - 1];
+                System.arraycopy(subscriptions, 0, removed, 0, i);
+                System.arraycopy(subscriptions, i + 1, removed, i,
+                        removed.length - i);
+                subscriptions = removed;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wakes the subscriptions waiting for a tick.  This is called by the
+     * thread that publishes to the ring, after every tick, and never blocks.
+     */
+    public void signal()
+    {
+        for(Subscription subscription : subscriptions)
+        {
+            if(subscription.demand.get() > 0)
+            {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    /**
+     * Completes every subscription once any tick being given to it has been,
+     * and completes any subscriber added later.
+     */
+    public void close()
+    {
+        closed = true;
+
+        for(Subscription subscription : subscriptions)
+        {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * A tick as given to a subscriber.  The snapshot and its balls are reused
+     * for every tick given to the same subscriber, and are only valid until
+     * its {@code onNext} returns.
+     */
+    public static final class Snapshot
+    {
+        private long sequence;
+        private long time;
+        private long bounces;
+        private long skipped;
+        private Ball[] balls = new Ball[0];
+
+        /**
+         * Gets the sequence number of the tick within its ring.
+         *
+         * @return the sequence number
+         */
+        public long getSequence()
+        {
+            return sequence;
+        }
+
+        /**
+         * Gets the time of the tick.
+         *
+         * @return the time in milliseconds
+         */
+        public long getTime()
+        {
+            return time;
+        }
+
+        /**
+         * Gets the number of bounces since the last snapshot given to the
+         * subscriber, including those during any ticks skipped.
+         *
+         * @return the number of bounces
+         */
+        public long getBounces()
+        {
+            return bounces;
+        }
+
+        /**
+         * Gets the number of ticks skipped since the last snapshot given to
+         * the subscriber because they were overwritten before it read them.
+         *
+         * @return the number of ticks skipped
+         */
+        public long getSkipped()
+        {
+            return skipped;
+        }
+
+        /**
+         * Gets the state of the balls at the tick.  The array must not be
+         * changed.
+         *
+         * @return the balls
+         */
+        public Ball[] getBalls()
+        {
+            return balls;
+        }
+    }
+
+    /**
+     * The link between the publisher and one subscriber, with the thread that
+     * delivers to it.
+     */
+    private final class Subscription implements Flow.Subscription, Runnable
+    {
+        private final Flow.Subscriber<? super Snapshot> subscriber;
+        private final Thread thread;
+        private final Snapshot snapshot = new Snapshot();
+
+        /** The number of ticks requested and not yet given */
+        private final AtomicLong demand = new AtomicLong();
+
+        private volatile boolean cancelled = false;
+        private volatile boolean completed = false;
+
+        /** The error to be given instead of further ticks, if any */
+        private volatile Throwable error;
+
+        /** The ring being read and the reader reading it */
+        private StateRing source;
+        private StateRing.Reader reader;
+
+        /**
+         * The sequence number of the last tick given from the ring, or -1, and
+         * the number of bounces up to it
+         */
+        private long last;
+        private long bounceCount;
+
+        /**
+         * Creates an instance of {@code Subscription}.
+         *
+         * @param subscriber the subscriber
+         */
+        Subscription(Flow.Subscriber<? super Snapshot> subscriber)
+        {
+            this.subscriber = subscriber;
+            thread = new Thread(this,
+                    THREAD_NAME_SUBSCRIBER + threads.incrementAndGet());
+            thread.setDaemon(true);
+            follow(ring);
+        }
+
+        /**
+         * Adds to the number of ticks the subscriber is ready for.  A number
+         * that is not positive cancels the subscription with an error.
+         *
+         * @param n the number of further ticks
+         */
+        @Override
+        public void request(long n)
+        {
+            if(n <= 0)
+            {
+                error = new IllegalArgumentException(
+                        "n must be positive: " + n);
+            }
+            else
+            {
+                demand.accumulateAndGet(n, (a, b) ->
+                        a + b < 0 ? Long.MAX_VALUE : a + b);
+            }
+
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Stops the ticks to the subscriber and ends its thread.
+         */
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+            remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Asks the thread to complete the subscriber.
+         */
+        void complete()
+        {
+            completed = true;
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Gives the subscriber its subscription, then each tick it requests
+         * as soon as it has been published, until the subscription ends.
+         */
+        @Override
+        public void run()
+        {
+            try
+            {
+                subscriber.onSubscribe(this);
+
+                while(!cancelled)
+                {
+                    if(error != null)
+                    {
+                        cancel();
+                        subscriber.onError(error);
+                    }
+                    else if(completed)
+                    {
+                        cancel();
+                        subscriber.onComplete();
+                    }
+                    else if(demand.get() > 0 && read())
+                    {
+                        demand.decrementAndGet();
+                        subscriber.onNext(snapshot);
+                    }
+                    else
+                    {
+                        LockSupport.park(this);
+                    }
+                }
+            }
+            catch(RuntimeException e)
+            {
+                // A subscriber that throws has broken its contract
+                cancel();
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Reads the next tick into the snapshot, moving to the publisher's
+         * current ring first if it has been replaced.
+         *
+         * @return {@code true} if a tick was read
+         */
+        private boolean read()
+        {
+            StateRing current = ring;
+
+            if(current != source)
+            {
+                follow(current);
+            }
+
+            if(!reader.poll(snapshot.balls))
+            {
+                return false;
+            }
+
+            long sequence = reader.getSequence();
+
+            snapshot.sequence = sequence;
+            snapshot.time = reader.getTime();
+            snapshot.skipped = last < 0 ? 0 : sequence - last - 1;
+            snapshot.bounces = reader.getBounceCount() - bounceCount;
+            last = sequence;
+            bounceCount = reader.getBounceCount();
+
+            return true;
+        }
+
+        /**
+         * Starts reading a ring from the next tick published to it, with
+         * balls of the number it holds.
+         *
+         * @param ring the ring
+         */
+        private void follow(StateRing ring)
+        {
+            source = ring;
+            reader = ring.newReader(false, StateRing.WaitStrategy.PARK);
+            last = -1;
+            bounceCount = reader.getBounceCount();
+
+            if(snapshot.balls.length != ring.getBallCount())
+            {
+                snapshot.balls = new Ball[ring.getBallCount()];
+
+                for(int i = 0; i < snapshot.balls.length; i++)
+                {
+                    snapshot.balls[i] = new Ball(Ball.DEFAULT_DIAMETER);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,618 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import bounce.logic.Physics.Direction;
+
+/**
+ * A preallocated ring of slots through which the calculation thread publishes
+ * the state of its balls on every tick, to be read by any number of
+ * independent {@link Reader}s.  Each slot holds a tick's time, the state of
+ * every ball and the number of bounces so far as primitive values, so nothing
+ * is allocated and no lock is taken to publish or read a tick.
+ * <p>Each slot carries the sequence number of the tick written to it.  A
+ * reader checks that number before and after copying the slot, and so detects
+ * a slot that was overwritten while it was being read.  Readers are either
+ * <em>gating</em>, in which case the publisher waits rather than overwrite a
+ * tick they have not read, or not, in which case a reader that falls more
+ * than a ring behind skips ahead to the oldest tick still held.</p>
+ * <p>There must be one publisher at a time: calls to {@link #publish} must not
+ * overlap, though they may come from different threads if they are otherwise
+ * ordered, for example by a lock.  Each reader must be used by one thread at a
+ * time.</p>
+ */
+public class StateRing
+{
+    /** The index of the x position within the state of a ball */
+    public static final int FIELD_X = 0;
+
+    /** The index of the y position within the state of a ball */
+    public static final int FIELD_Y = 1;
+
+    /** The index of the velocity within the state of a ball */
+    public static final int FIELD_VELOCITY = 2;
+
+    /** The index of the apex within the state of a ball */
+    public static final int FIELD_APEX = 3;
+
+    /** The index of the diameter within the state of a ball */
+    public static final int FIELD_DIAMETER = 4;
+
+    /** The index of the direction's ordinal within the state of a ball */
+    public static final int FIELD_DIRECTION = 5;
+
+    /** The index of the material ID within the state of a ball */
+    public static final int FIELD_MATERIAL = 6;
+
+    /** The number of values held for each ball */
+    public static final int FIELDS = 7;
+
+    /** The default number of slots in a ring */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /** The sequence number of a slot that is being written */
+    private static final long WRITING = -1;
+
+    private static final VarHandle SEQUENCE =
+            MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int capacity;
+    private final int mask;
+    private final int balls;
+    private final int stride;
+    private final double[] states;
+    private final long[] times;
+    private final long[] bounces;
+    private final long[] sequences;
+    private final CopyOnWriteArrayList<Reader> gating =
+            new CopyOnWriteArrayList<Reader>();
+    private final WaitStrategy publisherWait;
+
+    /** The sequence number of the last tick published */
+    private volatile long cursor = -1;
+
+    /** The number of bounces published so far, used only by the publisher */
+    private long bounceTotal;
+
+    /**
+     * Creates a ring of {@value #DEFAULT_CAPACITY} slots holding one ball, in
+     * which the publisher parks while gated.
+     */
+    public StateRing()
+    {
+        this(DEFAULT_CAPACITY, 1, WaitStrategy.PARK);
+    }
+
+    /**
+     * Creates an instance of {@code StateRing}.
+     *
+     * @param capacity the number of slots, which must be a power of two
+     * @param balls the number of balls in each slot
+     * @param publisherWait how the publisher waits for gating readers
+     */
+    public StateRing(int capacity, int balls, WaitStrategy publisherWait)
+    {
+        if(capacity <= 0 || Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException(
+                    "capacity must be a power of two: " + capacity);
+        }
+
+        if(balls <= 0)
+        {
+            throw new IllegalArgumentException("balls must be positive");
+        }
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.balls = balls;
+        this.stride = balls * FIELDS;
+        this.states = new double[capacity * stride];
+        this.times = new long[capacity];
+        this.bounces = new long[capacity];
+        this.sequences = new long[capacity];
+        this.publisherWait = publisherWait;
+
+        for(int i = 0; i < capacity; i++)
+        {
+            sequences[i] = WRITING;
+        }
+    }
+
+    /**
+     * Gets the number of slots in the ring.
+     *
+     * @return the capacity
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of balls held in each slot.
+     *
+     * @return the number of balls
+     */
+    public int getBallCount()
+    {
+        return balls;
+    }
+
+    /**
+     * Gets the sequence number of the last tick published.
+     *
+     * @return the sequence number, or -1 if nothing has been published
+     */
+    public long getCursor()
+    {
+        return cursor;
+    }
+
+    /**
+     * Creates a reader that starts at the next tick to be published.
+     *
+     * @param gate whether the publisher must wait for this reader rather than
+     *        overwrite a tick it has not read
+     * @param strategy how the reader waits in {@link Reader#take}
+     * @return the new reader
+     */
+    public Reader newReader(boolean gate, WaitStrategy strategy)
+    {
+        Reader reader = new Reader(gate, strategy);
+
+        if(gate)
+        {
+            gating.add(reader);
+        }
+
+        return reader;
+    }
+
+    /**
+     * Publishes the state of a single ball.
+     *
+     * @param time the time of the tick in milliseconds
+     * @param ball the ball
+     */
+    public void publish(long time, Ball ball)
+    {
+        publish(time, ball, 0);
+    }
+
+    /**
+     * Publishes the state of a single ball and the number of times it bounced
+     * during the tick.
+     *
+     * @param time the time of the tick in milliseconds
+     * @param ball the ball
+     * @param bounces the number of bounces during the tick
+     */
+    public void publish(long time, Ball ball, int bounces)
+    {
+        long next = claim();
+        int slot = (int)next & mask;
+
+        write(slot * stride, ball);
+        commit(slot, next, time, bounces);
+    }
+
+    /**
+     * Publishes the state of every ball.
+     *
+     * @param time the time of the tick in milliseconds
+     * @param balls the balls, of which there must be as many as the ring holds
+     */
+    public void publish(long time, Ball[] balls)
+    {
+        publish(time, balls, 0);
+    }
+
+    /**
+     * Publishes the state of every ball and the number of times any of them
+     * bounced during the tick.
+     *
+     * @param time the time of the tick in milliseconds
+     * @param balls the balls, of which there must be as many as the ring holds
+     * @param bounces the number of bounces during the tick
+     */
+    public void publish(long time, Ball[] balls, int bounces)
+    {
+        long next = claim();
+        int slot = (int)next & mask;
+        int offset = slot * stride;
+
+        for(int i = 0; i < this.balls; i++)
+        {
+            write(offset + i * FIELDS, balls[i]);
+        }
+
+        commit(slot, next, time, bounces);
+    }
+
+    /**
+     * Claims the next slot, waiting for gating readers to leave it, and marks
+     * it as being written.
+     *
+     * @return the sequence number of the tick to be written
+     */
+    private long claim()
+    {
+        long next = cursor + 1;
+        long wrap = next - capacity;
+        int attempts = 0;
+
+        while(wrap >= 0 && wrap >= minimumGatingSequence())
+        {
+            publisherWait.idle(attempts++);
+        }
+
+        SEQUENCE.setOpaque(sequences, (int)next & mask, WRITING);
+        VarHandle.storeStoreFence();
+
+        return next;
+    }
+
+    /**
+     * Gets the sequence number of the next tick wanted by the slowest gating
+     * reader.
+     *
+     * @return the lowest next sequence number, or {@link Long#MAX_VALUE} if
+     *         there are no gating readers
+     */
+    private long minimumGatingSequence()
+    {
+        long min = Long.MAX_VALUE;
+
+        for(Reader reader : gating)
+        {
+            min = Math.min(min, reader.next);
+        }
+
+        return min;
+    }
+
+    /**
+     * Copies the state of a ball into the ring.
+     *
+     * @param offset the index in the ring of the ball's first value
+     * @param ball the ball
+     */
+    private void write(int offset, Ball ball)
+    {
+        states[offset + FIELD_X] = ball.getX();
+        states[offset + FIELD_Y] = ball.getY();
+        states[offset + FIELD_VELOCITY] = ball.getVelocity();
+        states[offset + FIELD_APEX] = ball.getApex();
+        states[offset + FIELD_DIAMETER] = ball.getDiameter();
+        states[offset + FIELD_DIRECTION] = ball.getDirection() == null ?
+                Direction.NONE.ordinal() : ball.getDirection().ordinal();
+        states[offset + FIELD_MATERIAL] = ball.getMaterial().getId();
+    }
+
+    /**
+     * Makes a written slot visible to readers.
+     *
+     * @param slot the index of the slot
+     * @param sequence the sequence number of the tick
+     * @param time the time of the tick in milliseconds
+     * @param bounces the number of bounces during the tick
+     */
+    private void commit(int slot, long sequence, long time, int bounces)
+    {
+        bounceTotal += bounces;
+        times[slot] = time;
+        this.bounces[slot] = bounceTotal;
+        SEQUENCE.setRelease(sequences, slot, sequence);
+        cursor = sequence;
+    }
+
+    /**
+     * Reads the ticks published to a {@link StateRing} at its own pace.
+     */
+    public final class Reader
+    {
+        private final boolean gate;
+        private final WaitStrategy strategy;
+
+        /** The sequence number of the next tick to read */
+        private volatile long next;
+
+        /** The time of the last tick read */
+        private long time;
+
+        /** The sequence number of the last tick read */
+        private long sequence = -1;
+
+        /**
+         * The number of bounces published up to the last tick read, or up to
+         * the one before the first if none has been read
+         */
+        private long bounceCount;
+
+        private Reader(boolean gate, WaitStrategy strategy)
+        {
+            this.gate = gate;
+            this.strategy = strategy;
+
+            // Start after the last tick, with the bounces counted up to it
+            long start;
+
+            do
+            {
+                start = cursor;
+                bounceCount = start < 0 ? 0 : bounces[(int)start & mask];
+                VarHandle.loadLoadFence();
+            }
+            while(start >= 0 && (long)SEQUENCE.getOpaque(
+                    sequences, (int)start & mask) != start);
+
+            this.next = start + 1;
+        }
+
+        /**
+         * Gets the time of the last tick read.
+         *
+         * @return the time in milliseconds
+         */
+        public long getTime()
+        {
+            return time;
+        }
+
+        /**
+         * Gets the sequence number of the last tick read.
+         *
+         * @return the sequence number, or -1 if nothing has been read
+         */
+        public long getSequence()
+        {
+            return sequence;
+        }
+
+        /**
+         * Gets the number of bounces published up to and including the last
+         * tick read.  The difference between two ticks read is the number of
+         * bounces between them, even if the ticks in between were skipped.
+         *
+         * @return the number of bounces
+         */
+        public long getBounceCount()
+        {
+            return bounceCount;
+        }
+
+        /**
+         * Reads the next tick into the specified balls if it has been
+         * published, without waiting.
+         *
+         * @param into the balls to which the state is copied
+         * @return {@code true} if a tick was read
+         */
+        public boolean poll(Ball[] into)
+        {
+            while(next <= cursor)
+            {
+                if(read(next, into))
+                {
+                    next++;
+                    return true;
+                }
+                skip();
+            }
+
+            return false;
+        }
+
+        /**
+         * Reads the next tick into the specified balls, waiting for it to be
+         * published.
+         *
+         * @param into the balls to which the state is copied
+         * @throws InterruptedException if the thread is interrupted while
+         *         waiting
+         */
+        public void take(Ball[] into) throws InterruptedException
+        {
+            int attempts = 0;
+
+            while(!poll(into))
+            {
+                if(Thread.interrupted())
+                {
+                    throw new InterruptedException();
+                }
+
+                strategy.idle(attempts++);
+            }
+        }
+
+        /**
+         * Reads the most recently published tick into the specified balls,
+         * skipping any ticks in between.
+         *
+         * @param into the balls to which the state is copied
+         * @return {@code true} if a tick was read, or {@code false} if none has
+         *         been published since the last one read
+         */
+        public boolean readLatest(Ball[] into)
+        {
+            long latest;
+
+            while((latest = cursor) >= next)
+            {
+                if(read(latest, into))
+                {
+                    next = latest + 1;
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Stops the publisher from waiting for this reader.
+         */
+        public void close()
+        {
+            if(gate)
+            {
+                gating.remove(this);
+            }
+        }
+
+        /**
+         * Moves a reader that has been lapped to the oldest tick still held.
+         */
+        private void skip()
+        {
+            next = Math.max(next + 1, cursor - capacity + 1);
+        }
+
+        /**
+         * Copies a tick into the specified balls.
+         *
+         * @param s the sequence number of the tick
+         * @param into the balls to which the state is copied
+         * @return {@code true} if the tick was copied, or {@code false} if its
+         *         slot was overwritten before or during the copy
+         */
+        private boolean read(long s, Ball[] into)
+        {
+            int slot = (int)s & mask;
+
+            if((long)SEQUENCE.getAcquire(sequences, slot) != s)
+            {
+                return false;
+            }
+
+            long t = times[slot];
+            long b = bounces[slot];
+            int offset = slot * stride;
+
+            for(int i = 0; i < balls && i < into.length; i++)
+            {
+                copy(offset + i * FIELDS, into[i]);
+            }
+
+            VarHandle.loadLoadFence();
+
+            if((long)SEQUENCE.getOpaque(sequences, slot) != s)
+            {
+                return false;
+            }
+
+            time = t;
+            bounceCount = b;
+            sequence = s;
+
+            return true;
+        }
+
+        /**
+         * Copies the state of a ball out of the ring.
+         *
+         * @param offset the index in the ring of the ball's first value
+         * @param ball the ball to which the state is copied
+         */
+        private void copy(int offset, Ball ball)
+        {
+            ball.setX(states[offset + FIELD_X]);
+            ball.setY(states[offset + FIELD_Y]);
+            ball.setVelocity(states[offset + FIELD_VELOCITY]);
+            ball.setApex(states[offset + FIELD_APEX]);
+            ball.setDiameter(states[offset + FIELD_DIAMETER]);
+            ball.setDirection(
+                    DIRECTIONS[(int)states[offset + FIELD_DIRECTION]]);
+
+            int material = (int)states[offset + FIELD_MATERIAL];
+
+            if(ball.getMaterial().getId() != material)
+            {
+                ball.setMaterial(new Material(material));
+            }
+        }
+    }
+
+    /**
+     * How a thread waits for the ring: by spinning, by yielding the processor,
+     * or by parking.  Spinning has the lowest latency and parking the lowest
+     * processor use.
+     */
+    public static enum WaitStrategy
+    {
+        /** Busy-waits, hinting to the processor that the thread is spinning */
+        SPIN
+        {
+            @Override
+            public void idle(int attempts)
+            {
+                Thread.onSpinWait();
+            }
+        },
+
+        /** Spins briefly, then yields the processor to other threads */
+        YIELD
+        {
+            @Override
+            public void idle(int attempts)
+            {
+                if(attempts < SPIN_TRIES)
+                {
+                    Thread.onSpinWait();
+                }
+                else
+                {
+                    Thread.yield();
+                }
+            }
+        },
+
+        /** Spins briefly, then parks the thread for a short time */
+        PARK
+        {
+            @Override
+            public void idle(int attempts)
+            {
+                if(attempts < SPIN_TRIES)
+                {
+                    Thread.onSpinWait();
+                }
+                else
+                {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        };
+
+        /** The number of attempts spent spinning before backing off */
+        private static final int SPIN_TRIES = 100;
+
+        /** The time for which a parked thread waits */
+        private static final long PARK_NANOS =
+                TimeUnit.MICROSECONDS.toNanos(100);
+
+        /**
+         * Waits once.
+         *
+         * @param attempts the number of times the caller has already waited
+         *        for the same condition
+         */
+        public abstract void idle(int attempts);
+    }
+}
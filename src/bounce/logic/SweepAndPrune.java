@@ -0,0 +1,323 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.util.Arrays;
+
+/**
+ * A broad phase that keeps the extents of the balls along one axis sorted by
+ * their lower ends, and finds the balls whose extents overlap that of a ball.
+ * Unlike a {@link SpatialHash}, whose cells must be as wide as the largest
+ * ball, it does not depend on the sizes of the balls, so it suits worlds in
+ * which they vary widely.
+ * <p>The order is kept from one step to the next.  Balls move little in a
+ * step, so a ball that moves is carried by insertion to its new place past
+ * only the few balls it overtook, and the cost of keeping the order is close
+ * to the number of moving balls.  Alongside the order, the highest upper end
+ * of the extents up to each place is kept, which bounds the search for the
+ * balls that start below a ball and reach into it.  It may overstate the
+ * highest end as balls move, which only lengthens a search, and is made exact
+ * again once every step.</p>
+ * <p>The axis is chosen when the broad phase is filled, as the one along
+ * which the centers of the balls are the more spread out.  A sweep and prune
+ * is not thread-safe.</p>
+ */
+public class SweepAndPrune extends BroadPhase
+{
+    /** The index of the ball at each place in the order */
+    private int[] ball = new int[0];
+
+    /** The place of each ball in the order */
+    private int[] place = new int[0];
+
+    /** The lower end of the extent of the ball at each place, in meters */
+    private double[] low = new double[0];
+
+    /** The upper end of the extent of the ball at each place, in meters */
+    private double[] high = new double[0];
+
+    /**
+     * At least the highest upper end of the extents at or below each place,
+     * in meters
+     */
+    private double[] reach = new double[0];
+
+    /** The keys by which the balls are first sorted when filled, reused */
+    private long[] keys = new long[0];
+
+    private int size;
+
+    /** Whether the extents are along the vertical rather than horizontal */
+    private boolean vertical;
+
+    /** Whether the balls have been cleared and not yet brought up to date */
+    private boolean filling;
+
+    /** The sums of the centers and of their squares, while filling */
+    private double sumX;
+    private double sumXX;
+    private double sumY;
+    private double sumYY;
+
+    /**
+     * Creates an empty sweep and prune.
+     */
+    public SweepAndPrune()
+    {
+    }
+
+    /**
+     * Empties the sweep and prune and sizes it for the specified number of
+     * balls.
+     *
+     * @param balls the number of balls that will be inserted
+     * @param reach ignored, since extents are compared directly
+     */
+    @Override
+    void clear(int balls, double reach)
+    {
+        if(ball.length < balls)
+        {
+            ball = new int[balls];
+            place = new int[balls];
+            low = new double[balls];
+            high = new double[balls];
+            this.reach = new double[balls];
+            keys = new long[balls];
+        }
+
+        size = balls;
+        filling = true;
+        sumX = 0;
+        sumXX = 0;
+        sumY = 0;
+        sumYY = 0;
+    }
+
+    /**
+     * Records the extent of a ball and carries it to its place in the order.
+     * While filling, only its position is recorded, at the place of its own
+     * index, with the horizontal extent in the lower ends, the vertical in the
+     * highest ends, and its diameter in the upper ends, until the axis is
+     * chosen.
+     *
+     * @param i the index of the ball
+     * @param x the x position of the left of the ball in meters
+     * @param y the height of the bottom of the ball in meters
+     * @param diameter the diameter of the ball in meters
+     */
+    @Override
+    void move(int i, double x, double y, double diameter)
+    {
+        if(filling)
+        {
+            double cx = x + diameter / 2;
+            double cy = y + diameter / 2;
+
+            low[i] = x;
+            reach[i] = y;
+            high[i] = diameter;
+            sumX += cx;
+            sumXX += cx * cx;
+            sumY += cy;
+            sumYY += cy * cy;
+            return;
+        }
+
+        int p = place[i];
+        double from = vertical ? y : x;
+        double to = from + diameter;
+        double previous = high[p];
+
+        low[p] = from;
+        high[p] = to;
+
+        int q = sift(p);
+        int first = Math.min(p, q);
+        int last = Math.max(p, q);
+
+        // The highest ends above the places passed over are still bounds,
+        // unless the ball's extent grew past them
+        for(int k = first; k <= last; k++)
+        {
+            reach[k] = k > 0 ? Math.max(reach[k - 1], high[k]) : high[k];
+        }
+
+        if(to > previous)
+        {
+            for(int k = last + 1; k < size && reach[k] < to; k++)
+            {
+                reach[k] = to;
+            }
+        }
+    }
+
+    /**
+     * Carries the ball at a place down or up the order until the lower ends
+     * are in order again.
+     *
+     * @param p the place of the ball
+     * @return the new place of the ball
+     */
+    private int sift(int p)
+    {
+        while(p > 0 && low[p - 1] > low[p])
+        {
+            swap(p - 1, p);
+            p--;
+        }
+
+        while(p < size - 1 && low[p + 1] < low[p])
+        {
+            swap(p, p + 1);
+            p++;
+        }
+
+        return p;
+    }
+
+    /**
+     * Exchanges the balls at two places in the order.
+     *
+     * @param p a place
+     * @param q another place
+     */
+    private void swap(int p, int q)
+    {
+        int b = ball[p];
+        double l = low[p];
+        double h = high[p];
+
+        ball[p] = ball[q];
+        low[p] = low[q];
+        high[p] = high[q];
+        ball[q] = b;
+        low[q] = l;
+        high[q] = h;
+        place[ball[p]] = p;
+        place[b] = q;
+    }
+
+    /**
+     * Makes the highest ends exact again.  After being filled, the axis is
+     * chosen and the balls are sorted: first by the nearest single-precision
+     * value of their lower ends, with {@link Arrays#sort(long[])}, and then
+     * exactly, by insertion.
+     */
+    @Override
+    void update()
+    {
+        if(filling)
+        {
+            sort();
+            filling = false;
+        }
+
+        double highest = Double.NEGATIVE_INFINITY;
+
+        for(int k = 0; k < size; k++)
+        {
+            highest = Math.max(highest, high[k]);
+            reach[k] = highest;
+        }
+    }
+
+    /**
+     * Chooses the axis once every ball has been recorded and sorts the balls
+     * along it.
+     */
+    private void sort()
+    {
+        double spreadX = sumXX - sumX * sumX / size;
+        double spreadY = sumYY - sumY * sumY / size;
+
+        vertical = spreadY > spreadX;
+
+        if(vertical)
+        {
+            System.arraycopy(reach, 0, low, 0, size);
+        }
+
+        for(int i = 0; i < size; i++)
+        {
+            high[i] += low[i];
+
+            // Negative floats order backwards as integers unless flipped
+            int bits = Float.floatToIntBits((float)low[i]);
+            bits ^= (bits >> 31) & Integer.MAX_VALUE;
+            keys[i] = (long)bits << 32 | i;
+        }
+
+        Arrays.sort(keys, 0, size);
+
+        System.arraycopy(low, 0, reach, 0, size);
+
+        for(int p = 0; p < size; p++)
+        {
+            ball[p] = (int)keys[p];
+            place[ball[p]] = p;
+            low[p] = reach[ball[p]];
+        }
+
+        System.arraycopy(high, 0, reach, 0, size);
+
+        for(int p = 0; p < size; p++)
+        {
+            high[p] = reach[ball[p]];
+        }
+
+        for(int p = 1; p < size; p++)
+        {
+            for(int q = p; q > 0 && low[q - 1] > low[q]; q--)
+            {
+                swap(q - 1, q);
+            }
+        }
+    }
+
+    /**
+     * Finds the balls whose extents overlap that of a ball, widened by the
+     * margin.  Balls further up the order are looked at until one starts
+     * beyond the ball, and balls further down until none below could reach
+     * it.
+     *
+     * @param i the index of the ball
+     * @param x the x position of the left of the ball in meters
+     * @param y the height of the bottom of the ball in meters
+     * @param diameter the diameter of the ball in meters
+     * @param margin the distance in meters by which the ball is widened
+     * @param into the candidates, emptied and then filled
+     */
+    @Override
+    void near(int i, double x, double y, double diameter, double margin,
+            Candidates into)
+    {
+        double from = (vertical ? y : x) - margin;
+        double to = (vertical ? y : x) + diameter + margin;
+        int p = place[i];
+
+        into.count = 0;
+
+        for(int k = p + 1; k < size && low[k] <= to; k++)
+        {
+            if(high[k] >= from)
+            {
+                into.add(ball[k]);
+            }
+        }
+
+        for(int k = p - 1; k >= 0 && reach[k] >= from; k--)
+        {
+            if(high[k] >= from && low[k] <= to)
+            {
+                into.add(ball[k]);
+            }
+        }
+    }
+}
@@ -0,0 +1,618 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A fixed surface of straight segments joining points from left to right, on
+ * which the balls of a {@link World} bounce.  A terrain is loaded from a file
+ * either as a polyline, a point per line, or as a heightmap of evenly spaced
+ * heights.  The ground at height 0 still holds balls up wherever the terrain
+ * is lower or does not reach.
+ * <p>Two indexes are built when a terrain is made, so that the segments near
+ * a ball are found without searching them all.  For the height at a point,
+ * the span of the terrain is divided into as many equal buckets as it has
+ * segments, each recording the first segment reaching into it.  Where the
+ * points are spread about evenly a bucket holds one or two segments and the
+ * segment under a point is found in constant time; where they are not, the
+ * segments of a bucket are searched by bisection, in logarithmic time.</p>
+ * <p>For the contact of a ball, the highest points of ranges of segments are
+ * kept in a binary tree.  A ball above the highest point of the terrain is
+ * passed over at once.  A ball over only a few segments looks at them one by
+ * one; over many, the search descends only into ranges whose highest point
+ * could reach deeper into the ball than any contact found so far, so it
+ * looks at the segments it touches and a logarithmic number of ranges around
+ * them, however finely the terrain is divided.</p>
+ * <p>A terrain cannot be changed once made, so one may be shared by worlds
+ * stepped on different threads.</p>
+ */
+public final class Terrain
+{
+    /**
+     * The greatest number of segments under a ball that are looked at one by
+     * one, rather than through the tree
+     */
+    private static final int FEW_SEGMENTS = 16;
+
+    /** The x position in meters of each point, increasing */
+    private final double[] xs;
+
+    /** The height in meters of each point */
+    private final double[] heights;
+
+    /**
+     * The first segment reaching into each bucket, with the last segment
+     * after them
+     */
+    private final int[] first;
+
+    /**
+     * The heights in meters of the highest points of ranges of segments, as
+     * a binary tree laid out in an array: the node at {@code n} covers the
+     * ranges of those at {@code 2n} and {@code 2n + 1}, and the node at
+     * {@link #leaves} plus {@code k} covers segment {@code k} alone.  They
+     * are held in single precision, rounded up, to halve the memory taken.
+     */
+    private final float[] top;
+
+    /** The number of leaves of the tree, a power of two */
+    private final int leaves;
+
+    /** The number of segments, and of buckets */
+    private final int segments;
+
+    /** The number of buckets in each meter */
+    private final double inverseBucketWidth;
+
+    /**
+     * Creates a terrain through the specified points.
+     *
+     * @param xs the x positions of the points in meters, increasing
+     * @param heights the heights of the points in meters
+     */
+    public Terrain(double[] xs, double[] heights)
+    {
+        this(xs, heights, check(xs, heights));
+    }
+
+    /**
+     * Creates a terrain through the first points of the specified arrays,
+     * which are copied.
+     *
+     * @param xs the x positions of the points in meters, increasing
+     * @param heights the heights of the points in meters
+     * @param count the number of points
+     */
+    private Terrain(double[] xs, double[] heights, int count)
+    {
+        if(count < 2)
+        {
+            throw new IllegalArgumentException(
+                    "terrain needs at least two points");
+        }
+
+        for(int k = 0; k < count; k++)
+        {
+            if(!Double.isFinite(xs[k]) || !Double.isFinite(heights[k]))
+            {
+                throw new IllegalArgumentException(
+                        "points must be finite");
+            }
+
+            if(k > 0 && !(xs[k] > xs[k - 1]))
+            {
+                throw new IllegalArgumentException(
+                        "x positions must increase");
+            }
+        }
+
+        this.xs = Arrays.copyOf(xs, count);
+        this.heights = Arrays.copyOf(heights, count);
+        segments = count - 1;
+        first = new int[segments + 1];
+        leaves = Integer.highestOneBit(Math.max(1, segments * 2 - 1));
+        top = new float[leaves * 2];
+        inverseBucketWidth = segments / (xs[segments] - xs[0]);
+
+        index();
+    }
+
+    /**
+     * Checks that the arrays of points given to the constructor match.
+     *
+     * @param xs the x positions of the points
+     * @param heights the heights of the points
+     * @return the number of points
+     */
+    private static int check(double[] xs, double[] heights)
+    {
+        if(xs.length != heights.length)
+        {
+            throw new IllegalArgumentException(
+                    "xs and heights must be the same length");
+        }
+
+        return xs.length;
+    }
+
+    /**
+     * Creates a terrain of evenly spaced heights, the first at 0.
+     *
+     * @param spacing the distance in meters between the points
+     * @param heights the heights of the points in meters
+     * @return the terrain
+     */
+    public static Terrain heightmap(double spacing, double[] heights)
+    {
+        if(!(spacing > 0))
+        {
+            throw new IllegalArgumentException("spacing must be positive");
+        }
+
+        double[] xs = new double[heights.length];
+
+        for(int k = 0; k < xs.length; k++)
+        {
+            xs[k] = k * spacing;
+        }
+
+        return new Terrain(xs, heights);
+    }
+
+    /**
+     * Loads a terrain from a text file holding a polyline: each line gives
+     * the x position and height of a point in meters, separated by white
+     * space, from left to right.  Blank lines and lines starting with
+     * {@code #} are skipped.
+     *
+     * @param path the file
+     * @return the terrain
+     * @throws IOException if the file cannot be read or does not hold a
+     *         terrain
+     */
+    public static Terrain loadPolyline(Path path) throws IOException
+    {
+        return load(path, 0);
+    }
+
+    /**
+     * Loads a terrain from a text file holding a heightmap: heights in
+     * meters, separated by white space or lines, of points spaced evenly from
+     * an x position of 0.  Blank lines and lines starting with {@code #} are
+     * skipped.
+     *
+     * @param path the file
+     * @param spacing the distance in meters between the points
+     * @return the terrain
+     * @throws IOException if the file cannot be read or does not hold a
+     *         terrain
+     */
+    public static Terrain loadHeightmap(Path path, double spacing)
+            throws IOException
+    {
+        if(!(spacing > 0))
+        {
+            throw new IllegalArgumentException("spacing must be positive");
+        }
+
+        return load(path, spacing);
+    }
+
+    /**
+     * Loads a terrain from a text file.
+     *
+     * @param path the file
+     * @param spacing the distance in meters between the points of a
+     *        heightmap, or 0 if the file holds a polyline
+     * @return the terrain
+     * @throws IOException if the file cannot be read or does not hold a
+     *         terrain
+     */
+    private static Terrain load(Path path, double spacing) throws IOException
+    {
+        double[] xs = new double[1024];
+        double[] heights = new double[1024];
+        int count = 0;
+        int number = 0;
+
+        try(BufferedReader reader = Files.newBufferedReader(path))
+        {
+            String line;
+
+            while((line = reader.readLine()) != null)
+            {
+                number++;
+                line = line.trim();
+
+                if(line.isEmpty() || line.startsWith("#"))
+                {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+
+                if(spacing == 0 && fields.length != 2)
+                {
+                    throw new IOException("expected x and height at line " +
+                            number + ": " + path);
+                }
+
+                for(int f = 0; f < fields.length; f += spacing == 0 ? 2 : 1)
+                {
+                    if(count == xs.length)
+                    {
+                        xs = Arrays.copyOf(xs, count * 2);
+                        heights = Arrays.copyOf(heights, count * 2);
+                    }
+
+                    try
+                    {
+                        if(spacing == 0)
+                        {
+                            xs[count] = Double.parseDouble(fields[f]);
+                            heights[count] =
+                                    Double.parseDouble(fields[f + 1]);
+                        }
+                        else
+                        {
+                            xs[count] = count * spacing;
+                            heights[count] = Double.parseDouble(fields[f]);
+                        }
+                    }
+                    catch(NumberFormatException e)
+                    {
+                        throw new IOException("not a number at line " +
+                                number + ": " + path, e);
+                    }
+
+                    count++;
+                }
+            }
+        }
+
+        try
+        {
+            return new Terrain(xs, heights, count);
+        }
+        catch(IllegalArgumentException e)
+        {
+            throw new IOException(e.getMessage() + ": " + path, e);
+        }
+    }
+
+    /**
+     * Fills the buckets with the first segment reaching into each, and the
+     * tree with the highest points of the ranges of segments.
+     */
+    private void index()
+    {
+        double width = (xs[segments] - xs[0]) / segments;
+        int k = 0;
+
+        for(int b = 0; b < segments; b++)
+        {
+            double start = xs[0] + b * width;
+
+            while(k < segments - 1 && xs[k + 1] <= start)
+            {
+                k++;
+            }
+
+            first[b] = k;
+        }
+
+        first[segments] = segments - 1;
+
+        Arrays.fill(top, Float.NEGATIVE_INFINITY);
+
+        for(int p = 0; p < segments; p++)
+        {
+            top[leaves + p] = roundUp(Math.max(heights[p], heights[p + 1]));
+        }
+
+        for(int n = leaves - 1; n > 0; n--)
+        {
+            top[n] = Math.max(top[2 * n], top[2 * n + 1]);
+        }
+    }
+
+    /**
+     * Rounds a height to single precision, up if it is not exact.
+     *
+     * @param height the height in meters
+     * @return the nearest height in single precision no lower than it
+     */
+    private static float roundUp(double height)
+    {
+        float rounded = (float)height;
+
+        return rounded < height ? Math.nextUp(rounded) : rounded;
+    }
+
+    /**
+     * Gets the bucket holding an x position within the terrain.
+     *
+     * @param x the x position in meters
+     * @return the bucket
+     */
+    private int bucket(double x)
+    {
+        int b = (int)((x - xs[0]) * inverseBucketWidth);
+
+        return Math.max(0, Math.min(segments - 1, b));
+    }
+
+    /**
+     * Finds the segment under an x position within the terrain.  The
+     * segments of its bucket are bisected, and the result is then moved on
+     * past any segment the rounding of the bucket left out.
+     *
+     * @param x the x position in meters
+     * @return the index of the segment, which is that of its left point
+     */
+    private int segmentAt(double x)
+    {
+        int b = bucket(x);
+        int low = first[b];
+        int high = first[b + 1];
+
+        while(low < high)
+        {
+            int middle = (low + high + 1) >>> 1;
+
+            if(xs[middle] <= x)
+            {
+                low = middle;
+            }
+            else
+            {
+                high = middle - 1;
+            }
+        }
+
+        while(low > 0 && xs[low] > x)
+        {
+            low--;
+        }
+
+        while(low < segments - 1 && xs[low + 1] <= x)
+        {
+            low++;
+        }
+
+        return low;
+    }
+
+    /**
+     * Gets the height of the surface on which balls rest at an x position:
+     * that of the terrain, or of the ground where the terrain is lower or
+     * does not reach.
+     *
+     * @param x the x position in meters
+     * @return the height in meters
+     */
+    public double getHeight(double x)
+    {
+        if(!(x >= xs[0] && x <= xs[segments]))
+        {
+            return 0;
+        }
+
+        int k = segmentAt(x);
+        double t = (x - xs[k]) / (xs[k + 1] - xs[k]);
+
+        return Math.max(0, heights[k] + t * (heights[k + 1] - heights[k]));
+    }
+
+    /**
+     * Gets the x position of the first point.
+     *
+     * @return the x position in meters
+     */
+    public double getLeft()
+    {
+        return xs[0];
+    }
+
+    /**
+     * Gets the x position of the last point.
+     *
+     * @return the x position in meters
+     */
+    public double getRight()
+    {
+        return xs[segments];
+    }
+
+    /**
+     * Gets the number of segments.
+     *
+     * @return the number of segments, one fewer than the number of points
+     */
+    public int getSegmentCount()
+    {
+        return segments;
+    }
+
+    /**
+     * Finds how far a ball has sunk into the terrain, and the direction in
+     * which it is to be pushed out.  A ball whose center is above every
+     * segment under it is pushed away from the nearest point of the segment
+     * it overlaps most; one whose center has passed below a segment is
+     * pushed out along the normal of that segment.
+     * <p>The few segments under a small ball, found through the buckets, are
+     * looked at one by one; the many under a large ball are searched through
+     * the tree.</p>
+     *
+     * @param cx the x position of the center of the ball in meters
+     * @param cy the height of the center of the ball in meters
+     * @param r the radius of the ball in meters
+     * @param normal an array of at least two elements that receives the x
+     *        and y parts of the unit normal of the contact
+     * @return the depth in meters, or 0 if the ball does not touch the
+     *         terrain, in which case the normal is left unchanged
+     */
+    double penetration(double cx, double cy, double r, double[] normal)
+    {
+        if(cx + r < xs[0] || cx - r > xs[segments] || top[1] < cy - r)
+        {
+            return 0;
+        }
+
+        int from = segmentAt(Math.max(cx - r, xs[0]));
+        int to = segmentAt(Math.min(cx + r, xs[segments])) + 1;
+
+        if(to - from > FEW_SEGMENTS)
+        {
+            return penetration(1, 0, leaves, cx, cy, r, 0, normal);
+        }
+
+        double deepest = 0;
+
+        for(int k = from; k < to; k++)
+        {
+            if(top[leaves + k] >= cy - r)
+            {
+                deepest = penetration(k, cx, cy, r, deepest, normal);
+            }
+        }
+
+        return deepest;
+    }
+
+    /**
+     * Finds how far a ball has sunk into the segments of a range, unless none
+     * of them could reach deeper than the deepest contact found so far: when
+     * the highest of them is below the center of the ball, none is nearer the
+     * center than the point at that height nearest below it.  The half of the
+     * range nearer the center is searched first, where the deepest contact is
+     * most likely to be found.
+     *
+     * @param node the node of the tree covering the range
+     * @param from the first segment of the range
+     * @param to the segment after the last of the range
+     * @param cx the x position of the center of the ball in meters
+     * @param cy the height of the center of the ball in meters
+     * @param r the radius of the ball in meters
+     * @param deepest the deepest contact found so far in meters
+     * @param normal the normal of the deepest contact found so far
+     * @return the depth of the deepest contact in meters
+     */
+    private double penetration(int node, int from, int to, double cx,
+            double cy, double r, double deepest, double[] normal)
+    {
+        if(from >= segments)
+        {
+            return deepest;
+        }
+
+        double left = xs[from];
+        double right = xs[Math.min(to, segments)];
+
+        if(right < cx - r || left > cx + r)
+        {
+            return deepest;
+        }
+
+        double offset = Math.max(left, Math.min(right, cx)) - cx;
+        double below = cy - top[node];
+
+        if(below > 0 &&
+                r - Math.sqrt(offset * offset + below * below) <= deepest)
+        {
+            return deepest;
+        }
+
+        if(to - from == 1)
+        {
+            return penetration(from, cx, cy, r, deepest, normal);
+        }
+
+        int middle = (from + to) >>> 1;
+
+        if(middle < segments && xs[middle] <= cx)
+        {
+            deepest = penetration(2 * node + 1, middle, to, cx, cy, r,
+                    deepest, normal);
+
+            return penetration(2 * node, from, middle, cx, cy, r, deepest,
+                    normal);
+        }
+
+        deepest = penetration(2 * node, from, middle, cx, cy, r, deepest,
+                normal);
+
+        return penetration(2 * node + 1, middle, to, cx, cy, r, deepest,
+                normal);
+    }
+
+    /**
+     * Finds how far a ball has sunk into one segment, and records the normal
+     * of the contact if it is deeper than any found before.
+     *
+     * @param k the index of the segment
+     * @param cx the x position of the center of the ball in meters
+     * @param cy the height of the center of the ball in meters
+     * @param r the radius of the ball in meters
+     * @param deepest the deepest contact found so far in meters
+     * @param normal the normal of the deepest contact found so far
+     * @return the depth of the deeper contact in meters
+     */
+    private double penetration(int k, double cx, double cy, double r,
+            double deepest, double[] normal)
+    {
+        double ax = xs[k];
+        double ay = heights[k];
+        double dx = xs[k + 1] - ax;
+        double dy = heights[k + 1] - ay;
+        double length = Math.sqrt(dx * dx + dy * dy);
+
+        // The segment's normal, up since the points run from left to right
+        double sx = -dy / length;
+        double sy = dx / length;
+        double t = ((cx - ax) * dx + (cy - ay) * dy) / (length * length);
+
+        if(t > 0 && t < 1)
+        {
+            double above = (cx - ax) * sx + (cy - ay) * sy;
+            double depth = r - above;
+
+            if(depth > deepest)
+            {
+                normal[0] = sx;
+                normal[1] = sy;
+                return depth;
+            }
+
+            return deepest;
+        }
+
+        // Past either end the nearest point is the end itself
+        double px = t <= 0 ? ax : ax + dx;
+        double py = t <= 0 ? ay : ay + dy;
+        double ex = cx - px;
+        double ey = cy - py;
+        double distance = Math.sqrt(ex * ex + ey * ey);
+        double depth = r - distance;
+
+        if(depth > deepest)
+        {
+            normal[0] = distance > 0 ? ex / distance : sx;
+            normal[1] = distance > 0 ? ey / distance : sy;
+            return depth;
+        }
+
+        return deepest;
+    }
+}
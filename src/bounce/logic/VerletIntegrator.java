@@ -0,0 +1,42 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+/**
+ * Advances a body using the velocity Verlet method.  It is second-order
+ * accurate and time-reversible, and exact for a constant acceleration.  The
+ * acceleration is evaluated twice per step.
+ */
+public class VerletIntegrator implements Integrator
+{
+    public double step(double[] state, Acceleration acceleration, double dt)
+    {
+        double y = state[POSITION];
+        double v = state[VELOCITY];
+        double a = acceleration.at(y, v);
+
+        y += v * dt + 0.5 * a * dt * dt;
+
+        /* The velocity at the end of the step is not yet known, so the
+         * acceleration is estimated using the velocity after a full Euler step.
+         */
+        double a1 = acceleration.at(y, v + a * dt);
+
+        state[POSITION] = y;
+        state[VELOCITY] = v + 0.5 * (a + a1) * dt;
+
+        return dt;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "verlet";
+    }
+}
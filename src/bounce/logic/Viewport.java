@@ -0,0 +1,223 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+/**
+ * Maps positions in a bounce area, in meters, to pixels on a drawing surface,
+ * with a variable zoom and pan.  The origin of the area is its bottom left
+ * corner, with y increasing upwards; the origin of the surface is its top left
+ * corner, with y increasing downwards.
+ * <p>A new viewport uses {@link Converter#SCALE_PIXELS_PER_METER} and shows
+ * the bottom left of the area, which places everything exactly where
+ * {@link Converter} does.  A viewport may be changed by one thread while
+ * another paints with it.</p>
+ */
+public class Viewport
+{
+    /** The smallest scale in pixels per meter */
+    public static final double MIN_SCALE = 0.01;
+
+    /** The largest scale in pixels per meter */
+    public static final double MAX_SCALE = 5000;
+
+    /** The smallest distance in pixels between two marks on a rule */
+    public static final int MIN_MARK_SPACING = 30;
+
+    /** The scale in pixels per meter */
+    private volatile double scale = Converter.SCALE_PIXELS_PER_METER;
+
+    /** The position in meters shown at the left edge of the surface */
+    private volatile double left;
+
+    /** The height in meters shown at the bottom edge of the surface */
+    private volatile double bottom;
+
+    /**
+     * Gets the scale.
+     *
+     * @return the scale in pixels per meter
+     */
+    public double getScale()
+    {
+        return scale;
+    }
+
+    /**
+     * Gets the position shown at the left edge of the surface.
+     *
+     * @return the x position in meters
+     */
+    public double getLeft()
+    {
+        return left;
+    }
+
+    /**
+     * Gets the height shown at the bottom edge of the surface.
+     *
+     * @return the height in meters
+     */
+    public double getBottom()
+    {
+        return bottom;
+    }
+
+    /**
+     * Returns to the default scale, showing the bottom left of the area.
+     */
+    public void reset()
+    {
+        scale = Converter.SCALE_PIXELS_PER_METER;
+        left = 0;
+        bottom = 0;
+    }
+
+    /**
+     * Changes the scale by the specified factor, keeping the point under the
+     * specified pixel in place.
+     *
+     * @param factor the factor by which the scale is multiplied
+     * @param px the x position of the fixed point in pixels
+     * @param py the y position of the fixed point in pixels
+     * @param height the height of the surface in pixels
+     */
+    public void zoom(double factor, int px, int py, int height)
+    {
+        double mx = toMetersX(px);
+        double my = toMetersY(py, height);
+        double s = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+
+        left = mx - px / s;
+        bottom = my - (height - py) / s;
+        scale = s;
+    }
+
+    /**
+     * Moves the view by the specified distance, as when the surface is
+     * dragged.
+     *
+     * @param dx the horizontal distance in pixels, positive to the right
+     * @param dy the vertical distance in pixels, positive downwards
+     */
+    public void pan(int dx, int dy)
+    {
+        left -= dx / scale;
+        bottom += dy / scale;
+    }
+
+    /**
+     * Converts an x position to pixels.
+     *
+     * @param meters the x position in meters
+     * @return the x position on the surface in pixels
+     */
+    public int toPixelsX(double meters)
+    {
+        return (int)Math.round((meters - left) * scale);
+    }
+
+    /**
+     * Converts a height to a y position on the surface.  The height is
+     * measured from the bottom of the area and the result from the top of the
+     * surface.
+     *
+     * @param meters the height in meters
+     * @param height the height of the surface in pixels
+     * @return the y position on the surface in pixels
+     */
+    public int toPixelsY(double meters, int height)
+    {
+        return height - (int)Math.round((meters - bottom) * scale);
+    }
+
+    /**
+     * Converts a length to pixels.
+     *
+     * @param meters the length in meters
+     * @return the length in pixels
+     */
+    public int toPixels(double meters)
+    {
+        return (int)Math.round(meters * scale);
+    }
+
+    /**
+     * Converts an x position on the surface to meters.
+     *
+     * @param pixels the x position in pixels
+     * @return the x position in meters
+     */
+    public double toMetersX(int pixels)
+    {
+        return left + pixels / scale;
+    }
+
+    /**
+     * Converts a y position on the surface to a height in the area.
+     *
+     * @param pixels the y position in pixels, from the top of the surface
+     * @param height the height of the surface in pixels
+     * @return the height in meters
+     */
+    public double toMetersY(int pixels, int height)
+    {
+        return bottom + (height - pixels) / scale;
+    }
+
+    /**
+     * Gets the distance between marks on a rule: the smallest of 1, 2, 5, 10,
+     * 20, 50... meters that keeps the marks at least
+     * {@link #MIN_MARK_SPACING} pixels apart.
+     *
+     * @return the distance in meters
+     */
+    public int getMarkSpacing()
+    {
+        double s = scale;
+
+        for(int base = 1; base < Integer.MAX_VALUE / 10; base *= 10)
+        {
+            if(base * s >= MIN_MARK_SPACING)
+            {
+                return base;
+            }
+            else if(2 * base * s >= MIN_MARK_SPACING)
+            {
+                return 2 * base;
+            }
+            else if(5 * base * s >= MIN_MARK_SPACING)
+            {
+                return 5 * base;
+            }
+        }
+
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Indicates whether any part of a box lies on the surface.
+     *
+     * @param x the x position of the left of the box in meters
+     * @param y the height of the bottom of the box in meters
+     * @param size the width and height of the box in meters
+     * @param width the width of the surface in pixels
+     * @param height the height of the surface in pixels
+     * @return {@code true} if the box can be seen
+     */
+    public boolean isVisible(double x, double y, double size, int width,
+            int height)
+    {
+        double l = left;
+        double b = bottom;
+        double s = scale;
+
+        return x + size >= l && x <= l + width / s &&
+                y + size >= b && y <= b + height / s;
+    }
+}
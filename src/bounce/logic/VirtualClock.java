@@ -0,0 +1,165 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.util.ArrayList;
+import java.util.concurrent.Phaser;
+
+/**
+ * A clock shared by many threads, each running a simulation in the sequential
+ * style of a calculation loop, whose time moves on only when every one of them
+ * is asleep.  A thread sleeps for a tick, rather than for a time measured by
+ * the system, so a run takes only as long as the calculations and always
+ * moves the simulations through the same times.
+ * <p>Each thread is given a {@link Sleeper} by {@link #register()} and must
+ * {@link Sleeper#leave() leave} when it is done, or the clock stops for the
+ * others.  Sleepers are spread over a tree of {@link Phaser}s, at most
+ * {@value #LEAF_PARTIES} to each leaf, so that any number of threads can share
+ * the clock without all of them contending for one phaser.  A sleeping thread
+ * is parked, so a virtual thread gives up its carrier while it sleeps.</p>
+ */
+public class VirtualClock
+{
+    /** The greatest number of sleepers sharing a phaser */
+    public static final int LEAF_PARTIES = 1024;
+
+    private final int tick;
+    private final Phaser root;
+    private final ArrayList<Phaser> leaves = new ArrayList<Phaser>();
+
+    /**
+     * Creates an instance of {@code VirtualClock}.
+     *
+     * @param tick the time in milliseconds by which the clock moves on when
+     *        every sleeper is asleep
+     */
+    public VirtualClock(int tick)
+    {
+        if(tick <= 0)
+        {
+            throw new IllegalArgumentException("tick must be positive");
+        }
+
+        this.tick = tick;
+
+        // The clock keeps going when every sleeper has left
+        root = new Phaser()
+        {
+            @Override
+            protected boolean onAdvance(int phase, int registeredParties)
+            {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the time by which the clock moves on.
+     *
+     * @return the tick in milliseconds
+     */
+    public int getTick()
+    {
+        return tick;
+    }
+
+    /**
+     * Gets the time on the clock, counted from its creation.
+     *
+     * @return the time in milliseconds
+     */
+    public long getTime()
+    {
+        return (long)root.getPhase() * tick;
+    }
+
+    /**
+     * Registers a sleeper, which holds the clock back from now until it
+     * leaves.  Sleepers that are to start together must all be registered
+     * before any of them first sleeps.
+     *
+     * @return the sleeper
+     */
+    public synchronized Sleeper register()
+    {
+        for(Phaser leaf : leaves)
+        {
+            if(leaf.getRegisteredParties() < LEAF_PARTIES)
+            {
+                leaf.register();
+                return new Sleeper(leaf);
+            }
+        }
+
+        Phaser leaf = new Phaser(root, 1);
+        leaves.add(leaf);
+
+        return new Sleeper(leaf);
+    }
+
+    /**
+     * A thread's part in a {@link VirtualClock}.  Each sleeper must be used by
+     * one thread at a time.
+     */
+    public final class Sleeper
+    {
+        private final Phaser leaf;
+        private boolean left = false;
+
+        /**
+         * Creates an instance of {@code Sleeper}.
+         *
+         * @param leaf the phaser on which the sleeper is registered
+         */
+        private Sleeper(Phaser leaf)
+        {
+            this.leaf = leaf;
+        }
+
+        /**
+         * Sleeps until the clock has moved on by one tick.
+         */
+        public void sleep()
+        {
+            if(left)
+            {
+                throw new IllegalStateException("the sleeper has left");
+            }
+
+            leaf.arriveAndAwaitAdvance();
+        }
+
+        /**
+         * Sleeps until the clock has moved on by at least the specified time,
+         * a whole number of ticks.
+         *
+         * @param millis the time in milliseconds
+         */
+        public void sleep(long millis)
+        {
+            for(long slept = 0; slept < millis; slept += tick)
+            {
+                sleep();
+            }
+        }
+
+        /**
+         * Stops holding the clock back.  This does nothing if the sleeper has
+         * already left.
+         */
+        public void leave()
+        {
+            if(!left)
+            {
+                left = true;
+                leaf.arriveAndDeregister();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates threads for simulations that spend most of their time asleep on a
+ * {@link VirtualClock}, one thread each.  Where the Java runtime has virtual
+ * threads they are used, all of them sharing the runtime's small pool of
+ * carrier threads, so tens of thousands can run at once.  Otherwise, as before
+ * Java 21, a platform thread is used for each.
+ * <p>Virtual threads are found by reflection, so this class compiles and runs
+ * on any Java runtime from 17 on.</p>
+ */
+public final class VirtualThreads
+{
+    /** The name of each thread running a simulation, followed by its number */
+    public static final String THREAD_NAME_SCENARIO = "thread-scenario-";
+
+    /** A factory of virtual threads, or {@code null} if there are none */
+    private static final ThreadFactory VIRTUAL = findVirtual();
+
+    /**
+     * Not used.
+     */
+    private VirtualThreads()
+    {
+    }
+
+    /**
+     * Indicates whether the Java runtime has virtual threads.
+     *
+     * @return {@code true} if {@link #virtualFactory()} creates virtual
+     *         threads
+     */
+    public static boolean isAvailable()
+    {
+        return VIRTUAL != null;
+    }
+
+    /**
+     * Gets a factory of virtual threads, falling back to platform threads if
+     * the Java runtime has none.
+     *
+     * @return the factory
+     */
+    public static ThreadFactory virtualFactory()
+    {
+        return VIRTUAL != null ? VIRTUAL : platformFactory();
+    }
+
+    /**
+     * Gets a factory of daemon platform threads.
+     *
+     * @return the factory
+     */
+    public static ThreadFactory platformFactory()
+    {
+        return new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r,
+                        THREAD_NAME_SCENARIO + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Finds the factory of virtual threads of Java 21 and later, through
+     * {@code Thread.ofVirtual().name(prefix, 1).factory()}.
+     *
+     * @return the factory, or {@code null} if the Java runtime has no
+     *         virtual threads, or has them only as a preview not enabled
+     */
+    private static ThreadFactory findVirtual()
+    {
+        try
+        {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Method name = builder.getMethod("name", String.class, long.class);
+            Method factory = builder.getMethod("factory");
+
+            Object b = name.invoke(ofVirtual.invoke(null),
+                    THREAD_NAME_SCENARIO, 1L);
+
+            return (ThreadFactory)factory.invoke(b);
+        }
+        catch(ReflectiveOperationException | RuntimeException e)
+        {
+            return null;
+        }
+    }
+}
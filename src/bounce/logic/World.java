@@ -0,0 +1,1475 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.logic;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A population of balls bouncing under gravity, held as parallel arrays of
+ * primitives rather than as {@link Ball} objects so that very large worlds can
+ * be stepped without allocation.  Each ball is identified by the index returned
+ * when it was added.
+ * <p>Balls move in two dimensions: they fall and bounce on the ground as a
+ * lone {@link Simulation} does, and may also move sideways, bouncing off a
+ * pair of walls if the world has them.  Air drag, if any, slows both
+ * motions.  A world may also be given a {@link Terrain} above the ground, off
+ * whose slopes balls bounce along its normals.</p>
+ * <p>Balls that come to rest are moved out of the active set into a compact
+ * sleeping set and are no longer visited by {@link #step(double)}, so the cost
+ * of a step depends on the number of moving balls rather than on the size of
+ * the world.  A sleeping ball is woken by an impulse or by a reset.</p>
+ * <p>Balls may also be made to collide with each other.  Candidates are found
+ * through a {@link BroadPhase} in which only the moving balls are moved after
+ * each step, so finding them costs in proportion to the number of moving balls
+ * rather than to the square of the size of the world.</p>
+ * <p>A world is not thread-safe.</p>
+ */
+public class World
+{
+    /**
+     * The apex in meters below which a ball comes to rest; it is half a pixel,
+     * so the ball would no longer be seen to move
+     */
+    public static final double REST_APEX =
+            0.5 / Converter.SCALE_PIXELS_PER_METER;
+
+    /** The number of balls a world can hold before its arrays are grown */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The distance in meters within which a ball is taken to rest on another,
+     * and is woken with it
+     */
+    private static final double TOUCH = REST_APEX;
+
+    /**
+     * The fraction of its diameter by which a ball may overlap a sleeping
+     * ball and still be put to sleep, which allows for what the passes could
+     * not separate
+     */
+    private static final double OVERLAP = 0.1;
+
+    /** The greatest number of passes made over balls in contact per step */
+    private static final int PASSES = 4;
+
+    /**
+     * The horizontal speed in meters per second below which a ball on the
+     * ground comes to rest; it is half a pixel in a tenth of a second
+     */
+    private static final double REST_SPEED = REST_APEX * 10;
+
+    /**
+     * The time in seconds for which a colliding ball must stay within
+     * {@link #REST_APEX} of the same place to be put to sleep, however it is
+     * jostled by the balls around it
+     */
+    private static final double STILL_TIME = 0.5;
+
+    /**
+     * The coefficient of rolling resistance, the fraction of its weight with
+     * which the ground holds back a ball moving along it
+     */
+    private static final double ROLLING_RESISTANCE = 0.05;
+
+    /**
+     * The least vertical part of the direction from one ball to another
+     * resting on it, so that a ball can rest on a slope of up to 45 degrees
+     * and slides off a steeper one
+     */
+    private static final double SUPPORT = Math.sqrt(0.5);
+
+    private final double gravity;
+
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+
+    /** The vertical velocity of each ball in meters per second, up */
+    private double[] velocity = new double[INITIAL_CAPACITY];
+
+    /** The horizontal velocity of each ball in meters per second, right */
+    private double[] horizontal = new double[INITIAL_CAPACITY];
+    private double[] diameter = new double[INITIAL_CAPACITY];
+    private double[] cor = new double[INITIAL_CAPACITY];
+    private double[] dropX = new double[INITIAL_CAPACITY];
+    private double[] dropHeight = new double[INITIAL_CAPACITY];
+    private int[] material = new int[INITIAL_CAPACITY];
+
+    /**
+     * The position of each ball in its set: {@code p} in the active set, or
+     * {@code -(p + 1)} in the sleeping set
+     */
+    private int[] where = new int[INITIAL_CAPACITY];
+
+    private int[] active = new int[INITIAL_CAPACITY];
+    private int[] sleeping = new int[INITIAL_CAPACITY];
+    private int activeCount;
+    private int sleepingCount;
+    private int size;
+
+    /** The simulated time in seconds since the world was created or reset */
+    private double time;
+
+    /** The x position in meters of the left wall */
+    private double left = Double.NEGATIVE_INFINITY;
+
+    /** The x position in meters of the right wall */
+    private double right = Double.POSITIVE_INFINITY;
+
+    /** The rate in inverse seconds at which air slows a ball */
+    private double drag;
+
+    /** Whether balls collide with each other as well as with the ground */
+    private boolean collisions;
+
+    /** The broad phase in which colliding balls are found */
+    private BroadPhase broadPhase = new SpatialHash();
+
+    /**
+     * Whether balls have been added or moved since the broad phase was
+     * filled
+     */
+    private boolean broadPhaseStale = true;
+
+    /** The diameter in meters of the largest ball */
+    private double largest;
+
+    /** The balls that may collide with a ball, reused */
+    private final BroadPhase.Candidates near = new BroadPhase.Candidates();
+
+    /** The balls that may rest on or under a ball, reused */
+    private final BroadPhase.Candidates resting =
+            new BroadPhase.Candidates();
+
+    /** The number of collisions between balls since creation or reset */
+    private long collisionCount;
+
+    /** The number of passes made over colliding balls, used to mark them */
+    private int pass;
+
+    /** The moving balls found in contact in the current pass */
+    private int[] contacts = new int[INITIAL_CAPACITY];
+
+    /** The moving balls found in contact in the previous pass */
+    private int[] nextContacts = new int[INITIAL_CAPACITY];
+
+    /** The pass in which each ball was last found in contact */
+    private int[] listedIn = new int[INITIAL_CAPACITY];
+
+    /** The number of steps taken, used to mark balls */
+    private int steps;
+
+    /** The step in which each ball was held up by the ball it rests on */
+    private int[] heldIn = new int[INITIAL_CAPACITY];
+
+    /** The surface above the ground on which balls bounce, or {@code null} */
+    private Terrain terrain;
+
+    /** The step in which each ball was last held up by the terrain */
+    private int[] supportedIn = new int[INITIAL_CAPACITY];
+
+    /** The normal of the contact of a ball with the terrain, reused */
+    private final double[] normal = new double[2];
+
+    /** The place in meters near which each colliding ball has stayed */
+    private double[] stillX = new double[INITIAL_CAPACITY];
+    private double[] stillY = new double[INITIAL_CAPACITY];
+
+    /** The time in seconds for which each colliding ball has stayed there */
+    private double[] stillFor = new double[INITIAL_CAPACITY];
+
+    /**
+     * Creates an empty world under Earth's gravity.
+     */
+    public World()
+    {
+        this(Physics.GRAVITY);
+    }
+
+    /**
+     * Creates an empty world.
+     *
+     * @param gravity the acceleration due to gravity in meters per second
+     *        squared
+     */
+    public World(double gravity)
+    {
+        this.gravity = gravity;
+    }
+
+    /**
+     * Adds a ball at rest at the specified position.  The ball is awake, so it
+     * starts to fall on the next step.
+     *
+     * @param x the x position of the ball in meters
+     * @param y the height of the bottom of the ball in meters
+     * @param diameter the diameter of the ball in meters
+     * @param material the material the ball is made of
+     * @return the index of the new ball
+     */
+    public int add(double x, double y, double diameter, Material material)
+    {
+        if(size == this.x.length)
+        {
+            grow(size * 2);
+        }
+
+        int i = size++;
+
+        this.x[i] = x;
+        this.y[i] = y;
+        this.velocity[i] = 0;
+        this.horizontal[i] = 0;
+        this.diameter[i] = diameter;
+        this.cor[i] = material.getCor();
+        this.dropX[i] = x;
+        this.dropHeight[i] = y;
+        this.material[i] = material.getId();
+
+        largest = Math.max(largest, diameter);
+        broadPhaseStale = true;
+        addActive(i);
+        markStill(i);
+
+        return i;
+    }
+
+    /**
+     * Grows every array to the specified capacity.
+     *
+     * @param capacity the new capacity
+     */
+    private void grow(int capacity)
+    {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        velocity = Arrays.copyOf(velocity, capacity);
+        horizontal = Arrays.copyOf(horizontal, capacity);
+        diameter = Arrays.copyOf(diameter, capacity);
+        cor = Arrays.copyOf(cor, capacity);
+        dropX = Arrays.copyOf(dropX, capacity);
+        dropHeight = Arrays.copyOf(dropHeight, capacity);
+        material = Arrays.copyOf(material, capacity);
+        where = Arrays.copyOf(where, capacity);
+        contacts = new int[capacity];
+        nextContacts = new int[capacity];
+        listedIn = new int[capacity];
+        heldIn = Arrays.copyOf(heldIn, capacity);
+        supportedIn = Arrays.copyOf(supportedIn, capacity);
+        stillX = Arrays.copyOf(stillX, capacity);
+        stillY = Arrays.copyOf(stillY, capacity);
+        stillFor = Arrays.copyOf(stillFor, capacity);
+        active = Arrays.copyOf(active, capacity);
+        sleeping = Arrays.copyOf(sleeping, capacity);
+    }
+
+    /**
+     * Appends a ball to the active set.
+     *
+     * @param i the index of the ball
+     */
+    private void addActive(int i)
+    {
+        where[i] = activeCount;
+        active[activeCount++] = i;
+    }
+
+    /**
+     * Takes the position of a ball as the one it is to stay near to be put to
+     * sleep, and starts timing how long it does.
+     *
+     * @param i the index of the ball
+     */
+    private void markStill(int i)
+    {
+        stillX[i] = x[i];
+        stillY[i] = y[i];
+        stillFor[i] = 0;
+    }
+
+    /**
+     * Moves an active ball to the sleeping set.  The last active ball takes
+     * its place, so the active set stays compact.
+     *
+     * @param i the index of the ball
+     */
+    private void sleep(int i)
+    {
+        int p = where[i];
+        int last = active[--activeCount];
+
+        active[p] = last;
+        where[last] = p;
+
+        where[i] = -(sleepingCount + 1);
+        sleeping[sleepingCount++] = i;
+    }
+
+    /**
+     * Moves a sleeping ball back to the active set.  Waking a ball that is
+     * already awake has no effect, other than to start timing afresh how long
+     * it stays still.  When balls collide, any balls asleep on top of it are
+     * woken too, since they would otherwise be left hanging.
+     *
+     * @param i the index of the ball
+     */
+    public void wake(int i)
+    {
+        markStill(i);
+        disturb(i);
+    }
+
+    /**
+     * Wakes a sleeping ball, and any balls asleep on top of it, when another
+     * ball touches it.  The time it has stayed still is kept in part, so that
+     * a ball nudged by a neighbour that jitters, but not moved, soon sleeps
+     * again.
+     *
+     * @param i the index of the ball
+     */
+    private void disturb(int i)
+    {
+        if(where[i] >= 0)
+        {
+            return;
+        }
+
+        unsleep(i);
+
+        if(collisions && !broadPhaseStale)
+        {
+            wakeResting();
+        }
+    }
+
+    /**
+     * Wakes every sleeping ball resting on the last ball woken, on any ball
+     * that wakes, and so on up the stack.  The active set serves as the list
+     * of balls still to be looked at.
+     */
+    private void wakeResting()
+    {
+        for(int p = activeCount - 1; p < activeCount; p++)
+        {
+            int i = active[p];
+            double ri = diameter[i] / 2;
+            double cx = x[i] + ri;
+            double cy = y[i] + ri;
+
+            broadPhase.near(i, x[i], y[i], diameter[i], TOUCH, resting);
+
+            for(int k = 0; k < resting.count; k++)
+            {
+                int j = resting.balls[k];
+                double rj = diameter[j] / 2;
+                double dx = x[j] + rj - cx;
+                double dy = y[j] + rj - cy;
+                double reach = ri + rj + TOUCH;
+
+                if(where[j] < 0 && dy > 0 &&
+                        dx * dx + dy * dy <= reach * reach)
+                {
+                    unsleep(j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves a sleeping ball back to the active set, without waking any
+     * others.
+     *
+     * @param i the index of a sleeping ball
+     */
+    private void unsleep(int i)
+    {
+        int p = -where[i] - 1;
+        int last = sleeping[--sleepingCount];
+
+        sleeping[p] = last;
+        where[last] = -(p + 1);
+
+        addActive(i);
+        stillFor[i] = Math.min(stillFor[i], STILL_TIME / 2);
+    }
+
+    /**
+     * Changes the vertical velocity of a ball, waking it if it is asleep.
+     *
+     * @param i the index of the ball
+     * @param impulse the change in velocity in meters per second, positive
+     *        upwards
+     */
+    public void applyImpulse(int i, double impulse)
+    {
+        velocity[i] += impulse;
+        wake(i);
+    }
+
+    /**
+     * Changes the velocity of a ball in both directions, waking it if it is
+     * asleep.
+     *
+     * @param i the index of the ball
+     * @param horizontal the change in horizontal velocity in meters per
+     *        second, positive to the right
+     * @param vertical the change in vertical velocity in meters per second,
+     *        positive upwards
+     */
+    public void applyImpulse(int i, double horizontal, double vertical)
+    {
+        this.horizontal[i] += horizontal;
+        velocity[i] += vertical;
+        wake(i);
+    }
+
+    /**
+     * Removes every ball.  The space they took up is kept, so the world can be
+     * filled again without allocation.
+     */
+    public void clear()
+    {
+        size = 0;
+        activeCount = 0;
+        sleepingCount = 0;
+        time = 0;
+        collisionCount = 0;
+        largest = 0;
+        broadPhaseStale = true;
+    }
+
+    /**
+     * Returns every ball to the position from which it was dropped, at rest,
+     * and wakes it.
+     */
+    public void reset()
+    {
+        activeCount = 0;
+        sleepingCount = 0;
+        time = 0;
+        collisionCount = 0;
+        broadPhaseStale = true;
+
+        for(int i = 0; i < size; i++)
+        {
+            x[i] = dropX[i];
+            y[i] = dropHeight[i];
+            velocity[i] = 0;
+            horizontal[i] = 0;
+            addActive(i);
+            markStill(i);
+        }
+    }
+
+    /**
+     * Advances every moving ball by the specified time.  A ball that reaches
+     * the ground rebounds with its speed reduced by its coefficient of
+     * restitution, at the moment of contact rather than at the end of the
+     * step.  A ball that reaches a wall rebounds from it in the same way.
+     * Drag slows each ball by the same fraction in the step before it moves,
+     * and a ball moving along the ground is slowed by rolling resistance.
+     * A ball whose next bounce would not rise above {@link #REST_APEX}, and
+     * which moves sideways slower than half a pixel in a tenth of a second,
+     * is put to sleep on the ground.  A ball found at the end of the step to
+     * have sunk into the terrain is pushed out of it and rebounds along its
+     * normal.  If balls collide, those that overlap at the end of the step are
+     * then pushed apart.
+     *
+     * @param dt the time in seconds
+     * @return the number of impacts with the ground or the terrain during the
+     *         step
+     */
+    public int step(double dt)
+    {
+        int impacts = 0;
+        double a = -gravity;
+        double damping = Math.exp(-drag * dt);
+        double rolling = ROLLING_RESISTANCE * gravity * dt;
+        boolean rough = terrain != null;
+
+        time += dt;
+        steps++;
+
+        // Walk backwards, so a ball moved into a vacated place was visited
+        for(int p = activeCount - 1; p >= 0; p--)
+        {
+            int i = active[p];
+            double h = y[i];
+            double v = velocity[i] * damping;
+            double u = horizontal[i] * damping;
+            double t = dt;
+
+            while(true)
+            {
+                double next = h + v * t + 0.5 * a * t * t;
+
+                if(next > 0 || (next == 0 && v + a * t >= 0))
+                {
+                    h = next;
+                    v += a * t;
+                    break;
+                }
+
+                // A ball rolling or resting on the ground has not landed
+                if(h == 0 && v <= 0 && v * v < 2 * gravity * REST_APEX)
+                {
+                    v = 0;
+                    break;
+                }
+
+                // A ball leaving the ground lands again after 2v/g
+                double contact = h > 0 ?
+                        AdaptiveIntegrator.timeToContact(h, v, a) :
+                        Math.max(0, -2 * v / a);
+
+                if(contact > t)
+                {
+                    contact = t;
+                }
+
+                v = -(v + a * contact) * cor[i];
+                h = 0;
+                t -= contact;
+                impacts++;
+
+                if(v * v < 2 * gravity * REST_APEX)
+                {
+                    v = 0;
+                    break;
+                }
+            }
+
+            // A ball with no sideways motion is left where it is across
+            if(u != 0)
+            {
+                double d = diameter[i];
+                double side = x[i] + u * dt;
+
+                if(side < left)
+                {
+                    side = Math.min(2 * left - side, right - d);
+                    u = -u * cor[i];
+                }
+                else if(side > right - d)
+                {
+                    side = Math.max(2 * (right - d) - side, left);
+                    u = -u * cor[i];
+                }
+
+                if(h == 0 && v == 0)
+                {
+                    u = u > rolling ? u - rolling :
+                            u < -rolling ? u + rolling : 0;
+
+                    if(u * u < REST_SPEED * REST_SPEED)
+                    {
+                        u = 0;
+                    }
+                }
+
+                x[i] = side;
+                horizontal[i] = u;
+            }
+
+            y[i] = h;
+            velocity[i] = v;
+
+            if(rough)
+            {
+                impacts += touchTerrain(i, dt, rolling);
+            }
+
+            // Colliding balls are put to sleep once their overlaps are resolved
+            if(!collisions && (rough ? isSettled(i) :
+                    h == 0 && v == 0 && u == 0))
+            {
+                sleep(i);
+            }
+        }
+
+        if(collisions)
+        {
+            collide(dt);
+        }
+
+        return impacts;
+    }
+
+    /**
+     * Pushes a ball out of the terrain if it has sunk into it, and bounces it
+     * off the surface there.  The part of its velocity into the surface is
+     * reversed and reduced by its coefficient of restitution, or taken away
+     * if the ball would not rise above {@link #REST_APEX}.  A ball left
+     * moving along the surface is slowed by rolling resistance, and comes to
+     * rest where the slope is gentle enough for the resistance to hold it, or
+     * where it stays for {@link #STILL_TIME}, wedged between slopes.
+     *
+     * @param i the index of the ball
+     * @param dt the time in seconds by which the ball was advanced
+     * @param rolling the speed in meters per second taken away by rolling
+     *        resistance on level ground in this step
+     * @return 1 if the ball bounced off the terrain, otherwise 0
+     */
+    private int touchTerrain(int i, double dt, double rolling)
+    {
+        double d = diameter[i];
+        double r = d / 2;
+        double depth = terrain.penetration(x[i] + r, y[i] + r, r, normal);
+
+        if(depth <= 0)
+        {
+            return 0;
+        }
+
+        double nx = normal[0];
+        double ny = normal[1];
+
+        x[i] = Math.max(left, Math.min(right - d, x[i] + depth * nx));
+        y[i] = Math.max(0, y[i] + depth * ny);
+        supportedIn[i] = steps;
+
+        double u = horizontal[i];
+        double v = velocity[i];
+        double into = u * nx + v * ny;
+
+        if(into >= 0)
+        {
+            return 0;
+        }
+
+        double rebound = -into * cor[i];
+
+        if(rebound * rebound >= 2 * gravity * REST_APEX)
+        {
+            horizontal[i] = u + (rebound - into) * nx;
+            velocity[i] = v + (rebound - into) * ny;
+            return 1;
+        }
+
+        // Along the surface, to the right where it faces up
+        double along = u * ny - v * nx;
+        double resistance = rolling * Math.max(0, ny);
+
+        along = along > resistance ? along - resistance :
+                along < -resistance ? along + resistance : 0;
+
+        // Colliding balls are timed once their overlaps are resolved
+        if((along * along < REST_SPEED * REST_SPEED &&
+                Math.abs(nx) <= ROLLING_RESISTANCE * ny) ||
+                (!collisions && staysStill(i, dt)))
+        {
+            along = 0;
+        }
+
+        horizontal[i] = along * ny;
+        velocity[i] = -along * nx;
+        return 0;
+    }
+
+    /**
+     * Times how long a ball has stayed within {@link #REST_APEX} of the same
+     * place, starting afresh wherever it has moved further.
+     *
+     * @param i the index of the ball
+     * @param dt the time in seconds since the ball was last timed
+     * @return {@code true} once the ball has stayed for {@link #STILL_TIME}
+     */
+    private boolean staysStill(int i, double dt)
+    {
+        if(Math.abs(x[i] - stillX[i]) >= REST_APEX ||
+                Math.abs(y[i] - stillY[i]) >= REST_APEX)
+        {
+            markStill(i);
+            return false;
+        }
+
+        return (stillFor[i] += dt) >= STILL_TIME;
+    }
+
+    /**
+     * Indicates whether a ball has come to rest, on the ground or on the
+     * terrain, in this step.
+     *
+     * @param i the index of the ball
+     * @return {@code true} if the ball is still and supported
+     */
+    private boolean isSettled(int i)
+    {
+        return velocity[i] == 0 && horizontal[i] == 0 &&
+                (y[i] == 0 || supportedIn[i] == steps);
+    }
+
+    /**
+     * Moves the moving balls in the broad phase, or fills it afresh if balls
+     * have been added or reset, then resolves every overlap
+     * between a moving ball and another.  Resolving one overlap can cause
+     * another, so up to {@link #PASSES} passes are made, each after the first
+     * looking only at the balls found in contact in the pass before.  Balls
+     * left at rest on the ground are then put to sleep, as are balls that
+     * have stayed in the same place for {@link #STILL_TIME}.
+     *
+     * @param dt the time in seconds by which the balls were advanced
+     */
+    private void collide(double dt)
+    {
+        if(broadPhaseStale)
+        {
+            broadPhase.clear(size, largest + TOUCH);
+
+            for(int i = 0; i < size; i++)
+            {
+                broadPhase.move(i, x[i], y[i], diameter[i]);
+            }
+
+            broadPhaseStale = false;
+        }
+        else
+        {
+            for(int p = 0; p < activeCount; p++)
+            {
+                int i = active[p];
+                broadPhase.move(i, x[i], y[i], diameter[i]);
+            }
+        }
+
+        broadPhase.update();
+
+        int listed = 0;
+        pass++;
+
+        // Walk backwards, as a ball put to sleep takes the last one's place
+        for(int p = activeCount - 1; p >= 0; p--)
+        {
+            if(p < activeCount)
+            {
+                listed = collideNeighbours(active[p], listed, true);
+            }
+        }
+
+        for(int extra = 1; extra < PASSES && listed > 0; extra++)
+        {
+            int[] previous = contacts;
+            int count = listed;
+
+            contacts = nextContacts;
+            nextContacts = previous;
+            listed = 0;
+            pass++;
+
+            for(int q = 0; q < count; q++)
+            {
+                if(where[previous[q]] >= 0)
+                {
+                    listed = collideNeighbours(previous[q], listed, false);
+                }
+            }
+        }
+
+        for(int p = activeCount - 1; p >= 0; p--)
+        {
+            int i = active[p];
+
+            if(isSettled(i))
+            {
+                rest(i);
+            }
+            else if(staysStill(i, dt))
+            {
+                velocity[i] = 0;
+                horizontal[i] = 0;
+                rest(i);
+            }
+        }
+    }
+
+    /**
+     * Resolves the overlaps between a moving ball and the balls around it,
+     * listing the moving balls found to be in contact for the next pass.
+     *
+     * @param i the index of a moving ball
+     * @param listed the number of balls listed so far in this pass
+     * @param all whether every moving ball is looked at in this pass, in
+     *        which case a pair of them is resolved once, from the ball with
+     *        the lower index
+     * @return the number of balls listed
+     */
+    private int collideNeighbours(int i, int listed, boolean all)
+    {
+        broadPhase.near(i, x[i], y[i], diameter[i], 0, near);
+
+        for(int k = 0; k < near.count; k++)
+        {
+            int j = near.balls[k];
+
+            if((!all || where[j] < 0 || j > i) && collide(i, j))
+            {
+                listed = list(i, listed);
+
+                if(where[j] >= 0)
+                {
+                    listed = list(j, listed);
+                }
+            }
+        }
+
+        return listed;
+    }
+
+    /**
+     * Adds a ball to the balls in contact in this pass, unless it is there
+     * already.
+     *
+     * @param i the index of the ball
+     * @param listed the number of balls listed so far
+     * @return the number of balls listed
+     */
+    private int list(int i, int listed)
+    {
+        if(listedIn[i] == pass)
+        {
+            return listed;
+        }
+
+        listedIn[i] = pass;
+        contacts[listed] = i;
+
+        return listed + 1;
+    }
+
+    /**
+     * Puts a colliding ball to sleep where it is, moving it in the broad phase
+     * to where it has been pushed since the broad phase was last brought up
+     * to date.
+     *
+     * @param i the index of the ball
+     */
+    private void rest(int i)
+    {
+        broadPhase.move(i, x[i], y[i], diameter[i]);
+        sleep(i);
+    }
+
+    /**
+     * Resolves the collision of two balls, if they overlap.  Momentum is
+     * exchanged along the line between their centers, with the mean of their
+     * coefficients of restitution and masses in proportion to the cubes of
+     * their diameters, and the balls are then separated along that line until
+     * they just touch.  The lower ball may be held still by what it rests on:
+     * if it is asleep, held, or held up by the terrain it does not move, and
+     * if it is on the ground it only moves sideways.  A sleeping ball on top
+     * is woken, unless the ball below is off the ground and meets it slowly,
+     * in which case it is the ball below that is held off.
+     * <p>A slow ball that meets one held still or on the ground, at a slope of
+     * no more than 45 degrees, comes to rest on it without pushing it, as
+     * friction would hold them.  It is put to sleep on the ball below if that
+     * ball is asleep, unless it still overlaps another sleeping ball, since
+     * two sleeping balls are never separated.  Otherwise the ball is held for
+     * the rest of the step, so that the balls above it can come to rest in
+     * turn.</p>
+     *
+     * @param i the index of a moving ball
+     * @param j the index of another ball
+     * @return {@code true} if the balls overlapped
+     */
+    private boolean collide(int i, int j)
+    {
+        double ri = diameter[i] / 2;
+        double rj = diameter[j] / 2;
+        double dx = x[j] + rj - x[i] - ri;
+        double dy = y[j] + rj - y[i] - ri;
+        double reach = ri + rj;
+        double distance = dx * dx + dy * dy;
+
+        if(distance >= reach * reach)
+        {
+            return false;
+        }
+
+        distance = Math.sqrt(distance);
+
+        int lower = dy >= 0 ? i : j;
+        int upper = lower == i ? j : i;
+
+        // The direction from the lower center to the upper, up if they meet
+        double nx = distance > 0 ? (lower == i ? dx : -dx) / distance : 0;
+        double ny = distance > 0 ? Math.abs(dy) / distance : 1;
+
+        boolean grounded = y[lower] == 0;
+        boolean held = where[lower] < 0 || heldIn[lower] == steps ||
+                supportedIn[lower] == steps;
+        double speed = velocity[upper] * velocity[upper] +
+                horizontal[upper] * horizontal[upper];
+
+        // A slow ball on a gentle slope rests without pushing what is below
+        boolean resting = (held || grounded) && ny >= SUPPORT &&
+                speed < 2 * gravity * REST_APEX;
+        double approach = (horizontal[lower] - horizontal[upper]) * nx +
+                (velocity[lower] - velocity[upper]) * ny;
+
+        // A sleeping ball above one off the ground stays asleep, and does not
+        // move, unless it is struck hard or loses its support
+        boolean undisturbed = where[upper] < 0 && !grounded &&
+                approach >= 0 && approach * approach < 2 * gravity * REST_APEX;
+        double wl = held || resting ? 0 : inverseMass(lower);
+        double wu = undisturbed ? 0 : inverseMass(upper);
+
+        // The ground takes the part of a push on the lower ball that is down
+        double lowerNy = grounded ? 0 : ny;
+        double wn = wl * (nx * nx + lowerNy * ny);
+
+        collisionCount++;
+
+        if(wn + wu == 0)
+        {
+            return true;
+        }
+
+        if(approach > 0)
+        {
+            double e = (cor[lower] + cor[upper]) / 2;
+            double impulse = (1 + e) * approach / (wn + wu);
+
+            horizontal[lower] -= impulse * wl * nx;
+            velocity[lower] -= impulse * wl * lowerNy;
+            horizontal[upper] += impulse * wu * nx;
+            velocity[upper] += impulse * wu * ny;
+        }
+
+        double share = (reach - distance) / (wn + wu);
+        double down = Math.min(y[lower], share * wl * lowerNy);
+
+        x[lower] = Math.max(left, Math.min(right - diameter[lower],
+                x[lower] - share * wl * nx));
+        y[lower] -= down;
+        x[upper] = Math.max(left, Math.min(right - diameter[upper],
+                x[upper] + share * wu * nx));
+        y[upper] += share * wu * ny + (share * wl * lowerNy - down);
+
+        // A ball pushed onto the ground is stopped by it
+        if(y[lower] == 0 && velocity[lower] < 0)
+        {
+            velocity[lower] = 0;
+        }
+
+        if(where[upper] < 0)
+        {
+            if(!undisturbed)
+            {
+                disturb(upper);
+            }
+        }
+        else if(resting)
+        {
+            velocity[upper] = 0;
+            horizontal[upper] = 0;
+
+            if(where[lower] >= 0 || overlapsSleeping(upper, lower))
+            {
+                heldIn[upper] = steps;
+            }
+            else
+            {
+                rest(upper);
+            }
+        }
+        else
+        {
+            heldIn[upper] = 0;
+        }
+
+        return true;
+    }
+
+    /**
+     * Indicates whether a ball overlaps any sleeping ball but one.
+     *
+     * @param i the index of the ball
+     * @param ignored the index of the ball not considered
+     * @return {@code true} if the ball overlaps a sleeping ball by more than
+     *         {@link #OVERLAP} of the smaller diameter
+     */
+    private boolean overlapsSleeping(int i, int ignored)
+    {
+        double ri = diameter[i] / 2;
+        double cx = x[i] + ri;
+        double cy = y[i] + ri;
+
+        broadPhase.near(i, x[i], y[i], diameter[i], 0, resting);
+
+        for(int k = 0; k < resting.count; k++)
+        {
+            int j = resting.balls[k];
+            double rj = diameter[j] / 2;
+            double dx = x[j] + rj - cx;
+            double dy = y[j] + rj - cy;
+            double reach = ri + rj - Math.min(ri, rj) * 2 * OVERLAP;
+
+            if(where[j] < 0 && j != ignored &&
+                    dx * dx + dy * dy < reach * reach)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the inverse of the mass of a ball, taking every ball to be equally
+     * dense.
+     *
+     * @param i the index of the ball
+     * @return the inverse mass, in arbitrary units
+     */
+    private double inverseMass(int i)
+    {
+        double d = diameter[i];
+
+        return 1 / (d * d * d);
+    }
+
+    /**
+     * Sets the walls off which balls bounce.  By default there are none, and
+     * balls may move sideways without limit.  The walls are not saved in a
+     * checkpoint.
+     *
+     * @param left the x position of the left wall in meters
+     * @param right the x position of the right wall in meters, greater than
+     *        that of the left
+     */
+    public void setWalls(double left, double right)
+    {
+        if(!(left < right))
+        {
+            throw new IllegalArgumentException(
+                    "left must be less than right");
+        }
+
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Gets the x position of the left wall.
+     *
+     * @return the x position in meters, or negative infinity if there are no
+     *         walls
+     */
+    public double getLeftWall()
+    {
+        return left;
+    }
+
+    /**
+     * Gets the x position of the right wall.
+     *
+     * @return the x position in meters, or positive infinity if there are no
+     *         walls
+     */
+    public double getRightWall()
+    {
+        return right;
+    }
+
+    /**
+     * Sets the terrain on which balls bounce above the ground.  By default
+     * there is none.  The terrain is not saved in a checkpoint.
+     *
+     * @param terrain the terrain, or {@code null} for the ground alone
+     */
+    public void setTerrain(Terrain terrain)
+    {
+        this.terrain = terrain;
+    }
+
+    /**
+     * Gets the terrain on which balls bounce above the ground.
+     *
+     * @return the terrain, or {@code null} if there is none
+     */
+    public Terrain getTerrain()
+    {
+        return terrain;
+    }
+
+    /**
+     * Sets the drag of the air, as the rate at which it slows a ball in
+     * proportion to its speed.  By default there is none.  The drag is not
+     * saved in a checkpoint.
+     *
+     * @param drag the rate in inverse seconds, not negative
+     */
+    public void setDrag(double drag)
+    {
+        if(!(drag >= 0))
+        {
+            throw new IllegalArgumentException("drag must not be negative");
+        }
+
+        this.drag = drag;
+    }
+
+    /**
+     * Gets the drag of the air.
+     *
+     * @return the rate in inverse seconds at which air slows a ball
+     */
+    public double getDrag()
+    {
+        return drag;
+    }
+
+    /**
+     * Sets whether balls collide with each other as well as with the ground.
+     * The setting is not saved in a checkpoint.
+     *
+     * @param collisions {@code true} if balls collide
+     */
+    public void setCollisionsEnabled(boolean collisions)
+    {
+        this.collisions = collisions;
+        broadPhaseStale = true;
+    }
+
+    /**
+     * Sets the broad phase through which balls that may collide are found.
+     * It is filled afresh on the next step.  The broad phase is not saved in
+     * a checkpoint.
+     *
+     * @param broadPhase the broad phase, which must not be used by any other
+     *        world
+     */
+    public void setBroadPhase(BroadPhase broadPhase)
+    {
+        if(broadPhase == null)
+        {
+            throw new IllegalArgumentException("broadPhase must not be null");
+        }
+
+        this.broadPhase = broadPhase;
+        broadPhaseStale = true;
+    }
+
+    /**
+     * Gets the broad phase through which balls that may collide are found.
+     *
+     * @return the broad phase, a {@link SpatialHash} unless another was set
+     */
+    public BroadPhase getBroadPhase()
+    {
+        return broadPhase;
+    }
+
+    /**
+     * Indicates whether balls collide with each other.
+     *
+     * @return {@code true} if balls collide
+     */
+    public boolean isCollisionsEnabled()
+    {
+        return collisions;
+    }
+
+    /**
+     * Gets the number of times two overlapping balls have been separated
+     * since the world was created or reset.
+     *
+     * @return the number of collisions between balls
+     */
+    public long getCollisionCount()
+    {
+        return collisionCount;
+    }
+
+    /**
+     * Writes the complete state of the world to a checkpoint.
+     *
+     * @param out the checkpoint
+     * @throws IOException if the checkpoint cannot be written
+     */
+    void write(Checkpoint.Output out) throws IOException
+    {
+        out.putDouble(gravity);
+        out.putDouble(time);
+        out.putInt(size);
+        out.putInt(activeCount);
+        out.putInt(sleepingCount);
+
+        out.putDoubles(x, size);
+        out.putDoubles(y, size);
+        out.putDoubles(velocity, size);
+        out.putDoubles(horizontal, size);
+        out.putDoubles(diameter, size);
+        out.putDoubles(cor, size);
+        out.putDoubles(dropX, size);
+        out.putDoubles(dropHeight, size);
+        out.putInts(material, size);
+        out.putInts(where, size);
+        out.putInts(active, activeCount);
+        out.putInts(sleeping, sleepingCount);
+
+        out.putInt(steps);
+        out.putInts(heldIn, size);
+        out.putInts(supportedIn, size);
+        out.putDoubles(stillX, size);
+        out.putDoubles(stillY, size);
+        out.putDoubles(stillFor, size);
+    }
+
+    /**
+     * Reads a world written by {@link #write(Checkpoint.Output)}.
+     *
+     * @param in the checkpoint
+     * @return the world
+     * @throws IOException if the checkpoint cannot be read or is inconsistent
+     */
+    static World read(Checkpoint.Input in) throws IOException
+    {
+        World world = new World(in.getDouble());
+
+        world.time = in.getDouble();
+        int size = in.getInt();
+        int activeCount = in.getInt();
+        int sleepingCount = in.getInt();
+
+        if(size < 0 || activeCount < 0 || sleepingCount < 0 ||
+                activeCount + sleepingCount != size)
+        {
+            throw new IOException("inconsistent checkpoint: " + size +
+                    " balls, " + activeCount + " active, " + sleepingCount +
+                    " sleeping");
+        }
+
+        world.grow(Math.max(INITIAL_CAPACITY, size));
+        world.size = size;
+        world.activeCount = activeCount;
+        world.sleepingCount = sleepingCount;
+
+        in.getDoubles(world.x, size);
+        in.getDoubles(world.y, size);
+        in.getDoubles(world.velocity, size);
+
+        if(in.getVersion() >= 2)
+        {
+            in.getDoubles(world.horizontal, size);
+        }
+
+        in.getDoubles(world.diameter, size);
+        in.getDoubles(world.cor, size);
+
+        if(in.getVersion() >= 2)
+        {
+            in.getDoubles(world.dropX, size);
+        }
+        else
+        {
+            // Balls moved only up and down
+            System.arraycopy(world.x, 0, world.dropX, 0, size);
+        }
+
+        in.getDoubles(world.dropHeight, size);
+        in.getInts(world.material, size);
+        in.getInts(world.where, size);
+        in.getInts(world.active, activeCount);
+        in.getInts(world.sleeping, sleepingCount);
+
+        if(in.getVersion() >= 3)
+        {
+            world.steps = in.getInt();
+            in.getInts(world.heldIn, size);
+            in.getInts(world.supportedIn, size);
+            in.getDoubles(world.stillX, size);
+            in.getDoubles(world.stillY, size);
+            in.getDoubles(world.stillFor, size);
+        }
+
+        for(int i = 0; i < size; i++)
+        {
+            world.checkSets(i);
+            world.largest = Math.max(world.largest, world.diameter[i]);
+
+            if(in.getVersion() < 3)
+            {
+                // Held up by nothing, and still only from now on
+                world.markStill(i);
+            }
+        }
+
+        return world;
+    }
+
+    /**
+     * Checks that a ball read from a checkpoint is in the active or the
+     * sleeping set, at the position it says it is.  Since the sets together
+     * hold as many balls as there are, this checks every index in them.
+     *
+     * @param i the index of the ball
+     * @throws IOException if the ball is not where it says it is
+     */
+    private void checkSets(int i) throws IOException
+    {
+        int p = where[i];
+
+        if(p >= 0 ? p >= activeCount || active[p] != i :
+                -(p + 1) >= sleepingCount || sleeping[-(p + 1)] != i)
+        {
+            throw new IOException("inconsistent checkpoint: ball " + i +
+                    " is not in the set it is listed in");
+        }
+    }
+
+    /**
+     * Copies the state of a ball into a {@link Ball}, for painting.  A ball
+     * knows only of vertical motion, so its velocity and direction are those
+     * of the vertical motion alone.
+     *
+     * @param i the index of the ball
+     * @param ball the ball to which the state is copied
+     */
+    public void copyTo(int i, Ball ball)
+    {
+        ball.setX(x[i]);
+        ball.setY(y[i]);
+        ball.setVelocity(Math.abs(velocity[i]));
+        ball.setDiameter(diameter[i]);
+        ball.setApex(y[i] + velocity[i] * velocity[i] / (2 * gravity));
+
+        if(isSleeping(i))
+        {
+            ball.setDirection(Physics.Direction.NONE);
+        }
+        else
+        {
+            ball.setDirection(velocity[i] > 0 ?
+                    Physics.Direction.UP : Physics.Direction.DOWN);
+        }
+
+        if(ball.getMaterial().getId() != material[i])
+        {
+            ball.setMaterial(new Material(material[i]));
+        }
+    }
+
+    /**
+     * Indicates whether a ball is asleep.
+     *
+     * @param i the index of the ball
+     * @return {@code true} if the ball is at rest in the sleeping set
+     */
+    public boolean isSleeping(int i)
+    {
+        return where[i] < 0;
+    }
+
+    /**
+     * Gets the number of balls in the world.
+     *
+     * @return the number of balls
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the number of balls that are moving.
+     *
+     * @return the number of balls in the active set
+     */
+    public int getActiveCount()
+    {
+        return activeCount;
+    }
+
+    /**
+     * Gets the number of balls that are at rest.
+     *
+     * @return the number of balls in the sleeping set
+     */
+    public int getSleepingCount()
+    {
+        return sleepingCount;
+    }
+
+    /**
+     * Gets the simulated time since the world was created or reset.
+     *
+     * @return the time in seconds
+     */
+    public double getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Gets the x position of a ball.
+     *
+     * @param i the index of the ball
+     * @return the x position in meters
+     */
+    public double getX(int i)
+    {
+        return x[i];
+    }
+
+    /**
+     * Gets the height of the bottom of a ball.
+     *
+     * @param i the index of the ball
+     * @return the height in meters
+     */
+    public double getY(int i)
+    {
+        return y[i];
+    }
+
+    /**
+     * Gets the vertical velocity of a ball.
+     *
+     * @param i the index of the ball
+     * @return the velocity in meters per second, positive upwards
+     */
+    public double getVelocity(int i)
+    {
+        return velocity[i];
+    }
+
+    /**
+     * Gets the horizontal velocity of a ball.
+     *
+     * @param i the index of the ball
+     * @return the velocity in meters per second, positive to the right
+     */
+    public double getHorizontalVelocity(int i)
+    {
+        return horizontal[i];
+    }
+
+    /**
+     * Gets the diameter of a ball.
+     *
+     * @param i the index of the ball
+     * @return the diameter in meters
+     */
+    public double getDiameter(int i)
+    {
+        return diameter[i];
+    }
+
+    /**
+     * Gets the ID of the material a ball is made of.
+     *
+     * @param i the index of the ball
+     * @return the material ID
+     */
+    public int getMaterial(int i)
+    {
+        return material[i];
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event spanning the painting of one frame of a display.
+ */
+@Name("bounce.Frame")
+@Label("Frame Paint")
+@Category("Bounce")
+@Description("One frame painted by a display")
+@Enabled(false)
+@StackTrace(false)
+public class FrameEvent extends Event
+{
+    /** The name of the display that was painted */
+    @Label("Display")
+    public String display;
+
+    /** The width of the painted area in pixels */
+    @Label("Width (px)")
+    public int width;
+
+    /** The height of the painted area in pixels */
+    @Label("Height (px)")
+    public int height;
+}
@@ -0,0 +1,187 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, typically durations in
+ * nanoseconds.  Values are counted in log-linear buckets: each power of two is
+ * divided into {@value #SUB_BUCKETS} equal buckets, so any recorded value is
+ * reported with an error of at most about 6%.
+ * <p>Recording a value is a handful of atomic increments and never blocks, so a
+ * histogram can be shared by any number of writing threads while it is being
+ * read.</p>
+ */
+public class Histogram
+{
+    /** The number of buckets into which each power of two is divided */
+    public static final int SUB_BUCKETS = 16;
+
+    /** The base two logarithm of {@link #SUB_BUCKETS} */
+    private static final int SUB_BITS = 4;
+
+    /** The largest value that is counted accurately (about 18 minutes in ns) */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    /** The number of buckets needed to count values up to the maximum */
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Gets the index of the bucket in which the specified value is counted.
+     *
+     * @param value a value between 0 and {@link #MAX_VALUE}
+     *
+     * @return the index of the bucket
+     */
+    private static int indexOf(long value)
+    {
+        if(value < SUB_BUCKETS)
+        {
+            return (int)value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Gets the smallest value that is counted in the specified bucket.
+     *
+     * @param index the index of the bucket
+     *
+     * @return the lower bound of the bucket
+     */
+    private static long lowerBoundOf(int index)
+    {
+        if(index < SUB_BUCKETS)
+        {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+
+    /**
+     * Records a value.  Negative values are recorded as zero and values larger
+     * than {@link #MAX_VALUE} are counted in the last bucket.
+     *
+     * @param value the value to record
+     */
+    public void record(long value)
+    {
+        if(value < 0)
+        {
+            value = 0;
+        }
+
+        buckets.incrementAndGet(indexOf(Math.min(value, MAX_VALUE)));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        while(value > (current = max.get()))
+        {
+            if(max.compareAndSet(current, value))
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return the number of values recorded
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * Clears every recorded value.  Values recorded while the histogram is
+     * being cleared may or may not be kept.
+     */
+    public void reset()
+    {
+        for(int i = 0; i < BUCKET_COUNT; i++)
+        {
+            buckets.set(i, 0);
+        }
+
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Takes a snapshot of the values recorded so far.  The snapshot is not
+     * atomic with respect to concurrent writers, but every value recorded
+     * before the snapshot began is included.
+     *
+     * @return a snapshot of the recorded values
+     */
+    public HistogramSnapshot snapshot()
+    {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+
+        for(int i = 0; i < BUCKET_COUNT; i++)
+        {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        return new HistogramSnapshot(total,
+                total == 0 ? 0 : sum.get() / (double)total, max.get(),
+                percentile(counts, total, 0.5),
+                percentile(counts, total, 0.9),
+                percentile(counts, total, 0.99),
+                percentile(counts, total, 0.999));
+    }
+
+    /**
+     * Finds the value below which the specified fraction of values fall.
+     *
+     * @param counts the number of values counted in each bucket
+     * @param total the total number of values
+     * @param fraction the fraction of values, between 0 and 1
+     *
+     * @return the lower bound of the bucket containing the percentile
+     */
+    private static long percentile(long[] counts, long total, double fraction)
+    {
+        long target = (long)Math.ceil(total * fraction);
+        long seen = 0;
+
+        for(int i = 0; i < counts.length; i++)
+        {
+            seen += counts[i];
+
+            if(seen >= target && seen > 0)
+            {
+                return lowerBoundOf(i);
+            }
+        }
+
+        return 0;
+    }
+}
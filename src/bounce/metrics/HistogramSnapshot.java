@@ -0,0 +1,121 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable summary of the values recorded by a {@link Histogram}.  Its
+ * getters allow it to be published as open data through JMX.
+ */
+public class HistogramSnapshot
+{
+    private final long count;
+    private final double mean;
+    private final long max;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+
+    /**
+     * Creates an instance of {@code HistogramSnapshot}.
+     *
+     * @param count the number of values recorded
+     * @param mean the mean of the values
+     * @param max the largest value
+     * @param p50 the median
+     * @param p90 the 90th percentile
+     * @param p99 the 99th percentile
+     * @param p999 the 99.9th percentile
+     */
+    @ConstructorProperties({"count", "mean", "max", "p50", "p90", "p99",
+            "p999"})
+    public HistogramSnapshot(long count, double mean, long max, long p50,
+            long p90, long p99, long p999)
+    {
+        this.count = count;
+        this.mean = mean;
+        this.max = max;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Accessors">
+    /**
+     * Gets the number of values recorded.
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the mean of the values recorded.
+     * @return the mean of the values recorded
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Gets the largest value recorded.
+     * @return the largest value recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the median of the values recorded.
+     * @return the median
+     */
+    public long getP50() {
+        return p50;
+    }
+
+    /**
+     * Gets the 90th percentile of the values recorded.
+     * @return the 90th percentile
+     */
+    public long getP90() {
+        return p90;
+    }
+
+    /**
+     * Gets the 99th percentile of the values recorded.
+     * @return the 99th percentile
+     */
+    public long getP99() {
+        return p99;
+    }
+
+    /**
+     * Gets the 99.9th percentile of the values recorded.
+     * @return the 99.9th percentile
+     */
+    public long getP999() {
+        return p999;
+    }
+    // </editor-fold>
+
+    /**
+     * Gets a single-line representation of the snapshot.
+     * @return a string representation of the snapshot
+     */
+    @Override
+    public String toString()
+    {
+        return "count=" + count + " mean=" + Math.round(mean) + " p50=" + p50 +
+                " p90=" + p90 + " p99=" + p99 + " p99.9=" + p999 +
+                " max=" + max;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event marking an impact of a ball with the ground.
+ */
+@Name("bounce.Impact")
+@Label("Ground Impact")
+@Category("Bounce")
+@Description("A ball struck the ground and bounced")
+@Enabled(false)
+@StackTrace(false)
+public class ImpactEvent extends Event
+{
+    /** The name of the display being animated */
+    @Label("Display")
+    public String display;
+
+    /** The material of the ball */
+    @Label("Material")
+    public String material;
+
+    /** The velocity at which the ball rebounds */
+    @Label("Rebound Velocity (m/s)")
+    public double velocity;
+
+    /** The apex the ball will reach after the bounce */
+    @Label("New Apex (m)")
+    public double apex;
+}
@@ -0,0 +1,355 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.metrics;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects runtime metrics about the simulations and the displays that animate
+ * them.  Metrics are only collected when the system property
+ * {@value #PROPERTY_ENABLED} is {@code true}; callers are expected to test
+ * {@link #ENABLED} before timing anything, so that the timing code is removed
+ * by the compiler when metrics are disabled.
+ * <p>If the system property {@value #PROPERTY_DUMP} names a file, every metric
+ * is written to it when the JVM exits.</p>
+ */
+public class Metrics implements MetricsMXBean
+{
+    /** The system property that enables the collection of metrics */
+    public static final String PROPERTY_ENABLED = "bounce.metrics";
+
+    /** The system property naming a file to which metrics are dumped on exit */
+    public static final String PROPERTY_DUMP = "bounce.metrics.dump";
+
+    /** The name under which the metrics are registered with JMX */
+    public static final String OBJECT_NAME = "bounce:type=Metrics";
+
+    /** Whether metrics are collected */
+    public static final boolean ENABLED = Boolean.getBoolean(PROPERTY_ENABLED);
+
+    /** The single instance through which the metrics are published */
+    private static final Metrics INSTANCE = new Metrics();
+
+    /** The time taken to calculate one step of a simulation */
+    public static final Histogram STEP_TIME = new Histogram();
+
+    /** The actual time between the starts of consecutive calculations */
+    public static final Histogram TICK_INTERVAL = new Histogram();
+
+    /** The time by which a calculation started later than intended */
+    public static final Histogram TICK_JITTER = new Histogram();
+
+    /** The time taken to propagate an event through a controller */
+    public static final Histogram DISPATCH_TIME = new Histogram();
+
+    private static final ConcurrentMap<String, Histogram> paintTimes =
+            new ConcurrentHashMap<String, Histogram>();
+    private static final AtomicLong framesSkipped = new AtomicLong();
+    private static final AtomicLong ticksOverrun = new AtomicLong();
+    private static final AtomicLong ticksDropped = new AtomicLong();
+    private static volatile long intendedTickInterval;
+    private static boolean registered;
+
+    private long lastAllocatedBytes;
+    private long lastAllocationSample;
+
+    /**
+     * Creates the single instance of {@code Metrics}.
+     */
+    private Metrics(){}
+
+    /**
+     * Gets the histogram of paint durations for the named display, creating it
+     * if necessary.
+     *
+     * @param name the name of the display
+     *
+     * @return the histogram in which the display records its paint durations
+     */
+    public static Histogram paintTime(String name)
+    {
+        Histogram h = paintTimes.get(name);
+
+        if(h == null)
+        {
+            Histogram created = new Histogram();
+            h = paintTimes.putIfAbsent(name, created);
+
+            if(h == null)
+            {
+                h = created;
+            }
+        }
+
+        return h;
+    }
+
+    /**
+     * Records the duration of one tick of a calculation loop, given the times
+     * at which this tick and the previous one started.
+     *
+     * @param previous the start of the previous tick from
+     *        {@link System#nanoTime()}, or zero if this is the first tick
+     * @param start the start of this tick from {@link System#nanoTime()}
+     * @param intended the intended tick interval in nanoseconds
+     */
+    public static void recordTick(long previous, long start, long intended)
+    {
+        intendedTickInterval = intended;
+
+        if(previous != 0)
+        {
+            TICK_INTERVAL.record(start - previous);
+            TICK_JITTER.record(start - previous - intended);
+        }
+    }
+
+    /**
+     * Adds to the number of animation frames that were due but never painted.
+     *
+     * @param frames the number of frames skipped
+     */
+    public static void addFramesSkipped(long frames)
+    {
+        framesSkipped.addAndGet(frames);
+    }
+
+    /**
+     * Adds to the number of calculation ticks that started a whole interval
+     * or more after they were due.
+     *
+     * @param ticks the number of late ticks
+     */
+    public static void addTicksOverrun(long ticks)
+    {
+        ticksOverrun.addAndGet(ticks);
+    }
+
+    /**
+     * Adds to the number of calculation ticks that were missed and never run.
+     *
+     * @param ticks the number of ticks dropped
+     */
+    public static void addTicksDropped(long ticks)
+    {
+        ticksDropped.addAndGet(ticks);
+    }
+
+    /**
+     * Publishes the metrics through the platform MBean server under
+     * {@value #OBJECT_NAME}, and arranges for them to be dumped on exit if
+     * {@value #PROPERTY_DUMP} is set.  Does nothing if metrics are disabled or
+     * have already been registered.
+     */
+    public static synchronized void register()
+    {
+        if(!ENABLED || registered)
+        {
+            return;
+        }
+
+        registered = true;
+
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    INSTANCE, new ObjectName(OBJECT_NAME));
+        }
+        catch(JMException e)
+        {
+            e.printStackTrace();
+        }
+
+        final String path = System.getProperty(PROPERTY_DUMP);
+
+        if(path != null)
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread("metrics-dump")
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        INSTANCE.dump(path);
+                    }
+                    catch(IOException e)
+                    {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the single instance through which the metrics are published.
+     *
+     * @return the metrics
+     */
+    public static Metrics getInstance()
+    {
+        return INSTANCE;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="MetricsMXBean">
+    public HistogramSnapshot getStepTime()
+    {
+        return STEP_TIME.snapshot();
+    }
+
+    public HistogramSnapshot getTickInterval()
+    {
+        return TICK_INTERVAL.snapshot();
+    }
+
+    public HistogramSnapshot getTickJitter()
+    {
+        return TICK_JITTER.snapshot();
+    }
+
+    public long getIntendedTickInterval()
+    {
+        return intendedTickInterval;
+    }
+
+    public HistogramSnapshot getDispatchTime()
+    {
+        return DISPATCH_TIME.snapshot();
+    }
+
+    public Map<String, HistogramSnapshot> getPaintTimes()
+    {
+        Map<String, HistogramSnapshot> snapshots =
+                new TreeMap<String, HistogramSnapshot>();
+
+        for(Map.Entry<String, Histogram> e : paintTimes.entrySet())
+        {
+            snapshots.put(e.getKey(), e.getValue().snapshot());
+        }
+
+        return snapshots;
+    }
+
+    public long getFramesSkipped()
+    {
+        return framesSkipped.get();
+    }
+
+    public long getTicksOverrun()
+    {
+        return ticksOverrun.get();
+    }
+
+    public long getTicksDropped()
+    {
+        return ticksDropped.get();
+    }
+
+    public synchronized long getAllocationRate()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        if(!(threads instanceof com.sun.management.ThreadMXBean))
+        {
+            return -1;
+        }
+
+        com.sun.management.ThreadMXBean t =
+                (com.sun.management.ThreadMXBean)threads;
+        long bytes = 0;
+
+        for(long allocated : t.getThreadAllocatedBytes(t.getAllThreadIds()))
+        {
+            if(allocated > 0)
+            {
+                bytes += allocated;
+            }
+        }
+
+        long now = System.nanoTime();
+        long rate = 0;
+
+        /* Threads that have died since the last sample take their counts with
+         * them, so a drop in the total is reported as no allocation.
+         */
+        if(lastAllocationSample != 0 && bytes > lastAllocatedBytes)
+        {
+            rate = (bytes - lastAllocatedBytes) * TimeUnit.SECONDS.toNanos(1) /
+                    Math.max(1, now - lastAllocationSample);
+        }
+
+        lastAllocatedBytes = bytes;
+        lastAllocationSample = now;
+
+        return rate;
+    }
+
+    public void reset()
+    {
+        STEP_TIME.reset();
+        TICK_INTERVAL.reset();
+        TICK_JITTER.reset();
+        DISPATCH_TIME.reset();
+
+        for(Histogram h : paintTimes.values())
+        {
+            h.reset();
+        }
+
+        framesSkipped.set(0);
+        ticksOverrun.set(0);
+        ticksDropped.set(0);
+    }
+
+    public void dump(String path) throws IOException
+    {
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(path), "UTF-8"));
+
+        try
+        {
+            out.println("stepTime\t" + getStepTime());
+            out.println("tickInterval\t" + getTickInterval());
+            out.println("tickJitter\t" + getTickJitter());
+            out.println("intendedTickInterval\t" + getIntendedTickInterval());
+            out.println("dispatchTime\t" + getDispatchTime());
+
+            for(Map.Entry<String, HistogramSnapshot> e :
+                    getPaintTimes().entrySet())
+            {
+                out.println("paintTime." + e.getKey() + "\t" + e.getValue());
+            }
+
+            out.println("framesSkipped\t" + getFramesSkipped());
+            out.println("ticksOverrun\t" + getTicksOverrun());
+            out.println("ticksDropped\t" + getTicksDropped());
+            out.println("allocationRate\t" + getAllocationRate());
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+    // </editor-fold>
+}
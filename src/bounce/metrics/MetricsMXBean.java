@@ -0,0 +1,97 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The management interface through which runtime metrics are published over
+ * JMX.  Durations are reported in nanoseconds.
+ *
+ * @see Metrics
+ */
+public interface MetricsMXBean
+{
+    /**
+     * Gets the time taken to calculate one step of a simulation.
+     * @return a snapshot of the step durations
+     */
+    HistogramSnapshot getStepTime();
+
+    /**
+     * Gets the actual time between the starts of consecutive calculations.
+     * @return a snapshot of the tick intervals
+     */
+    HistogramSnapshot getTickInterval();
+
+    /**
+     * Gets the time by which consecutive calculations were later than the
+     * intended tick interval.
+     * @return a snapshot of the tick lateness
+     */
+    HistogramSnapshot getTickJitter();
+
+    /**
+     * Gets the intended time between the starts of consecutive calculations.
+     * @return the intended tick interval in nanoseconds
+     */
+    long getIntendedTickInterval();
+
+    /**
+     * Gets the time taken to propagate an event through a controller to its
+     * views.
+     * @return a snapshot of the dispatch durations
+     */
+    HistogramSnapshot getDispatchTime();
+
+    /**
+     * Gets the time taken to paint each display, keyed by display name.
+     * @return snapshots of the paint durations
+     */
+    Map<String, HistogramSnapshot> getPaintTimes();
+
+    /**
+     * Gets the number of animation frames that were due but never painted.
+     * @return the number of frames skipped
+     */
+    long getFramesSkipped();
+
+    /**
+     * Gets the number of calculation ticks that started a whole interval or
+     * more after they were due.
+     * @return the number of late ticks
+     */
+    long getTicksOverrun();
+
+    /**
+     * Gets the number of calculation ticks that were missed and never run.
+     * @return the number of ticks dropped
+     */
+    long getTicksDropped();
+
+    /**
+     * Gets the number of bytes allocated per second by all live threads since
+     * the previous call.
+     * @return the allocation rate in bytes per second, or -1 if unsupported
+     */
+    long getAllocationRate();
+
+    /**
+     * Clears every histogram and counter.
+     */
+    void reset();
+
+    /**
+     * Writes every metric to the specified file.
+     * @param path the path of the file
+     * @throws IOException if the file cannot be written
+     */
+    void dump(String path) throws IOException;
+}
@@ -0,0 +1,48 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event spanning the notification of listeners that a field
+ * of a presentation model has changed.
+ */
+@Name("bounce.ModelChange")
+@Label("Model Property Change")
+@Category("Bounce")
+@Description("A field of a presentation model changed")
+@Enabled(false)
+public class ModelChangeEvent extends Event
+{
+    /** The class of the model */
+    @Label("Model")
+    public Class<?> model;
+
+    /** The field that changed */
+    @Label("Field")
+    public String field;
+
+    /** The previous value of the field */
+    @Label("Old Value")
+    public String oldValue;
+
+    /** The new value of the field */
+    @Label("New Value")
+    public String newValue;
+
+    /** The number of listeners notified */
+    @Label("Listeners")
+    public int listeners;
+}
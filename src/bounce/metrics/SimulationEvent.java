@@ -0,0 +1,49 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event marking the start or reset of a simulation.
+ */
+@Name("bounce.Simulation")
+@Label("Simulation Start/Reset")
+@Category("Bounce")
+@Description("A simulation was started or reset")
+@Enabled(false)
+public class SimulationEvent extends Event
+{
+    /** The action for a simulation that was started */
+    public static final String ACTION_START = "start";
+
+    /** The action for a simulation that was reset */
+    public static final String ACTION_RESET = "reset";
+
+    /** The name of the display being animated */
+    @Label("Display")
+    public String display;
+
+    /** Either {@link #ACTION_START} or {@link #ACTION_RESET} */
+    @Label("Action")
+    public String action;
+
+    /** The material of the ball */
+    @Label("Material")
+    public String material;
+
+    /** The height from which the ball is dropped */
+    @Label("Drop Height (m)")
+    public double height;
+}
@@ -0,0 +1,47 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event spanning one calculation of a ball's position.  Like
+ * every event in this package it is disabled unless a recording enables it, in
+ * which case creating and committing it is removed by the compiler.
+ */
+@Name("bounce.Tick")
+@Label("Physics Tick")
+@Category("Bounce")
+@Description("One calculation of a ball's position")
+@Enabled(false)
+@StackTrace(false)
+public class TickEvent extends Event
+{
+    /** The name of the display being animated */
+    @Label("Display")
+    public String display;
+
+    /** The height of the ball after the calculation */
+    @Label("Height (m)")
+    public double height;
+
+    /** The velocity of the ball after the calculation */
+    @Label("Velocity (m/s)")
+    public double velocity;
+
+    /** The direction of the ball after the calculation */
+    @Label("Direction")
+    public String direction;
+}
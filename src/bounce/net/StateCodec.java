@@ -0,0 +1,190 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.net;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The binary encoding of the frames streamed by a {@link StateServer}.  Each
+ * frame is preceded by its length as a four-byte integer, and holds:
+ *
+ * <pre>
+ * byte    type            KEY or DELTA
+ * varint  tick            the number of the tick
+ * varint  size            the number of balls in the world
+ * varint  count           the number of entries that follow
+ * count * entry:
+ *   varint  gap           index of the ball minus that of the previous entry
+ *   zigzag  dx, dy        change in the quantized position
+ *   (KEY frames only)
+ *   varint  diameter      the quantized diameter
+ *   zigzag  material      the material ID
+ * </pre>
+ *
+ * Positions are quantized to {@link #QUANTUM} meters.  A key frame holds every
+ * ball, with changes measured from zero; a delta frame holds only the balls
+ * whose quantized position changed since the previous tick.
+ */
+public final class StateCodec
+{
+    /** A frame holding the complete state of the world */
+    public static final byte KEY = 1;
+
+    /** A frame holding only the balls that moved since the previous tick */
+    public static final byte DELTA = 2;
+
+    /** The size in meters of one step of a quantized position */
+    public static final double QUANTUM = 0.001;
+
+    private StateCodec()
+    {
+    }
+
+    /**
+     * Quantizes a length.
+     *
+     * @param meters the length in meters
+     * @return the number of quanta
+     */
+    public static int quantize(double meters)
+    {
+        return (int)Math.round(meters / QUANTUM);
+    }
+
+    /**
+     * Converts a quantized length back to meters.
+     *
+     * @param quanta the number of quanta
+     * @return the length in meters
+     */
+    public static double toMeters(int quanta)
+    {
+        return quanta * QUANTUM;
+    }
+
+    /**
+     * Writes an unsigned variable-length integer, seven bits to a byte.
+     *
+     * @param buffer the buffer to write to
+     * @param value the value to write
+     */
+    static void writeVarLong(Buffer buffer, long value)
+    {
+        while((value & ~0x7FL) != 0)
+        {
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put((byte)value);
+    }
+
+    /**
+     * Writes a signed variable-length integer, zigzag encoded so that small
+     * negative values are short.
+     *
+     * @param buffer the buffer to write to
+     * @param value the value to write
+     */
+    static void writeZigZag(Buffer buffer, int value)
+    {
+        writeVarLong(buffer, ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reads an unsigned variable-length integer.
+     *
+     * @param in the input to read from
+     * @return the value read
+     * @throws IOException if the input cannot be read or the value is
+     *         malformed
+     */
+    static long readVarLong(DataInput in) throws IOException
+    {
+        long value = 0;
+
+        for(int shift = 0; shift < 64; shift += 7)
+        {
+            byte b = in.readByte();
+            value |= (long)(b & 0x7F) << shift;
+
+            if((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+
+        throw new IOException("malformed variable-length integer");
+    }
+
+    /**
+     * Reads a signed, zigzag encoded variable-length integer.
+     *
+     * @param in the input to read from
+     * @return the value read
+     * @throws IOException if the input cannot be read
+     */
+    static int readZigZag(DataInput in) throws IOException
+    {
+        int value = (int)readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A growable byte array into which frames are encoded, reused from one
+     * frame to the next.
+     */
+    static final class Buffer
+    {
+        private byte[] bytes = new byte[1024];
+        private int length;
+
+        /**
+         * Empties the buffer, leaving room for the length of the frame.
+         */
+        void clear()
+        {
+            length = 4;
+        }
+
+        /**
+         * Appends a byte.
+         *
+         * @param b the byte
+         */
+        void put(byte b)
+        {
+            if(length == bytes.length)
+            {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+
+            bytes[length++] = b;
+        }
+
+        /**
+         * Copies the frame out of the buffer, with its length filled in.
+         *
+         * @return the frame
+         */
+        byte[] toFrame()
+        {
+            int n = length - 4;
+
+            bytes[0] = (byte)(n >>> 24);
+            bytes[1] = (byte)(n >>> 16);
+            bytes[2] = (byte)(n >>> 8);
+            bytes[3] = (byte)n;
+
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
@@ -0,0 +1,506 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bounce.logic.World;
+
+/**
+ * Streams the state of a {@link World} to any number of viewers over TCP,
+ * without blocking the thread that steps the world.
+ * <p>The simulation thread calls {@link #publish} after every tick.  The tick
+ * is encoded once, as a delta frame holding only the balls whose quantized
+ * position changed (see {@link StateCodec}), and offered to a bounded queue
+ * for each viewer.  A single selector thread writes the queues to the sockets
+ * as fast as each viewer reads.  When a viewer's queue is full the frame is
+ * dropped instead of waiting; since later deltas would then be meaningless
+ * to it, that viewer is sent a key frame holding every ball as soon as its
+ * queue has room again.  New viewers also start with a key frame.</p>
+ */
+public class StateServer
+{
+    /** The name of the thread that writes to the viewers */
+    public static final String THREAD_NAME_STREAM = "thread-stream";
+
+    /** The default number of frames queued for each viewer */
+    public static final int DEFAULT_QUEUE = 16;
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final int queueCapacity;
+    private final CopyOnWriteArrayList<Viewer> viewers =
+            new CopyOnWriteArrayList<Viewer>();
+    private final Thread thread;
+    private volatile boolean open = true;
+
+    private final AtomicLong framesQueued = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    /** The quantized positions at this tick and the previous one */
+    private int[] x = new int[0];
+    private int[] y = new int[0];
+    private int[] previousX = new int[0];
+    private int[] previousY = new int[0];
+
+    private final StateCodec.Buffer buffer = new StateCodec.Buffer();
+
+    /**
+     * Creates a server listening on the specified address and starts the
+     * thread that writes to viewers.
+     *
+     * @param address the address to listen on; port 0 picks a free port
+     * @param queueCapacity the number of frames queued for each viewer
+     * @throws IOException if the server socket cannot be opened
+     */
+    public StateServer(InetSocketAddress address, int queueCapacity)
+            throws IOException
+    {
+        this.queueCapacity = queueCapacity;
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        thread = new Thread(THREAD_NAME_STREAM)
+        {
+            @Override
+            public void run()
+            {
+                serve();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the address on which the server listens.
+     *
+     * @return the local address
+     * @throws IOException if the address cannot be read
+     */
+    public InetSocketAddress getAddress() throws IOException
+    {
+        return (InetSocketAddress)server.getLocalAddress();
+    }
+
+    /**
+     * Gets the number of connected viewers.
+     *
+     * @return the number of viewers
+     */
+    public int getViewerCount()
+    {
+        return viewers.size();
+    }
+
+    /**
+     * Gets the number of frames queued for viewers.
+     *
+     * @return the number of frames
+     */
+    public long getFramesQueued()
+    {
+        return framesQueued.get();
+    }
+
+    /**
+     * Gets the number of frames dropped because a viewer's queue was full.
+     *
+     * @return the number of frames
+     */
+    public long getFramesDropped()
+    {
+        return framesDropped.get();
+    }
+
+    /**
+     * Gets the number of bytes written to viewers.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesSent()
+    {
+        return bytesSent.get();
+    }
+
+    /**
+     * Offers the state of the world at the end of a tick to every viewer.
+     * This never blocks.  It must be called by one thread at a time.
+     *
+     * @param world the world
+     * @param tick the number of the tick
+     */
+    public void publish(World world, long tick)
+    {
+        if(viewers.isEmpty())
+        {
+            return;
+        }
+
+        int size = world.size();
+
+        if(x.length < size)
+        {
+            int capacity = Math.max(size, x.length * 2);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            previousX = Arrays.copyOf(previousX, capacity);
+            previousY = Arrays.copyOf(previousY, capacity);
+        }
+
+        for(int i = 0; i < size; i++)
+        {
+            x[i] = StateCodec.quantize(world.getX(i));
+            y[i] = StateCodec.quantize(world.getY(i));
+        }
+
+        byte[] delta = null;
+        byte[] key = null;
+        boolean queued = false;
+
+        for(Viewer viewer : viewers)
+        {
+            byte[] frame;
+
+            if(viewer.needsKey)
+            {
+                if(key == null)
+                {
+                    key = encode(world, tick, StateCodec.KEY);
+                }
+                frame = key;
+            }
+            else
+            {
+                if(delta == null)
+                {
+                    delta = encode(world, tick, StateCodec.DELTA);
+                }
+                frame = delta;
+            }
+
+            if(viewer.queue.offer(frame))
+            {
+                viewer.needsKey = false;
+                framesQueued.incrementAndGet();
+                queued = true;
+            }
+            else
+            {
+                viewer.needsKey = true;
+                framesDropped.incrementAndGet();
+            }
+        }
+
+        int[] swap = previousX;
+        previousX = x;
+        x = swap;
+        swap = previousY;
+        previousY = y;
+        y = swap;
+
+        if(queued)
+        {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Encodes the current tick.
+     *
+     * @param world the world
+     * @param tick the number of the tick
+     * @param type {@link StateCodec#KEY} or {@link StateCodec#DELTA}
+     * @return the frame
+     */
+    private byte[] encode(World world, long tick, byte type)
+    {
+        int size = world.size();
+        boolean full = type == StateCodec.KEY;
+        int count = 0;
+
+        if(full)
+        {
+            count = size;
+        }
+        else
+        {
+            for(int i = 0; i < size; i++)
+            {
+                if(x[i] != previousX[i] || y[i] != previousY[i])
+                {
+                    count++;
+                }
+            }
+        }
+
+        buffer.clear();
+        buffer.put(type);
+        StateCodec.writeVarLong(buffer, tick);
+        StateCodec.writeVarLong(buffer, size);
+        StateCodec.writeVarLong(buffer, count);
+
+        int last = 0;
+
+        for(int i = 0; i < size; i++)
+        {
+            int dx = full ? x[i] : x[i] - previousX[i];
+            int dy = full ? y[i] : y[i] - previousY[i];
+
+            if(!full && dx == 0 && dy == 0)
+            {
+                continue;
+            }
+
+            StateCodec.writeVarLong(buffer, i - last);
+            StateCodec.writeZigZag(buffer, dx);
+            StateCodec.writeZigZag(buffer, dy);
+
+            if(full)
+            {
+                StateCodec.writeVarLong(buffer,
+                        StateCodec.quantize(world.getDiameter(i)));
+                StateCodec.writeZigZag(buffer, world.getMaterial(i));
+            }
+
+            last = i;
+        }
+
+        return buffer.toFrame();
+    }
+
+    /**
+     * Accepts viewers and writes their queued frames until the server is
+     * closed.
+     */
+    private void serve()
+    {
+        ByteBuffer discard = ByteBuffer.allocate(256);
+
+        while(open)
+        {
+            try
+            {
+                selector.select();
+
+                Iterator<SelectionKey> keys =
+                        selector.selectedKeys().iterator();
+
+                while(keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if(!key.isValid())
+                    {
+                        continue;
+                    }
+
+                    if(key.isAcceptable())
+                    {
+                        accept();
+                    }
+                    else if(key.isReadable())
+                    {
+                        // Viewers send nothing; reading only detects a close
+                        discard.clear();
+
+                        if(read((Viewer)key.attachment(), discard) < 0)
+                        {
+                            close((Viewer)key.attachment());
+                        }
+                    }
+                }
+
+                for(Viewer viewer : viewers)
+                {
+                    flush(viewer);
+                }
+            }
+            catch(IOException e)
+            {
+                if(open)
+                {
+                    System.err.println(THREAD_NAME_STREAM + ": " +
+                            e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Accepts a pending connection.
+     *
+     * @throws IOException if the connection cannot be configured
+     */
+    private void accept() throws IOException
+    {
+        SocketChannel channel = server.accept();
+
+        if(channel == null)
+        {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+
+        Viewer viewer = new Viewer(channel, queueCapacity);
+        viewer.key = channel.register(selector, SelectionKey.OP_READ, viewer);
+        viewers.add(viewer);
+    }
+
+    /**
+     * Reads from a viewer, closing it if the read fails.
+     *
+     * @param viewer the viewer
+     * @param discard a buffer for the bytes read
+     * @return the number of bytes read, or -1 if the viewer has gone
+     */
+    private int read(Viewer viewer, ByteBuffer discard)
+    {
+        try
+        {
+            return viewer.channel.read(discard);
+        }
+        catch(IOException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Writes as many queued frames to a viewer as its socket will take
+     * without blocking, and asks to be told when it will take more.
+     *
+     * @param viewer the viewer
+     */
+    private void flush(Viewer viewer)
+    {
+        try
+        {
+            while(true)
+            {
+                if(viewer.pending == null || !viewer.pending.hasRemaining())
+                {
+                    byte[] frame = viewer.queue.poll();
+
+                    if(frame == null)
+                    {
+                        viewer.pending = null;
+                        break;
+                    }
+
+                    viewer.pending = ByteBuffer.wrap(frame);
+                }
+
+                int n = viewer.channel.write(viewer.pending);
+                bytesSent.addAndGet(n);
+
+                if(viewer.pending.hasRemaining())
+                {
+                    break;
+                }
+            }
+
+            viewer.key.interestOps(viewer.pending == null ?
+                    SelectionKey.OP_READ :
+                    SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        catch(IOException e)
+        {
+            close(viewer);
+        }
+    }
+
+    /**
+     * Disconnects a viewer.
+     *
+     * @param viewer the viewer
+     */
+    private void close(Viewer viewer)
+    {
+        viewers.remove(viewer);
+        viewer.key.cancel();
+
+        try
+        {
+            viewer.channel.close();
+        }
+        catch(IOException e)
+        {
+        }
+    }
+
+    /**
+     * Stops the server and disconnects every viewer.
+     *
+     * @throws IOException if the server socket cannot be closed
+     */
+    public void close() throws IOException
+    {
+        open = false;
+        selector.wakeup();
+
+        try
+        {
+            thread.join();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        for(Viewer viewer : viewers)
+        {
+            close(viewer);
+        }
+
+        server.close();
+        selector.close();
+    }
+
+    /**
+     * A connected viewer and its queue of frames.
+     */
+    private static final class Viewer
+    {
+        final SocketChannel channel;
+        final ArrayBlockingQueue<byte[]> queue;
+        SelectionKey key;
+
+        /** The frame being written, or {@code null} if none is */
+        ByteBuffer pending;
+
+        /** Whether the viewer must be sent a key frame next */
+        volatile boolean needsKey = true;
+
+        Viewer(SocketChannel channel, int capacity)
+        {
+            this.channel = channel;
+            this.queue = new ArrayBlockingQueue<byte[]>(capacity);
+        }
+    }
+}
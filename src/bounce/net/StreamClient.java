@@ -0,0 +1,232 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.net;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * A viewer of the state streamed by a {@link StateServer}: it reads frames from
+ * the server and applies them to its own copy of the quantized positions.  It
+ * stands in for a remote display and holds what one would paint.
+ * <p>A client is not thread-safe.</p>
+ */
+public class StreamClient implements Closeable
+{
+    private final Socket socket;
+    private final DataInputStream in;
+
+    private int[] x = new int[0];
+    private int[] y = new int[0];
+    private int[] diameter = new int[0];
+    private int[] material = new int[0];
+    private int size;
+    private long tick = -1;
+    private long framesRead;
+    private long keyFramesRead;
+
+    /**
+     * Connects to a server.
+     *
+     * @param address the address of the server
+     * @throws IOException if the connection fails
+     */
+    public StreamClient(InetSocketAddress address) throws IOException
+    {
+        socket = new Socket(address.getAddress(), address.getPort());
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(
+                socket.getInputStream()));
+    }
+
+    /**
+     * Reads the next frame and applies it, waiting until one arrives.
+     *
+     * @return {@code false} if the server has closed the connection
+     * @throws IOException if the frame cannot be read or is malformed
+     */
+    public boolean read() throws IOException
+    {
+        int length;
+
+        try
+        {
+            length = in.readInt();
+        }
+        catch(EOFException e)
+        {
+            return false;
+        }
+
+        byte type = in.readByte();
+
+        if(type != StateCodec.KEY && type != StateCodec.DELTA)
+        {
+            throw new IOException("unknown frame type " + type +
+                    " of length " + length);
+        }
+
+        boolean key = type == StateCodec.KEY;
+
+        tick = StateCodec.readVarLong(in);
+        resize((int)StateCodec.readVarLong(in), key);
+
+        int count = (int)StateCodec.readVarLong(in);
+        int i = 0;
+
+        for(int n = 0; n < count; n++)
+        {
+            i += (int)StateCodec.readVarLong(in);
+            x[i] += StateCodec.readZigZag(in);
+            y[i] += StateCodec.readZigZag(in);
+
+            if(key)
+            {
+                diameter[i] = (int)StateCodec.readVarLong(in);
+                material[i] = StateCodec.readZigZag(in);
+            }
+        }
+
+        framesRead++;
+
+        if(key)
+        {
+            keyFramesRead++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Sets the number of balls, clearing every position if a key frame is to
+     * be applied.
+     *
+     * @param size the number of balls
+     * @param key whether a key frame is to be applied
+     */
+    private void resize(int size, boolean key)
+    {
+        if(x.length < size)
+        {
+            x = Arrays.copyOf(x, size);
+            y = Arrays.copyOf(y, size);
+            diameter = Arrays.copyOf(diameter, size);
+            material = Arrays.copyOf(material, size);
+        }
+
+        if(key)
+        {
+            Arrays.fill(x, 0);
+            Arrays.fill(y, 0);
+        }
+
+        this.size = size;
+    }
+
+    /**
+     * Gets the number of the tick of the last frame read.
+     *
+     * @return the tick, or -1 if no frame has been read
+     */
+    public long getTick()
+    {
+        return tick;
+    }
+
+    /**
+     * Gets the number of balls.
+     *
+     * @return the number of balls
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the x position of a ball.
+     *
+     * @param i the index of the ball
+     * @return the x position in meters
+     */
+    public double getX(int i)
+    {
+        return StateCodec.toMeters(x[i]);
+    }
+
+    /**
+     * Gets the height of the bottom of a ball.
+     *
+     * @param i the index of the ball
+     * @return the height in meters
+     */
+    public double getY(int i)
+    {
+        return StateCodec.toMeters(y[i]);
+    }
+
+    /**
+     * Gets the diameter of a ball.
+     *
+     * @param i the index of the ball
+     * @return the diameter in meters
+     */
+    public double getDiameter(int i)
+    {
+        return StateCodec.toMeters(diameter[i]);
+    }
+
+    /**
+     * Gets the ID of the material a ball is made of.
+     *
+     * @param i the index of the ball
+     * @return the material ID
+     */
+    public int getMaterial(int i)
+    {
+        return material[i];
+    }
+
+    /**
+     * Gets the number of frames read.
+     *
+     * @return the number of frames
+     */
+    public long getFramesRead()
+    {
+        return framesRead;
+    }
+
+    /**
+     * Gets the number of key frames read.
+     *
+     * @return the number of key frames
+     */
+    public long getKeyFramesRead()
+    {
+        return keyFramesRead;
+    }
+
+    /**
+     * Disconnects from the server.
+     *
+     * @throws IOException if the socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        socket.close();
+    }
+}
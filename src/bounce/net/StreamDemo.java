@@ -0,0 +1,179 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.net;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bounce.logic.Material;
+import bounce.logic.World;
+
+/**
+ * Streams a world of bouncing balls to two local viewers, one that keeps up
+ * and one that reads slowly, and reports what each received.  The simulation
+ * is never held up by the slow viewer, which instead misses frames and is
+ * brought back into step with key frames.  At the end the state held by the
+ * fast viewer is checked against the world.
+ *
+ * <pre>
+ * usage: bounce.net.StreamDemo [balls] [ticks]
+ * </pre>
+ */
+public class StreamDemo
+{
+    /** The simulated and real time between ticks in milliseconds */
+    private static final int STEP = 10;
+
+    /** The time the slow viewer waits after reading each frame in milliseconds */
+    private static final int SLOW_READ = 50;
+
+    /** The greatest drop height in meters */
+    private static final double MAX_HEIGHT = 10;
+
+    /**
+     * Runs the demonstration and prints the results.
+     *
+     * @param args optionally the number of balls and the number of ticks
+     * @throws Exception if the server or a viewer fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int balls = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        Material[] materials = {new Material(Material.ID_RUBBER),
+                new Material(Material.ID_IRON),
+                new Material(Material.ID_STONE)};
+        Random random = new Random(1);
+        World world = new World();
+
+        for(int i = 0; i < balls; i++)
+        {
+            world.add(i % 100, random.nextDouble() * MAX_HEIGHT, 0.15,
+                    materials[i % materials.length]);
+        }
+
+        StateServer server = new StateServer(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), 0),
+                StateServer.DEFAULT_QUEUE);
+        StreamClient fast = new StreamClient(server.getAddress());
+        StreamClient slow = new StreamClient(server.getAddress());
+        AtomicLong fastTick = new AtomicLong(-1);
+        Thread fastReader = startReader(fast, 0, fastTick);
+        Thread slowReader = startReader(slow, SLOW_READ, new AtomicLong());
+
+        while(server.getViewerCount() < 2)
+        {
+            Thread.sleep(1);
+        }
+
+        long tick = 0;
+        long start = System.nanoTime();
+
+        for(; tick < ticks; tick++)
+        {
+            world.step(STEP / 1000d);
+            server.publish(world, tick);
+            Thread.sleep(STEP);
+        }
+
+        // The last frames may have been dropped, so repeat the final state
+        // until the fast viewer has it
+        while(fastTick.get() < ticks - 1)
+        {
+            server.publish(world, tick++);
+            Thread.sleep(STEP);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        server.close();
+        fastReader.join();
+        slowReader.join();
+
+        System.out.printf("%d balls, %d ticks in %.1f s%n", balls, ticks,
+                seconds);
+        System.out.printf("queued %d frames, dropped %d, sent %.1f MB%n",
+                server.getFramesQueued(), server.getFramesDropped(),
+                server.getBytesSent() / 1e6);
+        report("fast", fast);
+        report("slow", slow);
+
+        int mismatches = 0;
+
+        for(int i = 0; i < balls; i++)
+        {
+            if(fast.getY(i) != StateCodec.toMeters(
+                    StateCodec.quantize(world.getY(i))) ||
+                    fast.getMaterial(i) != world.getMaterial(i))
+            {
+                mismatches++;
+            }
+        }
+
+        System.out.println("fast viewer " + (mismatches == 0 ?
+                "matches the world" : "differs in " + mismatches + " balls"));
+    }
+
+    /**
+     * Starts a thread that reads frames until the server disconnects.
+     *
+     * @param client the viewer
+     * @param pause the time to wait after each frame in milliseconds
+     * @param tick receives the tick of each frame read
+     * @return the thread
+     */
+    private static Thread startReader(final StreamClient client,
+            final int pause, final AtomicLong tick)
+    {
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    while(client.read())
+                    {
+                        tick.set(client.getTick());
+
+                        if(pause > 0)
+                        {
+                            Thread.sleep(pause);
+                        }
+                    }
+                }
+                catch(IOException e)
+                {
+                    // The server closed the connection mid-frame
+                }
+                catch(InterruptedException e)
+                {
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Prints what a viewer received.
+     *
+     * @param name the name of the viewer
+     * @param client the viewer
+     */
+    private static void report(String name, StreamClient client)
+    {
+        System.out.printf("%s viewer: %d frames (%d key), last tick %d%n",
+                name, client.getFramesRead(), client.getKeyFramesRead(),
+                client.getTick());
+    }
+}
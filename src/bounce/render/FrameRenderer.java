@@ -0,0 +1,240 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.render;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.imageio.ImageIO;
+
+import bounce.gui.DisplayRenderer;
+import bounce.logic.Converter;
+import bounce.logic.Material;
+import bounce.logic.Simulation;
+
+/**
+ * Renders a bounce simulation offscreen into a numbered sequence of PNG
+ * images, one for each frame of a video.
+ * <p>The position of the ball at the time of any frame is taken directly from
+ * its timeline with {@link Simulation#seek(long)}, so frames do not depend on
+ * one another and are rendered and encoded in parallel by a pool of workers.
+ * Each frame is drawn into an image taken from a fixed pool; the thread that
+ * hands out frames waits for a free image, so no more frames are held in
+ * memory than there are images, however long the sequence.</p>
+ */
+public class FrameRenderer
+{
+    /** The prefix of the name of each worker thread */
+    public static final String THREAD_NAME_RENDER = "thread-frame-";
+
+    /** The format of the name of each image file */
+    public static final String FILE_NAME_FORMAT = "frame-%06d.png";
+
+    private final double height;
+    private final int material;
+    private final Dimension area;
+    private final int fps;
+    private final int workers;
+    private final int depth;
+
+    /**
+     * Creates an instance of {@code FrameRenderer}.
+     *
+     * @param height the drop height in meters, which is also the height of
+     *        the bounce area
+     * @param material the ID of the material the ball is made of
+     * @param width the width of each image in pixels
+     * @param fps the number of frames per second of simulated time
+     * @param workers the number of threads rendering and encoding frames
+     * @param depth the largest number of frames held in memory at once
+     */
+    public FrameRenderer(double height, int material, int width, int fps,
+            int workers, int depth)
+    {
+        if(width <= 0 || fps <= 0 || workers <= 0 || depth <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "width, fps, workers and depth must be positive");
+        }
+
+        this.height = height;
+        this.material = material;
+        this.area = new Dimension(width, Converter.toPixels(height));
+        this.fps = fps;
+        this.workers = workers;
+        this.depth = depth;
+    }
+
+    /**
+     * Gets the time of a frame in milliseconds since the ball was dropped.
+     *
+     * @param frame the number of the frame, starting at zero
+     * @return the time of the frame in milliseconds
+     */
+    long getFrameTime(int frame)
+    {
+        return frame * 1000L / fps;
+    }
+
+    /**
+     * Renders the specified number of frames into the specified directory,
+     * which is created if necessary.  The call returns once every frame has
+     * been written, or after the first frame that fails.
+     *
+     * @param frames the number of frames to render
+     * @param dir the directory to which the images are written
+     *
+     * @throws IOException if the directory cannot be created or an image
+     *         cannot be written
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public void render(int frames, final File dir)
+            throws IOException, InterruptedException
+    {
+        if(!dir.isDirectory() && !dir.mkdirs())
+        {
+            throw new IOException("cannot create directory " + dir);
+        }
+
+        ImageIO.setUseCache(false);
+
+        final BlockingQueue<BufferedImage> images =
+                new ArrayBlockingQueue<BufferedImage>(depth);
+
+        for(int i = 0; i < depth; i++)
+        {
+            images.add(new BufferedImage(area.width, area.height,
+                    BufferedImage.TYPE_INT_RGB));
+        }
+
+        final AtomicReference<IOException> failure =
+                new AtomicReference<IOException>();
+        final ThreadLocal<Worker> worker = new ThreadLocal<Worker>()
+        {
+            @Override
+            protected Worker initialValue()
+            {
+                return new Worker();
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers,
+                new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r,
+                        THREAD_NAME_RENDER + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        try
+        {
+            for(int i = 0; i < frames && failure.get() == null; i++)
+            {
+                final int frame = i;
+                final BufferedImage image = images.take();
+
+                pool.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            if(failure.get() == null)
+                            {
+                                worker.get().render(frame, image);
+                                ImageIO.write(image, "png", new File(dir,
+                                        String.format(FILE_NAME_FORMAT, frame)));
+                            }
+                        }
+                        catch(IOException e)
+                        {
+                            failure.compareAndSet(null, e);
+                        }
+                        catch(RuntimeException e)
+                        {
+                            failure.compareAndSet(null, new IOException(
+                                    "cannot render frame " + frame, e));
+                        }
+                        finally
+                        {
+                            images.add(image);
+                        }
+                    }
+                });
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        if(failure.get() != null)
+        {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * The simulation and renderer used by one worker thread.
+     */
+    private final class Worker
+    {
+        private final Simulation simulation = new Simulation();
+        private final DisplayRenderer renderer = new DisplayRenderer(
+                Thread.currentThread().getName(), 1000 / fps);
+
+        Worker()
+        {
+            simulation.getBall().setMaterial(new Material(material));
+            simulation.reset(Converter.toMeters(area.width), height);
+            simulation.start(0);
+        }
+
+        /**
+         * Draws a frame into an image.
+         *
+         * @param frame the number of the frame
+         * @param image the image into which the frame is drawn
+         */
+        void render(int frame, BufferedImage image)
+        {
+            simulation.seek(getFrameTime(frame));
+
+            Graphics2D g = image.createGraphics();
+
+            try
+            {
+                renderer.paint(g, area.width, area.height, area,
+                        simulation.getBall(), false);
+            }
+            finally
+            {
+                g.dispose();
+            }
+        }
+    }
+}
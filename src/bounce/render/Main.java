@@ -0,0 +1,160 @@
+/*
+ * This code is copyright.  All rights reserved.
+ *
+ * The presence of this code on GitHub or any other code hosting service does
+ * not imply that it is open source.
+ *
+ * The author can be found at github.com/thrush.
+ */
+package bounce.render;
+
+import java.io.File;
+import java.io.IOException;
+
+import bounce.logic.BounceArea;
+import bounce.logic.Material;
+
+/**
+ * Renders a bounce simulation to a sequence of PNG images without a display,
+ * for assembly into a video by an external encoder.
+ *
+ * <pre>
+ * usage: bounce.render.Main [options]
+ *   -h, --height &lt;m&gt;      drop height in meters (default 5)
+ *   -m, --material &lt;name&gt; rubber, iron, stone, elastic or a material ID
+ *   -o, --out &lt;dir&gt;       directory for the images (default frames)
+ *   -r, --rate &lt;fps&gt;      frames per second (default 60)
+ *   -d, --duration &lt;s&gt;    seconds of simulated time (default 10)
+ *   -w, --workers &lt;n&gt;     rendering threads (default one per processor)
+ *   -q, --queue &lt;n&gt;       frames held in memory (default twice the workers)
+ * </pre>
+ */
+public class Main
+{
+    /** The default number of frames per second */
+    public static final int DEFAULT_RATE = 60;
+
+    /** The default number of seconds of simulated time */
+    public static final int DEFAULT_DURATION = 10;
+
+    /** The default directory for the images */
+    public static final String DEFAULT_OUT = "frames";
+
+    private double height = bounce.cli.Main.DEFAULT_HEIGHT;
+    private int material = Material.ID_RUBBER;
+    private String outPath = DEFAULT_OUT;
+    private int rate = DEFAULT_RATE;
+    private int duration = DEFAULT_DURATION;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int queue;
+
+    /**
+     * Parses the command-line arguments.
+     *
+     * @param args the command-line arguments
+     *
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    void parse(String[] args)
+    {
+        for(int i = 0; i < args.length; i++)
+        {
+            String arg = args[i];
+
+            if(i + 1 >= args.length)
+            {
+                throw new IllegalArgumentException("missing value for " + arg);
+            }
+
+            String value = args[++i];
+
+            if("-h".equals(arg) || "--height".equals(arg))
+            {
+                height = bounce.cli.Main.parseHeight(value);
+            }
+            else if("-m".equals(arg) || "--material".equals(arg))
+            {
+                material = bounce.cli.Main.parseMaterial(value);
+            }
+            else if("-o".equals(arg) || "--out".equals(arg))
+            {
+                outPath = value;
+            }
+            else if("-r".equals(arg) || "--rate".equals(arg))
+            {
+                rate = bounce.cli.Main.parsePositive(value);
+            }
+            else if("-d".equals(arg) || "--duration".equals(arg))
+            {
+                duration = bounce.cli.Main.parsePositive(value);
+            }
+            else if("-w".equals(arg) || "--workers".equals(arg))
+            {
+                workers = bounce.cli.Main.parsePositive(value);
+            }
+            else if("-q".equals(arg) || "--queue".equals(arg))
+            {
+                queue = bounce.cli.Main.parsePositive(value);
+            }
+            else
+            {
+                throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+
+        if(queue == 0)
+        {
+            queue = workers * 2;
+        }
+    }
+
+    /**
+     * Renders the frames described by the command-line arguments and exits
+     * with one of the exit statuses of {@link bounce.cli.Main}.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+
+        Main m = new Main();
+        int status = bounce.cli.Main.EXIT_OK;
+
+        try
+        {
+            m.parse(args);
+
+            FrameRenderer renderer = new FrameRenderer(m.height, m.material,
+                    BounceArea.DEFAULT_WIDTH, m.rate, m.workers, m.queue);
+            int frames = m.rate * m.duration;
+            long start = System.nanoTime();
+
+            renderer.render(frames, new File(m.outPath));
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d frames in %.2f s (%.1fx real time)%n",
+                    frames, seconds, m.duration / seconds);
+        }
+        catch(IllegalArgumentException e)
+        {
+            System.err.println("bounce: " + e.getMessage());
+            status = bounce.cli.Main.EXIT_USAGE;
+        }
+        catch(IOException e)
+        {
+            System.err.println("bounce: " + e.getMessage());
+            status = bounce.cli.Main.EXIT_IO;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            status = bounce.cli.Main.EXIT_IO;
+        }
+
+        if(status != bounce.cli.Main.EXIT_OK)
+        {
+            System.exit(status);
+        }
+    }
+}